@@ -0,0 +1,95 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the number of bytes allocated by the current thread, where the JVM
+ * supports it.
+ */
+public class AllocationCounter
+{
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = findThreadMXBean();
+    // Thread.getId() is deprecated in favour of threadId() from Java 19, so
+    // the newer one is used where it exists, through a handle that doesn't
+    // box the id or allocate anything that would be counted
+    private static final MethodHandle THREAD_ID = findThreadId();
+
+    private AllocationCounter()
+    {
+        // do nothing
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadMXBean()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported())
+            {
+                if (!sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+                {
+                    sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return sunThreadMXBean;
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle findThreadId()
+    {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType type = MethodType.methodType(long.class);
+        try
+        {
+            try
+            {
+                return lookup.findVirtual(Thread.class, "threadId", type);
+            }
+            catch (NoSuchMethodException e)
+            {
+                return lookup.findVirtual(Thread.class, "getId", type);
+            }
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Can't find the id of a thread", e);
+        }
+    }
+
+    public static boolean isSupported()
+    {
+        return THREAD_MX_BEAN != null;
+    }
+
+    /**
+     * Returns the total number of bytes allocated by the current thread so
+     * far, or -1 if that isn't supported.
+     */
+    public static long getAllocatedBytes()
+    {
+        if (THREAD_MX_BEAN == null)
+        {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(getThreadId(Thread.currentThread()));
+    }
+
+    private static long getThreadId(Thread thread)
+    {
+        try
+        {
+            return (long) THREAD_ID.invokeExact(thread);
+        }
+        catch (Throwable e)
+        {
+            throw new IllegalStateException("Can't find the id of " + thread, e);
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Random;
+
+/**
+ * How the intended start times of calls are spaced when a test is run at a
+ * fixed target rate.
+ */
+public enum ArrivalDistribution
+{
+    CONSTANT
+    {
+        @Override
+        long nextIntervalNanos(double meanIntervalNanos, Random random)
+        {
+            return Math.round(meanIntervalNanos);
+        }
+    },
+
+    POISSON
+    {
+        @Override
+        long nextIntervalNanos(double meanIntervalNanos, Random random)
+        {
+            // exponentially distributed gaps give a Poisson arrival process
+            return Math.round(-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos);
+        }
+    };
+
+    abstract long nextIntervalNanos(double meanIntervalNanos, Random random);
+}
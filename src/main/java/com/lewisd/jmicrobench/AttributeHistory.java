@@ -0,0 +1,145 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * The values of one attribute over the most recent passes, kept in a ring
+ * buffer of primitives along with a running mean and variance (Welford's
+ * method), so that checking them between passes doesn't allocate.
+ */
+public class AttributeHistory
+{
+    private static final int INITIAL_UNBOUNDED_CAPACITY = 16;
+
+    private final String attributeName;
+    private final boolean bounded;
+    private double[] values;
+    // the index the next value goes in
+    private int next;
+    private int count;
+    private long totalAdded;
+
+    private double mean;
+    // the sum of the squared differences from the mean
+    private double sumOfSquares;
+
+    /**
+     * @param capacity
+     *            how many of the most recent values to keep, or 0 to keep all
+     *            of them
+     */
+    public AttributeHistory(String attributeName, int capacity)
+    {
+        this.attributeName = attributeName;
+        this.bounded = capacity > 0;
+        this.values = new double[bounded ? capacity : INITIAL_UNBOUNDED_CAPACITY];
+    }
+
+    public String getAttributeName()
+    {
+        return attributeName;
+    }
+
+    public void add(double value)
+    {
+        if (count == values.length)
+        {
+            if (bounded)
+            {
+                removeFromStatistics(values[next]);
+                count--;
+            }
+            else
+            {
+                grow();
+            }
+        }
+        values[next] = value;
+        next = (next + 1) % values.length;
+        count++;
+        totalAdded++;
+        addToStatistics(value);
+    }
+
+    private void grow()
+    {
+        double[] grown = new double[values.length * 2];
+        copyLastValues(grown, 0, count);
+        next = count;
+        values = grown;
+    }
+
+    private void addToStatistics(double value)
+    {
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (value - mean);
+    }
+
+    private void removeFromStatistics(double value)
+    {
+        if (count == 1)
+        {
+            mean = 0;
+            sumOfSquares = 0;
+            return;
+        }
+        double meanWithout = (mean * count - value) / (count - 1);
+        sumOfSquares = Math.max(sumOfSquares - (value - mean) * (value - meanWithout), 0);
+        mean = meanWithout;
+    }
+
+    /**
+     * The number of values kept.
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * The number of values ever added, including those no longer kept.
+     */
+    public long getTotalAdded()
+    {
+        return totalAdded;
+    }
+
+    public double getLast()
+    {
+        return values[(next + values.length - 1) % values.length];
+    }
+
+    public double getMean()
+    {
+        return mean;
+    }
+
+    public double getSumOfSquares()
+    {
+        return sumOfSquares;
+    }
+
+    /**
+     * Copies the last valueCount values kept, oldest first, into dest
+     * starting at offset, and returns how many were copied.
+     */
+    public int copyLastValues(double[] dest, int offset, int valueCount)
+    {
+        int copied = Math.min(valueCount, count);
+        int start = (next - copied + values.length) % values.length;
+        for (int i = 0; i < copied; ++i)
+        {
+            dest[offset + i] = values[(start + i) % values.length];
+        }
+        return copied;
+    }
+
+    public void clear()
+    {
+        next = 0;
+        count = 0;
+        totalAdded = 0;
+        mean = 0;
+        sumOfSquares = 0;
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * Sink for values computed by a benchmark, so that the JIT can't prove the
+ * computation is unused and eliminate it.
+ * <p>
+ * Primitives are compared against two volatile fields that never hold the
+ * same value, so the branch is never taken, but the JIT has to do the
+ * comparison, and so has to compute the value. Objects are published to a
+ * volatile field on a pseudo-random, increasingly rare subset of calls, so
+ * the JIT can't prove they don't escape, without the cost of a volatile
+ * write on every call.
+ * <p>
+ * Instances are not meant to be shared between threads; use one per thread,
+ * as {@link PerformanceTestController#getBlackhole()} does.
+ */
+public class Blackhole
+{
+    private volatile byte byte1 = 1, byte2 = 2;
+    private volatile boolean bool1 = false, bool2 = true;
+    private volatile char char1 = 'A', char2 = 'B';
+    private volatile short short1 = 1, short2 = 2;
+    private volatile int int1 = 1, int2 = 2;
+    private volatile long long1 = 1, long2 = 2;
+    private volatile float float1 = 1.0f, float2 = 2.0f;
+    private volatile double double1 = 1.0, double2 = 2.0;
+
+    private volatile Object objectSink;
+    private int randomState = (int) System.nanoTime();
+    private int randomMask = 1;
+
+    public final void consume(byte b)
+    {
+        if (b == byte1 & b == byte2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(boolean bool)
+    {
+        if (bool == bool1 & bool == bool2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(char c)
+    {
+        if (c == char1 & c == char2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(short s)
+    {
+        if (s == short1 & s == short2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(int i)
+    {
+        if (i == int1 & i == int2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(long l)
+    {
+        if (l == long1 & l == long2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(float f)
+    {
+        if (f == float1 & f == float2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(double d)
+    {
+        if (d == double1 & d == double2)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+    }
+
+    public final void consume(Object object)
+    {
+        int mask = randomMask;
+        int state = randomState * 1664525 + 1013904223;
+        randomState = state;
+        if ((state & mask) == 0)
+        {
+            objectSink = object;
+            randomMask = (mask << 1) + 1;
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * A build where an attribute of a test shifted, and the mean of the
+ * attribute between it and the changes either side.
+ */
+public class ChangePoint
+{
+    private final BuildInfo build;
+    private final String attributeName;
+    private final double meanBefore;
+    private final double meanAfter;
+
+    public ChangePoint(BuildInfo build, String attributeName, double meanBefore, double meanAfter)
+    {
+        this.build = build;
+        this.attributeName = attributeName;
+        this.meanBefore = meanBefore;
+        this.meanAfter = meanAfter;
+    }
+
+    public BuildInfo getBuild()
+    {
+        return build;
+    }
+
+    public String getAttributeName()
+    {
+        return attributeName;
+    }
+
+    public double getMeanBefore()
+    {
+        return meanBefore;
+    }
+
+    public double getMeanAfter()
+    {
+        return meanAfter;
+    }
+
+    public double getChangePercentage()
+    {
+        return meanBefore == 0 ? 0 : (meanAfter - meanBefore) * 100 / Math.abs(meanBefore);
+    }
+
+    @Override
+    public String toString()
+    {
+        return attributeName + " changed from " + String.format("%f", meanBefore) + " to " + String.format("%f", meanAfter) + " at revision " + build.getRevision();
+    }
+
+}
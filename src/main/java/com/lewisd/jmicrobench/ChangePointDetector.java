@@ -0,0 +1,160 @@
+package com.lewisd.jmicrobench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Finds where the mean of a series, such as the results of a test across
+ * builds, shifts and stays shifted, using the PELT algorithm (Killick et al.)
+ * with a cost of the squared deviations from each segment's mean. A change
+ * is only found where the segments on both sides are at least
+ * minSegmentLength long, and single values are median filtered first, so a
+ * single noisy build can't make one.
+ */
+public class ChangePointDetector
+{
+    // scales the median absolute deviation to the standard deviation of normally distributed values
+    private static final double MAD_TO_STANDARD_DEVIATION = 1.4826;
+
+    private final int minSegmentLength;
+    private final double penaltyFactor;
+
+    /**
+     * @param penaltyFactor
+     *            how much a change has to reduce the cost, in multiples of
+     *            the log of the number of values, so higher finds fewer
+     */
+    public ChangePointDetector(int minSegmentLength, double penaltyFactor)
+    {
+        if (minSegmentLength < 1)
+        {
+            throw new IllegalArgumentException("minSegmentLength must be at least 1, but was " + minSegmentLength);
+        }
+        this.minSegmentLength = minSegmentLength;
+        this.penaltyFactor = penaltyFactor;
+    }
+
+    /**
+     * The index of the first value after each change, in order.
+     */
+    public int[] detect(double[] rawValues)
+    {
+        double[] values = removeSpikes(rawValues);
+        int n = values.length;
+        // the filtered values are smoother than the noise really is
+        double variance = estimateNoiseVariance(rawValues);
+        if (n < 2 * minSegmentLength || variance == 0)
+        {
+            return new int[0];
+        }
+
+        double[] sums = new double[n + 1];
+        double[] sumsOfSquares = new double[n + 1];
+        for (int i = 0; i < n; ++i)
+        {
+            sums[i + 1] = sums[i] + values[i];
+            sumsOfSquares[i + 1] = sumsOfSquares[i] + values[i] * values[i];
+        }
+
+        double penalty = penaltyFactor * Math.log(n);
+        // the lowest cost of the first t values, and where their last segment starts
+        double[] costs = new double[n + 1];
+        int[] segmentStarts = new int[n + 1];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[0] = -penalty;
+        List<Integer> candidates = new LinkedList<Integer>();
+        for (int t = minSegmentLength; t <= n; ++t)
+        {
+            // the last segment can only start where the values before it can be segmented
+            if (!Double.isInfinite(costs[t - minSegmentLength]))
+            {
+                candidates.add(t - minSegmentLength);
+            }
+            for (int start : candidates)
+            {
+                double cost = costs[start] + segmentCost(sums, sumsOfSquares, start, t) / variance + penalty;
+                if (cost < costs[t])
+                {
+                    costs[t] = cost;
+                    segmentStarts[t] = start;
+                }
+            }
+            // a start that's already worse can never become the best one
+            for (Iterator<Integer> iterator = candidates.iterator(); iterator.hasNext();)
+            {
+                int start = iterator.next();
+                if (costs[start] + segmentCost(sums, sumsOfSquares, start, t) / variance > costs[t])
+                {
+                    iterator.remove();
+                }
+            }
+        }
+
+        List<Integer> changes = new ArrayList<Integer>();
+        for (int start = segmentStarts[n]; start > 0; start = segmentStarts[start])
+        {
+            changes.add(0, start);
+        }
+        int[] changeIndexes = new int[changes.size()];
+        for (int i = 0; i < changeIndexes.length; ++i)
+        {
+            changeIndexes[i] = changes.get(i);
+        }
+        return changeIndexes;
+    }
+
+    /**
+     * Replaces each value with the median of it and its neighbours, which
+     * leaves a lasting shift where it is, but removes a spike in a single
+     * value that would otherwise look like a segment of its own.
+     */
+    private double[] removeSpikes(double[] values)
+    {
+        double[] filtered = Arrays.copyOf(values, values.length);
+        double[] window = new double[3];
+        for (int i = 1; i < values.length - 1; ++i)
+        {
+            System.arraycopy(values, i - 1, window, 0, 3);
+            Arrays.sort(window);
+            filtered[i] = window[1];
+        }
+        return filtered;
+    }
+
+    private double segmentCost(double[] sums, double[] sumsOfSquares, int start, int end)
+    {
+        double sum = sums[end] - sums[start];
+        return sumsOfSquares[end] - sumsOfSquares[start] - sum * sum / (end - start);
+    }
+
+    /**
+     * Estimates the variance of the noise from the differences between
+     * neighbouring values, which a shift in the mean only affects once,
+     * preferring the median absolute deviation so a few shifts don't count.
+     */
+    private double estimateNoiseVariance(double[] values)
+    {
+        if (values.length < 2)
+        {
+            return 0;
+        }
+        double[] differences = new double[values.length - 1];
+        for (int i = 0; i < differences.length; ++i)
+        {
+            differences[i] = values[i + 1] - values[i];
+        }
+        Arrays.sort(differences);
+        // the difference of two values has twice their variance
+        double standardDeviation = MAD_TO_STANDARD_DEVIATION * Statistics.medianAbsoluteDeviation(differences) / Math.sqrt(2);
+        if (standardDeviation == 0)
+        {
+            // most neighbours are identical
+            standardDeviation = Statistics.standardDeviation(differences) / Math.sqrt(2);
+        }
+        return standardDeviation * standardDeviation;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.lewisd.jmicrobench;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time the JIT spent compiling during a pass, across the whole
+ * JVM, so that warmup can go on until the compiled code has settled.
+ * <p>
+ * The JVM only reports the time in whole milliseconds, and most
+ * compilations take less than one, so a pass can look quiet while the JIT
+ * is still compiling. Where the JVM has a flight recorder, the monitor can
+ * count the compilations instead, which sees every one of them.
+ */
+public class CompilationMonitor
+{
+    private static final String COMPILATION_EVENT = "jdk.Compilation";
+
+    private final CompilationMXBean compilationBean = ManagementFactory.getCompilationMXBean();
+    private final FlightRecording compilations;
+    private long compilationTimeBefore;
+    private long compilationCount = -1;
+
+    public CompilationMonitor()
+    {
+        this(false);
+    }
+
+    /**
+     * @param countCompilations
+     *            whether to count the compilations as well, where the JVM has
+     *            a flight recorder to count them with
+     */
+    public CompilationMonitor(boolean countCompilations)
+    {
+        compilations = countCompilations && FlightRecording.isAvailable() ? new FlightRecording(COMPILATION_EVENT) : null;
+    }
+
+    /**
+     * Whether the JVM has a JIT that reports its compilation time. Without
+     * one, every pass looks quiet.
+     */
+    public boolean isSupported()
+    {
+        return compilationBean != null && compilationBean.isCompilationTimeMonitoringSupported();
+    }
+
+    /**
+     * Whether the compilations are being counted, rather than only timed.
+     */
+    public boolean isCounting()
+    {
+        return compilations != null;
+    }
+
+    public void start()
+    {
+        if (compilations != null)
+        {
+            compilations.start();
+        }
+        compilationTimeBefore = getCompilationTimeMillis();
+    }
+
+    /**
+     * The milliseconds spent compiling since {@link #start()}.
+     */
+    public long stop() throws IOException
+    {
+        long compilationMillis = getCompilationTimeMillis() - compilationTimeBefore;
+        if (compilations != null)
+        {
+            compilationCount = compilations.stop();
+        }
+        return compilationMillis;
+    }
+
+    /**
+     * The number of compilations between {@link #start()} and
+     * {@link #stop()}, or -1 if they weren't counted.
+     */
+    public long getCompilationCount()
+    {
+        return compilationCount;
+    }
+
+    private long getCompilationTimeMillis()
+    {
+        return isSupported() ? compilationBean.getTotalCompilationTime() : 0;
+    }
+
+}
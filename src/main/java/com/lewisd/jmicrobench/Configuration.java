@@ -10,11 +10,30 @@ public class Configuration
     private static final int DEFAULT_RUNS_TO_AVERAGE = Integer.parseInt(PropertiesHelper.getProperty("build.performance.averaged.runs", "3"));
     private static final long DEFAULT_EXPECTED_DURATION = Long.parseLong(PropertiesHelper.getProperty("build.performance.duration", "3000"));
     private static final long DEFAULT_WARMUP_DURATION = Long.parseLong(PropertiesHelper.getProperty("build.performance.warmup.duration", "0"));
+    private static final int DEFAULT_WARMUP_QUIET_PASSES = Integer.parseInt(PropertiesHelper.getProperty("build.performance.warmup.quiet.passes", "0"));
     private static final double DEFAULT_STABILITY_PERCENTAGE= Double.parseDouble(PropertiesHelper.getProperty("build.performance.stability.percentage", "5"));
     private static final String DEFAULT_PROJECT_NAME = PropertiesHelper.getProperty("build.performance.project.name", "");
+    private static final int DEFAULT_THREADS = Integer.parseInt(PropertiesHelper.getProperty("build.performance.threads", "1"));
+    private static final String DEFAULT_THREAD_TYPE = PropertiesHelper.getProperty("build.performance.thread.type", "platform");
+    private static final String DEFAULT_ESTIMATOR = PropertiesHelper.getProperty("build.performance.estimator", "mean");
+    private static final double DEFAULT_TRIM_PERCENTAGE = Double.parseDouble(PropertiesHelper.getProperty("build.performance.trim.percentage", "10"));
+    private static final double DEFAULT_CONFIDENCE_WIDTH_PERCENTAGE = Double.parseDouble(PropertiesHelper.getProperty("build.performance.confidence.width.percentage", "-1"));
+    private static final long DEFAULT_TIME_BUDGET = Long.parseLong(PropertiesHelper.getProperty("build.performance.time.budget", "-1"));
+    private static final int DEFAULT_FORKS = Integer.parseInt(PropertiesHelper.getProperty("build.performance.forks", "0"));
+    private static final int DEFAULT_BATCH_SIZE = Integer.parseInt(PropertiesHelper.getProperty("build.performance.batch.size", "0"));
+    private static final String DEFAULT_SUBTRACT_TIMER_OVERHEAD = PropertiesHelper.getProperty("build.performance.subtract.timer.overhead", "false");
+    private static final String DEFAULT_SCALABILITY_SWEEP = PropertiesHelper.getProperty("build.performance.scalability.sweep", "false");
+    private static final String DEFAULT_SINGLE_SHOT = PropertiesHelper.getProperty("build.performance.single.shot", "false");
+    private static final int DEFAULT_SINGLE_SHOT_FORKS = Integer.parseInt(PropertiesHelper.getProperty("build.performance.single.shot.forks", "10"));
+    private static final int DEFAULT_MAX_THREADS = Integer.parseInt(PropertiesHelper.getProperty("build.performance.max.threads", "-1"));
+    private static final int DEFAULT_REGRESSION_BUILDS = Integer.parseInt(PropertiesHelper.getProperty("build.performance.regression.builds", "0"));
+    private static final double DEFAULT_REGRESSION_PERCENTAGE = Double.parseDouble(PropertiesHelper.getProperty("build.performance.regression.percentage", "10"));
+    private static final double DEFAULT_REGRESSION_SIGNIFICANCE = Double.parseDouble(PropertiesHelper.getProperty("build.performance.regression.significance", "0.05"));
+    private static final double DEFAULT_MAX_TIMER_ERROR_PERCENTAGE = Double.parseDouble(PropertiesHelper.getProperty("build.performance.max.timer.error.percentage", "-1"));
 
     private int warmupPasses;
     private long warmupDuration;
+    private int warmupQuietPasses;
     private int maxPasses;
     private int stablePasses;
     private double stabilityPercentage;
@@ -24,6 +43,31 @@ public class Configuration
     private String testName;
     private String groupName;
     private String projectName;
+    private int threads;
+    private ThreadType threadType;
+    private StateScope stateScope;
+    private double targetRate;
+    private ArrivalDistribution arrivals;
+    private Estimator estimator;
+    private double trimPercentage;
+    private double confidenceWidthPercentage;
+    private long timeBudget;
+    private int forks;
+    private int batchSize;
+    private boolean subtractTimerOverhead;
+    private double maxTimerErrorPercentage;
+    private boolean scalabilitySweep;
+    private boolean singleShot;
+    private boolean footprint;
+    private int maxThreads;
+    private int regressionBuilds;
+    private double regressionPercentage;
+    private double regressionSignificance;
+    private double minOpsPerSecond = -1;
+    private double maxAverageLatencyNanos = -1;
+    private double maxP99LatencyNanos = -1;
+    private double maxBytesPerOperation = -1;
+    private long maxMemoryBytes = -1;
     
     public Configuration(final FrameworkMethod method, final Class testClass)
     {
@@ -34,10 +78,30 @@ public class Configuration
         this.expectedDuration = DEFAULT_EXPECTED_DURATION;
         this.warmupPasses = DEFAULT_WARMUP_PASSES;
         this.warmupDuration = DEFAULT_WARMUP_DURATION;
+        this.warmupQuietPasses = DEFAULT_WARMUP_QUIET_PASSES;
         this.groupName = method.getName();
         this.testName = testClass.getSimpleName();
         this.projectName = DEFAULT_PROJECT_NAME;
         this.runBeforeAndAftersEachPass = true;
+        this.threads = DEFAULT_THREADS;
+        this.threadType = parseThreadType(DEFAULT_THREAD_TYPE);
+        this.stateScope = StateScope.SHARED;
+        this.targetRate = -1;
+        this.arrivals = ArrivalDistribution.CONSTANT;
+        this.estimator = parseEstimator(DEFAULT_ESTIMATOR);
+        this.trimPercentage = DEFAULT_TRIM_PERCENTAGE;
+        this.confidenceWidthPercentage = DEFAULT_CONFIDENCE_WIDTH_PERCENTAGE;
+        this.timeBudget = DEFAULT_TIME_BUDGET;
+        this.forks = DEFAULT_FORKS;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.subtractTimerOverhead = parseBoolean(DEFAULT_SUBTRACT_TIMER_OVERHEAD);
+        this.maxTimerErrorPercentage = DEFAULT_MAX_TIMER_ERROR_PERCENTAGE;
+        this.scalabilitySweep = parseBoolean(DEFAULT_SCALABILITY_SWEEP);
+        this.singleShot = parseBoolean(DEFAULT_SINGLE_SHOT);
+        this.maxThreads = DEFAULT_MAX_THREADS;
+        this.regressionBuilds = DEFAULT_REGRESSION_BUILDS;
+        this.regressionPercentage = DEFAULT_REGRESSION_PERCENTAGE;
+        this.regressionSignificance = DEFAULT_REGRESSION_SIGNIFICANCE;
         
         PerformanceTest configuratinAnnotation;
 
@@ -51,6 +115,70 @@ public class Configuration
         {
             throw new IllegalStateException("'projectName' must be configured in jmicrobench.properties on PerformanceTest annotation");
         }
+        if (threads < 1)
+        {
+            throw new IllegalStateException("'threads' must be at least 1, but was " + threads);
+        }
+        if (trimPercentage < 0 || trimPercentage >= 50)
+        {
+            throw new IllegalStateException("'trimPercentage' must be at least 0 and less than 50, but was " + trimPercentage);
+        }
+        if (batchSize > 0 && targetRate > 0)
+        {
+            throw new IllegalStateException("'batchSize' and 'targetRate' can't both be configured");
+        }
+        if (batchSize > 0 && threadType == ThreadType.VIRTUAL)
+        {
+            throw new IllegalStateException("'batchSize' can't be used with virtual threads");
+        }
+        if (regressionSignificance <= 0 || regressionSignificance >= 1)
+        {
+            throw new IllegalStateException("'regressionSignificance' must be between 0 and 1, but was " + regressionSignificance);
+        }
+        if (singleShot)
+        {
+            // a single call in each fresh JVM, so nothing that needs more than one call
+            if (scalabilitySweep)
+            {
+                throw new IllegalStateException("'singleShot' and 'scalabilitySweep' can't both be configured");
+            }
+            if (threads > 1 || batchSize > 0 || targetRate > 0 || method.getAnnotation(Group.class) != null)
+            {
+                throw new IllegalStateException("'singleShot' can't be used with threads, batches, a target rate, or the methods of a group");
+            }
+            if (forks == 0)
+            {
+                forks = DEFAULT_SINGLE_SHOT_FORKS;
+            }
+        }
+        if (footprint && method.getMethod().getReturnType() == Void.TYPE)
+        {
+            throw new IllegalStateException("'footprint' needs the test method to return the object to measure");
+        }
+        if (footprint && batchSize > 0)
+        {
+            throw new IllegalStateException("'footprint' and 'batchSize' can't both be configured");
+        }
+        if (scalabilitySweep && forks > 0)
+        {
+            throw new IllegalStateException("'scalabilitySweep' can't be used with forks");
+        }
+        if (method.getAnnotation(Group.class) != null)
+        {
+            if (scalabilitySweep)
+            {
+                throw new IllegalStateException("'scalabilitySweep' can't be used with the methods of a group");
+            }
+            // the members of a group share state, and their threads are set by the group
+            if (stateScope == StateScope.THREAD)
+            {
+                throw new IllegalStateException("'stateScope' can't be thread for the methods of a group");
+            }
+            if (targetRate > 0)
+            {
+                throw new IllegalStateException("'targetRate' can't be used with the methods of a group");
+            }
+        }
     }
     
     public int getWarmupPasses()
@@ -63,6 +191,19 @@ public class Configuration
         return warmupDuration;
     }
 
+    /**
+     * How many passes in a row must run without any JIT compilations before
+     * warmup ends, or 0 to not wait for the JIT. Compilations are counted with
+     * the flight recorder where the JVM has one. Otherwise a pass is quiet
+     * when the JIT's total compilation time didn't change, which the JVM only
+     * reports in whole milliseconds, so a pass with only a few short
+     * compilations can look quiet too.
+     */
+    public int getWarmupQuietPasses()
+    {
+        return warmupQuietPasses;
+    }
+
     public int getMaxPasses()
     {
         return maxPasses;
@@ -108,6 +249,143 @@ public class Configuration
         return projectName;
     }
 
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public StateScope getStateScope()
+    {
+        return stateScope;
+    }
+
+    public double getTargetRate()
+    {
+        return targetRate;
+    }
+
+    public ArrivalDistribution getArrivals()
+    {
+        return arrivals;
+    }
+
+    public Estimator getEstimator()
+    {
+        return estimator;
+    }
+
+    public double getTrimPercentage()
+    {
+        return trimPercentage;
+    }
+
+    public double getConfidenceWidthPercentage()
+    {
+        return confidenceWidthPercentage;
+    }
+
+    public long getTimeBudget()
+    {
+        return timeBudget;
+    }
+
+    public int getForks()
+    {
+        return forks;
+    }
+
+    public ThreadType getThreadType()
+    {
+        return threadType;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public boolean getSubtractTimerOverhead()
+    {
+        return subtractTimerOverhead;
+    }
+
+    public double getMaxTimerErrorPercentage()
+    {
+        return maxTimerErrorPercentage;
+    }
+
+    public boolean getScalabilitySweep()
+    {
+        return scalabilitySweep;
+    }
+
+    /**
+     * Whether each fork only calls the test method once, to measure how long
+     * it takes from a cold start.
+     */
+    public boolean getSingleShot()
+    {
+        return singleShot;
+    }
+
+    /**
+     * Whether the memory of each pass is the footprint of the object the test
+     * method returns.
+     */
+    public boolean getFootprint()
+    {
+        return footprint;
+    }
+
+    /**
+     * The most threads a scalability sweep goes up to, which is the number
+     * of CPUs that can be used unless it's configured.
+     */
+    public int getMaxThreads()
+    {
+        return maxThreads > 0 ? maxThreads : CpuQuota.getAvailableCpus();
+    }
+
+    public int getRegressionBuilds()
+    {
+        return regressionBuilds;
+    }
+
+    public double getRegressionPercentage()
+    {
+        return regressionPercentage;
+    }
+
+    public double getRegressionSignificance()
+    {
+        return regressionSignificance;
+    }
+
+    public double getMinOpsPerSecond()
+    {
+        return minOpsPerSecond;
+    }
+
+    public double getMaxAverageLatencyNanos()
+    {
+        return maxAverageLatencyNanos;
+    }
+
+    public double getMaxP99LatencyNanos()
+    {
+        return maxP99LatencyNanos;
+    }
+
+    public double getMaxBytesPerOperation()
+    {
+        return maxBytesPerOperation;
+    }
+
+    public long getMaxMemoryBytes()
+    {
+        return maxMemoryBytes;
+    }
+
     @SuppressWarnings("unchecked")
     private PerformanceTest findClassAnnotation(final Class testClass)
     {
@@ -126,6 +404,10 @@ public class Configuration
             {
                 warmupDuration = configuration.warmupDurationMillis();
             }
+            if (configuration.warmupQuietPasses() >= 0)
+            {
+                warmupQuietPasses = configuration.warmupQuietPasses();
+            }
             if (configuration.maxPasses() >= 0)
             {
                 maxPasses = configuration.maxPasses();
@@ -162,6 +444,106 @@ public class Configuration
             {
                 runBeforeAndAftersEachPass = parseBoolean(configuration.runBeforesAndAftersEachPass());
             }
+            if (configuration.threads() >= 0)
+            {
+                threads = configuration.threads();
+            }
+            if (!configuration.threadType().isEmpty())
+            {
+                threadType = parseThreadType(configuration.threadType());
+            }
+            if (!configuration.stateScope().isEmpty())
+            {
+                stateScope = parseStateScope(configuration.stateScope());
+            }
+            if (configuration.targetRate() > 0)
+            {
+                targetRate = configuration.targetRate();
+            }
+            if (!configuration.arrivals().isEmpty())
+            {
+                arrivals = parseArrivals(configuration.arrivals());
+            }
+            if (!configuration.estimator().isEmpty())
+            {
+                estimator = parseEstimator(configuration.estimator());
+            }
+            if (configuration.trimPercentage() >= 0)
+            {
+                trimPercentage = configuration.trimPercentage();
+            }
+            if (configuration.confidenceWidthPercentage() >= 0)
+            {
+                confidenceWidthPercentage = configuration.confidenceWidthPercentage();
+            }
+            if (configuration.timeBudgetMillis() >= 0)
+            {
+                timeBudget = configuration.timeBudgetMillis();
+            }
+            if (configuration.forks() >= 0)
+            {
+                forks = configuration.forks();
+            }
+            if (configuration.batchSize() >= 0)
+            {
+                batchSize = configuration.batchSize();
+            }
+            if (!configuration.subtractTimerOverhead().isEmpty())
+            {
+                subtractTimerOverhead = parseBoolean(configuration.subtractTimerOverhead());
+            }
+            if (configuration.maxTimerErrorPercentage() >= 0)
+            {
+                maxTimerErrorPercentage = configuration.maxTimerErrorPercentage();
+            }
+            if (!configuration.scalabilitySweep().isEmpty())
+            {
+                scalabilitySweep = parseBoolean(configuration.scalabilitySweep());
+            }
+            if (!configuration.singleShot().isEmpty())
+            {
+                singleShot = parseBoolean(configuration.singleShot());
+            }
+            if (!configuration.footprint().isEmpty())
+            {
+                footprint = parseBoolean(configuration.footprint());
+            }
+            if (configuration.maxThreads() > 0)
+            {
+                maxThreads = configuration.maxThreads();
+            }
+            if (configuration.regressionBuilds() >= 0)
+            {
+                regressionBuilds = configuration.regressionBuilds();
+            }
+            if (configuration.regressionPercentage() >= 0)
+            {
+                regressionPercentage = configuration.regressionPercentage();
+            }
+            if (configuration.regressionSignificance() >= 0)
+            {
+                regressionSignificance = configuration.regressionSignificance();
+            }
+            if (configuration.minOpsPerSecond() >= 0)
+            {
+                minOpsPerSecond = configuration.minOpsPerSecond();
+            }
+            if (configuration.maxAverageLatencyNanos() >= 0)
+            {
+                maxAverageLatencyNanos = configuration.maxAverageLatencyNanos();
+            }
+            if (configuration.maxP99LatencyNanos() >= 0)
+            {
+                maxP99LatencyNanos = configuration.maxP99LatencyNanos();
+            }
+            if (configuration.maxBytesPerOperation() >= 0)
+            {
+                maxBytesPerOperation = configuration.maxBytesPerOperation();
+            }
+            if (configuration.maxMemoryBytes() >= 0)
+            {
+                maxMemoryBytes = configuration.maxMemoryBytes();
+            }
         }
     }
 
@@ -182,4 +564,52 @@ public class Configuration
         }
     }
 
+    private Estimator parseEstimator(final String value)
+    {
+        try
+        {
+            return Estimator.valueOf(value.toUpperCase().replace('-', '_'));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid value specified for estimator: " + value);
+        }
+    }
+
+    private ThreadType parseThreadType(final String value)
+    {
+        try
+        {
+            return ThreadType.valueOf(value.toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid value specified for threadType: " + value);
+        }
+    }
+
+    private StateScope parseStateScope(final String value)
+    {
+        try
+        {
+            return StateScope.valueOf(value.toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid value specified for stateScope: " + value);
+        }
+    }
+
+    private ArrivalDistribution parseArrivals(final String value)
+    {
+        try
+        {
+            return ArrivalDistribution.valueOf(value.toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid value specified for arrivals: " + value);
+        }
+    }
+
 }
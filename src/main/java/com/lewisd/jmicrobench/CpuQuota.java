@@ -0,0 +1,98 @@
+package com.lewisd.jmicrobench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Works out how many CPUs the JVM can actually use: the number of available
+ * processors, or the container's cgroup CPU quota if that is lower.
+ */
+public class CpuQuota
+{
+    private static final Logger LOG = Logger.getLogger(CpuQuota.class);
+
+    private static final File CGROUP_V2_CPU_MAX = new File("/sys/fs/cgroup/cpu.max");
+    private static final File[] CGROUP_V1_CPU_DIRS = { new File("/sys/fs/cgroup/cpu"), new File("/sys/fs/cgroup/cpu,cpuacct") };
+
+    private CpuQuota()
+    {
+        // do nothing
+    }
+
+    public static int getAvailableCpus()
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int quota = getQuotaCpus();
+        if (quota > 0 && quota < processors)
+        {
+            return quota;
+        }
+        return processors;
+    }
+
+    /**
+     * The cgroup CPU quota, rounded up to whole CPUs, or -1 if there is none.
+     */
+    static int getQuotaCpus()
+    {
+        try
+        {
+            if (CGROUP_V2_CPU_MAX.exists())
+            {
+                // "<quota> <period>", where the quota is "max" if there isn't one
+                String[] fields = readLine(CGROUP_V2_CPU_MAX).trim().split("\\s+");
+                if (fields.length == 2 && !fields[0].equals("max"))
+                {
+                    return toCpus(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+                }
+                return -1;
+            }
+            for (File dir : CGROUP_V1_CPU_DIRS)
+            {
+                File quotaFile = new File(dir, "cpu.cfs_quota_us");
+                File periodFile = new File(dir, "cpu.cfs_period_us");
+                if (quotaFile.exists() && periodFile.exists())
+                {
+                    return toCpus(Long.parseLong(readLine(quotaFile).trim()), Long.parseLong(readLine(periodFile).trim()));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Couldn't read the cgroup CPU quota", e);
+        }
+        catch (NumberFormatException e)
+        {
+            LOG.warn("Couldn't parse the cgroup CPU quota", e);
+        }
+        return -1;
+    }
+
+    private static int toCpus(long quota, long period)
+    {
+        if (quota <= 0 || period <= 0)
+        {
+            return -1;
+        }
+        return (int) Math.max((quota + period - 1) / period, 1);
+    }
+
+    private static String readLine(File file) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line = reader.readLine();
+            return line == null ? "" : line;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+}
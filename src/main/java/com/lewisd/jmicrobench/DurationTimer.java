@@ -0,0 +1,87 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates the measured duration of a single pass for a single thread.
+ * Each benchmark thread gets its own timer, so starting and stopping the
+ * timer never needs any synchronization.
+ */
+public class DurationTimer
+{
+    private final long expectedDurationMillis;
+    private final long overheadNanos;
+
+    private long totalDurationNanos;
+    private long startTimeNanos = -1;
+    private long endTimeNanos = -1;
+    private long intervals;
+
+    public DurationTimer(long expectedDurationMillis)
+    {
+        this(expectedDurationMillis, 0);
+    }
+
+    /**
+     * @param overheadNanos
+     *            the timer's own overhead, which is subtracted from every
+     *            interval
+     */
+    public DurationTimer(long expectedDurationMillis, long overheadNanos)
+    {
+        this.expectedDurationMillis = expectedDurationMillis;
+        this.overheadNanos = overheadNanos;
+    }
+
+    public void start()
+    {
+        startTimeNanos = System.nanoTime();
+        endTimeNanos = -1;
+    }
+
+    public void stop(boolean includeDurationInTotal)
+    {
+        if (endTimeNanos < 0)
+        {
+            endTimeNanos = System.nanoTime();
+            if (includeDurationInTotal)
+            {
+                totalDurationNanos += Math.max(endTimeNanos - startTimeNanos - overheadNanos, 0);
+                intervals++;
+            }
+        }
+    }
+
+    public boolean hasRunLongEnough()
+    {
+        if (expectedDurationMillis < 0)
+        {
+            return true;
+        }
+        else
+        {
+            long timeSpent = TimeUnit.NANOSECONDS.toMillis(getActualDurationNanos());
+            return (timeSpent >= expectedDurationMillis);
+        }
+    }
+
+    public long getIntervals()
+    {
+        return intervals;
+    }
+
+    public long getActualDurationNanos()
+    {
+        if (startTimeNanos < 0)
+        {
+            return 0;
+        }
+        if (endTimeNanos < 0)
+        {
+            final long now = System.nanoTime();
+            return totalDurationNanos + (now - startTimeNanos);
+        }
+        return totalDurationNanos;
+    }
+
+}
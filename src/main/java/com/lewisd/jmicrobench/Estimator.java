@@ -0,0 +1,92 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+
+/**
+ * How the values of an attribute across the averaged passes are combined
+ * into the reported value. Each estimator chooses which of the values to
+ * keep, and then summarises them.
+ */
+public enum Estimator
+{
+    /** Drops the lowest and highest values, and takes the mean of the rest. */
+    MEAN
+    {
+        @Override
+        double[] select(double[] sortedValues, double trimPercentage)
+        {
+            if (sortedValues.length <= 2)
+            {
+                return sortedValues;
+            }
+            return Arrays.copyOfRange(sortedValues, 1, sortedValues.length - 1);
+        }
+    },
+
+    /** The median, which no single noisy pass can move far. */
+    MEDIAN
+    {
+        @Override
+        double[] select(double[] sortedValues, double trimPercentage)
+        {
+            return sortedValues;
+        }
+
+        @Override
+        double estimate(double[] selectedValues)
+        {
+            return Statistics.median(selectedValues);
+        }
+    },
+
+    /** Drops trimPercentage of the values from each end, and takes the mean of the rest. */
+    TRIMMED_MEAN
+    {
+        @Override
+        double[] select(double[] sortedValues, double trimPercentage)
+        {
+            int trimmed = (int) Math.floor(sortedValues.length * trimPercentage / 100.0);
+            if (trimmed * 2 >= sortedValues.length)
+            {
+                trimmed = (sortedValues.length - 1) / 2;
+            }
+            return Arrays.copyOfRange(sortedValues, trimmed, sortedValues.length - trimmed);
+        }
+    },
+
+    /**
+     * Drops values more than 1.5 interquartile ranges outside the quartiles,
+     * and takes the mean of the rest.
+     */
+    TUKEY
+    {
+        @Override
+        double[] select(double[] sortedValues, double trimPercentage)
+        {
+            double lowerQuartile = Statistics.quantile(sortedValues, 0.25);
+            double upperQuartile = Statistics.quantile(sortedValues, 0.75);
+            double fence = TUKEY_FENCE * (upperQuartile - lowerQuartile);
+            int from = 0;
+            while (sortedValues[from] < lowerQuartile - fence)
+            {
+                from++;
+            }
+            int to = sortedValues.length;
+            while (sortedValues[to - 1] > upperQuartile + fence)
+            {
+                to--;
+            }
+            return Arrays.copyOfRange(sortedValues, from, to);
+        }
+    };
+
+    private static final double TUKEY_FENCE = 1.5;
+
+    abstract double[] select(double[] sortedValues, double trimPercentage);
+
+    double estimate(double[] selectedValues)
+    {
+        return Statistics.mean(selectedValues);
+    }
+
+}
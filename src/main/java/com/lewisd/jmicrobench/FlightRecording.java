@@ -0,0 +1,147 @@
+package com.lewisd.jmicrobench;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Counts the events of one type recorded by the JDK's flight recorder
+ * between {@link #start()} and {@link #stop()}. The flight recorder is
+ * reached reflectively, so the tree still builds for JVMs without it.
+ */
+public class FlightRecording
+{
+    private final String eventName;
+    private Object recording;
+
+    public FlightRecording(String eventName)
+    {
+        this.eventName = eventName;
+    }
+
+    /**
+     * Whether this JVM has a flight recorder that can be used.
+     */
+    public static boolean isAvailable()
+    {
+        try
+        {
+            Method isAvailable = Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable");
+            return ((Boolean) isAvailable.invoke(null)).booleanValue();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return false;
+        }
+        catch (LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    public void start()
+    {
+        try
+        {
+            recording = Class.forName("jdk.jfr.Recording").getConstructor().newInstance();
+            Object eventSettings = invoke(recording, "enable", new Class<?>[] { String.class }, eventName);
+            // most events are only recorded above a threshold by default
+            invoke(eventSettings, "withThreshold", new Class<?>[] { Duration.class }, Duration.ZERO);
+            invoke(recording, "start", new Class<?>[0]);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to start flight recording", e);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to start flight recording", e);
+        }
+    }
+
+    /**
+     * Stops recording, and returns the number of events recorded since
+     * {@link #start()}.
+     */
+    public long stop() throws IOException
+    {
+        invoke(recording, "stop", new Class<?>[0]);
+        Path file = Files.createTempFile("jmicrobench-recording", ".jfr");
+        try
+        {
+            invoke(recording, "dump", new Class<?>[] { Path.class }, file);
+            Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+            long events = 0;
+            for (Object event : (List<?>) invoke(null, readAllEvents, file))
+            {
+                Object eventType = invoke(event, "getEventType", new Class<?>[0]);
+                if (eventName.equals(invoke(eventType, "getName", new Class<?>[0])))
+                {
+                    events++;
+                }
+            }
+            return events;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to read flight recording", e);
+        }
+        finally
+        {
+            invoke(recording, "close", new Class<?>[0]);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Object invoke(Object target, String methodName, Class<?>[] parameterTypes, Object... args) throws IOException
+    {
+        try
+        {
+            // the methods are found on the public classes of the flight
+            // recorder, since the classes that implement them aren't exported
+            return invoke(target, findPublicMethod(target.getClass(), methodName, parameterTypes), args);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new IllegalStateException("Unable to find " + methodName + " in " + target.getClass().getName(), e);
+        }
+    }
+
+    private static Method findPublicMethod(Class<?> type, String methodName, Class<?>[] parameterTypes) throws NoSuchMethodException
+    {
+        for (Class<?> declaringType = type; declaringType != null; declaringType = declaringType.getSuperclass())
+        {
+            if (Modifier.isPublic(declaringType.getModifiers()))
+            {
+                return declaringType.getMethod(methodName, parameterTypes);
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+
+    private static Object invoke(Object target, Method method, Object... args) throws IOException
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException("Unable to call " + method, e);
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to call " + method, e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.lewisd.jmicrobench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.lewisd.test.Assert;
+
+/**
+ * Runs a test method in a number of fresh child JVMs, one after another, so
+ * that the JIT profile of one benchmark can't affect the next. The averaged
+ * results are the mean of the averages of each fork, and the variance
+ * between forks is stored next to the variance between passes within a
+ * fork. The latency percentiles are taken from the latency histograms of
+ * all the forks merged together, or, when each fork only calls the test
+ * once, from the latencies of those single calls.
+ */
+public class ForkedTestLauncher
+{
+    private static final Logger LOG = Logger.getLogger(ForkedTestLauncher.class);
+
+    static final String BETWEEN_FORKS_VARIANCE_SUFFIX = "_between_forks_variance";
+    static final String WITHIN_FORKS_VARIANCE_SUFFIX = "_within_forks_variance";
+
+    private final Class<?> testClass;
+    private final String methodName;
+    private final int forks;
+    private final boolean singleShot;
+
+    public ForkedTestLauncher(Class<?> testClass, String methodName, int forks)
+    {
+        this(testClass, methodName, forks, false);
+    }
+
+    public ForkedTestLauncher(Class<?> testClass, String methodName, int forks, boolean singleShot)
+    {
+        this.testClass = testClass;
+        this.methodName = methodName;
+        this.forks = forks;
+        this.singleShot = singleShot;
+    }
+
+    public PerformanceTestResults run(BuildInfo buildInfo, String groupName, String testName, Map<String, String> parameters) throws IOException, InterruptedException
+    {
+        List<Map<String, Double>> forkAverages = new LinkedList<Map<String, Double>>();
+        List<List<Map<String, Double>>> forkPasses = new LinkedList<List<Map<String, Double>>>();
+        Map<String, Metric> customMetrics = new HashMap<String, Metric>();
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (int fork = 1; fork <= forks; ++fork)
+        {
+            LOG.info("Running fork " + fork + " of " + forks + " for " + methodName);
+            List<Map<String, Double>> passes = new LinkedList<Map<String, Double>>();
+            Map<String, Double> average = runFork(fork, passes, customMetrics, latencyHistogram);
+            forkAverages.add(average);
+            forkPasses.add(passes);
+        }
+        PerformanceTestResultsImpl results = aggregate(buildInfo, groupName, testName, forkAverages, forkPasses);
+        if (latencyHistogram.getTotalCount() > 0)
+        {
+            results.addLatencyHistogram(latencyHistogram);
+        }
+        results.setParameters(parameters);
+        for (Metric metric : customMetrics.values())
+        {
+            results.defineMetric(metric);
+        }
+        return results;
+    }
+
+    private Map<String, Double> runFork(int fork, List<Map<String, Double>> passes, Map<String, Metric> customMetrics, LatencyHistogram latencyHistogram) throws IOException, InterruptedException
+    {
+        ProcessBuilder processBuilder = new ProcessBuilder(buildCommand());
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        Map<String, Double> average = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!ForkedTestMain.isResultsLine(line))
+                {
+                    System.out.println(line);
+                }
+                else if (ForkedTestMain.MEASURED_PASS.equals(ForkedTestMain.parseKind(line)))
+                {
+                    passes.add(ForkedTestMain.parseResults(line));
+                }
+                else if (ForkedTestMain.AVERAGE.equals(ForkedTestMain.parseKind(line)))
+                {
+                    average = ForkedTestMain.parseResults(line);
+                }
+                else if (ForkedTestMain.METRICS.equals(ForkedTestMain.parseKind(line)))
+                {
+                    customMetrics.putAll(ForkedTestMain.parseMetrics(line));
+                }
+                else if (ForkedTestMain.HISTOGRAM.equals(ForkedTestMain.parseKind(line)))
+                {
+                    latencyHistogram.add(ForkedTestMain.parseHistogram(line));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || average == null)
+        {
+            Assert.fail("Fork " + fork + " of " + methodName + " failed with exit code " + exitCode);
+        }
+        return average;
+    }
+
+    private List<String> buildCommand()
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments())
+        {
+            // a second debugger or coverage agent on the same port would stop the child starting
+            if (!argument.startsWith("-agentlib") && !argument.startsWith("-javaagent") && !argument.startsWith("-Xrunjdwp") && !argument.equals("-Xdebug"))
+            {
+                command.add(argument);
+            }
+        }
+        command.add("-D" + ForkedTestMain.FORKED_PROPERTY + "=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedTestMain.class.getName());
+        command.add(testClass.getName());
+        command.add(methodName);
+        return command;
+    }
+
+    private PerformanceTestResultsImpl aggregate(BuildInfo buildInfo, String groupName, String testName, List<Map<String, Double>> forkAverages, List<List<Map<String, Double>>> forkPasses)
+    {
+        Set<String> attributes = new HashSet<String>();
+        for (Map<String, Double> average : forkAverages)
+        {
+            attributes.addAll(average.keySet());
+        }
+
+        Map<String, Double> attributeAverages = new HashMap<String, Double>();
+        for (String attributeName : attributes)
+        {
+            attributeAverages.put(attributeName, mean(getValues(attributeName, forkAverages)));
+        }
+        // the mean of the forks' percentiles isn't a percentile of anything,
+        // so they're only reported when taken from all the forks' latencies
+        for (String percentileAttribute : PerformanceTestResults.LATENCY_PERCENTILE_ATTRIBUTES)
+        {
+            attributeAverages.remove(percentileAttribute);
+        }
+        if (singleShot)
+        {
+            addLatencyDistribution(attributeAverages, getValues(PerformanceTestResults.LATENCY, forkAverages));
+        }
+        PerformanceTestResultsImpl results = new PerformanceTestResultsImpl(buildInfo, groupName, testName, attributeAverages);
+
+        for (String attributeName : attributes)
+        {
+            double betweenForks = variance(getValues(attributeName, forkAverages));
+            double withinForks = 0;
+            int forksWithVariance = 0;
+            for (List<Map<String, Double>> passes : forkPasses)
+            {
+                List<Double> values = getValues(attributeName, passes);
+                if (values.size() > 1)
+                {
+                    withinForks += variance(values);
+                    forksWithVariance++;
+                }
+            }
+            if (forksWithVariance > 0)
+            {
+                withinForks /= forksWithVariance;
+            }
+            results.setAttribute(attributeName + BETWEEN_FORKS_VARIANCE_SUFFIX, betweenForks);
+            results.setAttribute(attributeName + WITHIN_FORKS_VARIANCE_SUFFIX, withinForks);
+            LOG.info(groupName + " - " + testName + "." + attributeName + " variance between forks = " + String.format("%f", betweenForks) + ", within forks = "
+                    + String.format("%f", withinForks));
+        }
+        return results;
+    }
+
+    /**
+     * The percentiles, minimum and maximum of the latencies of the single
+     * calls made by each fork.
+     */
+    private void addLatencyDistribution(Map<String, Double> attributes, List<Double> latencies)
+    {
+        if (latencies.isEmpty())
+        {
+            return;
+        }
+        double[] sortedLatencies = new double[latencies.size()];
+        for (int i = 0; i < sortedLatencies.length; ++i)
+        {
+            sortedLatencies[i] = latencies.get(i);
+        }
+        Arrays.sort(sortedLatencies);
+        for (int i = 0; i < PerformanceTestResults.LATENCY_PERCENTILES.length; ++i)
+        {
+            attributes.put(PerformanceTestResults.LATENCY_PERCENTILE_ATTRIBUTES[i], Statistics.quantile(sortedLatencies, PerformanceTestResults.LATENCY_PERCENTILES[i] / 100));
+        }
+        attributes.put(PerformanceTestResults.MIN_LATENCY, sortedLatencies[0]);
+        attributes.put(PerformanceTestResults.MAX_LATENCY, sortedLatencies[sortedLatencies.length - 1]);
+    }
+
+    private List<Double> getValues(String attributeName, List<Map<String, Double>> maps)
+    {
+        List<Double> values = new LinkedList<Double>();
+        for (Map<String, Double> map : maps)
+        {
+            Double value = map.get(attributeName);
+            if (value != null)
+            {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private double mean(List<Double> values)
+    {
+        double total = 0;
+        for (Double value : values)
+        {
+            total += value;
+        }
+        return total / values.size();
+    }
+
+    private double variance(List<Double> values)
+    {
+        if (values.size() < 2)
+        {
+            return 0;
+        }
+        double mean = mean(values);
+        double total = 0;
+        for (Double value : values)
+        {
+            total += (value - mean) * (value - mean);
+        }
+        return total / (values.size() - 1);
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.lewisd.jmicrobench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Entry point of the child JVMs started by {@link ForkedTestLauncher}. It
+ * runs a single test method, and the runner in the child streams the
+ * results of each pass back to the parent as specially prefixed lines on
+ * standard out.
+ */
+public class ForkedTestMain
+{
+    static final String FORKED_PROPERTY = "jmicrobench.forked";
+    static final String WARMUP_PASS = "warmup";
+    static final String MEASURED_PASS = "pass";
+    static final String AVERAGE = "average";
+    static final String METRICS = "metrics";
+    static final String HISTOGRAM = "histogram";
+    private static final String HIGHER_IS_BETTER = "higher";
+    private static final String LOWER_IS_BETTER = "lower";
+    private static final String HISTOGRAM_MIN = "min";
+    private static final String HISTOGRAM_MAX = "max";
+    private static final String HISTOGRAM_SUM = "sum";
+    private static final String HISTOGRAM_SUM_OF_SQUARES = "sum_of_squares";
+
+    private static final String RESULTS_PREFIX = "#jmicrobench-results ";
+
+    public static boolean isForked()
+    {
+        return Boolean.getBoolean(FORKED_PROPERTY);
+    }
+
+    static void writeResults(String kind, PerformanceTestResults results)
+    {
+        StringBuilder line = new StringBuilder(RESULTS_PREFIX).append(kind).append(' ');
+        Map<String, Double> valuesAsMap = results.asMap();
+        boolean first = true;
+        for (String attributeName : valuesAsMap.keySet())
+        {
+            if (!first)
+            {
+                line.append(',');
+            }
+            line.append(attributeName).append('=').append(valuesAsMap.get(attributeName));
+            first = false;
+        }
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    /**
+     * Writes the units and directions of the test's custom metrics, which
+     * aren't part of the values written by
+     * {@link #writeResults(String, PerformanceTestResults)}.
+     */
+    static void writeMetrics(PerformanceTestResults results)
+    {
+        StringBuilder line = new StringBuilder(RESULTS_PREFIX).append(METRICS).append(' ');
+        boolean first = true;
+        for (Metric metric : results.getCustomMetrics().values())
+        {
+            if (!first)
+            {
+                line.append(',');
+            }
+            line.append(metric.getName()).append('=').append(metric.isHigherBetter() ? HIGHER_IS_BETTER : LOWER_IS_BETTER).append(':').append(metric.getUnit());
+            first = false;
+        }
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    static Map<String, Metric> parseMetrics(String line)
+    {
+        String body = line.substring(RESULTS_PREFIX.length());
+        String values = body.substring(body.indexOf(' ') + 1);
+        Map<String, Metric> metrics = new HashMap<String, Metric>();
+        if (values.isEmpty())
+        {
+            return metrics;
+        }
+        for (String value : values.split(","))
+        {
+            int separator = value.indexOf('=');
+            int unitSeparator = value.indexOf(':', separator);
+            String name = value.substring(0, separator);
+            boolean higherIsBetter = HIGHER_IS_BETTER.equals(value.substring(separator + 1, unitSeparator));
+            metrics.put(name, new Metric(name, value.substring(unitSeparator + 1), higherIsBetter));
+        }
+        return metrics;
+    }
+
+    /**
+     * Writes the latency histogram the average results were taken from, so
+     * that the parent can merge the histograms of all the forks rather than
+     * averaging their percentiles.
+     */
+    static void writeHistogram(LatencyHistogram histogram)
+    {
+        System.out.println(formatHistogram(histogram));
+        System.out.flush();
+    }
+
+    /**
+     * Formats the histogram's totals, followed by the index and count of
+     * each of its buckets that isn't empty.
+     */
+    static String formatHistogram(LatencyHistogram histogram)
+    {
+        StringBuilder line = new StringBuilder(RESULTS_PREFIX).append(HISTOGRAM).append(' ');
+        line.append(HISTOGRAM_MIN).append('=').append(histogram.getMinValue());
+        line.append(',').append(HISTOGRAM_MAX).append('=').append(histogram.getMaxValue());
+        line.append(',').append(HISTOGRAM_SUM).append('=').append(histogram.getSum());
+        line.append(',').append(HISTOGRAM_SUM_OF_SQUARES).append('=').append(histogram.getSumOfSquares());
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i)
+        {
+            long count = histogram.getCountAtIndex(i);
+            if (count != 0)
+            {
+                line.append(',').append(i).append('=').append(count);
+            }
+        }
+        return line.toString();
+    }
+
+    static LatencyHistogram parseHistogram(String line)
+    {
+        String body = line.substring(RESULTS_PREFIX.length());
+        String values = body.substring(body.indexOf(' ') + 1);
+        long minValue = 0;
+        long maxValue = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        for (String value : values.split(","))
+        {
+            int separator = value.indexOf('=');
+            String name = value.substring(0, separator);
+            String number = value.substring(separator + 1);
+            if (HISTOGRAM_MIN.equals(name))
+            {
+                minValue = Long.parseLong(number);
+            }
+            else if (HISTOGRAM_MAX.equals(name))
+            {
+                maxValue = Long.parseLong(number);
+            }
+            else if (HISTOGRAM_SUM.equals(name))
+            {
+                sum = Double.parseDouble(number);
+            }
+            else if (HISTOGRAM_SUM_OF_SQUARES.equals(name))
+            {
+                sumOfSquares = Double.parseDouble(number);
+            }
+            else
+            {
+                counts[Integer.parseInt(name)] = Long.parseLong(number);
+            }
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.addCounts(counts, minValue, maxValue, sum, sumOfSquares);
+        return histogram;
+    }
+
+    static boolean isResultsLine(String line)
+    {
+        return line.startsWith(RESULTS_PREFIX);
+    }
+
+    static String parseKind(String line)
+    {
+        String body = line.substring(RESULTS_PREFIX.length());
+        return body.substring(0, body.indexOf(' '));
+    }
+
+    static Map<String, Double> parseResults(String line)
+    {
+        String body = line.substring(RESULTS_PREFIX.length());
+        String values = body.substring(body.indexOf(' ') + 1);
+        Map<String, Double> map = new HashMap<String, Double>();
+        if (values.isEmpty())
+        {
+            return map;
+        }
+        for (String value : values.split(","))
+        {
+            int separator = value.indexOf('=');
+            map.put(value.substring(0, separator), Double.valueOf(value.substring(separator + 1)));
+        }
+        return map;
+    }
+
+    public static void main(String[] args) throws ClassNotFoundException
+    {
+        Class<?> testClass = Class.forName(args[0]);
+        Result result = new JUnitCore().run(Request.method(testClass, args[1]));
+        for (Failure failure : result.getFailures())
+        {
+            System.err.println(failure.getTestHeader());
+            System.err.println(failure.getTrace());
+        }
+        System.exit(result.wasSuccessful() ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.log4j.Logger;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+/**
+ * Records the garbage collections that happen while a pass runs. The count
+ * is read from the GarbageCollectorMXBeans, and the pauses, bytes promoted,
+ * and whether there was a major collection come from their notifications,
+ * falling back to the MXBeans' total time if some notifications are late.
+ * Only stop-the-world collections count as pauses; the whole length of a
+ * concurrent cycle isn't a pause, since the application runs during most of
+ * it.
+ */
+public class GcMonitor implements NotificationListener
+{
+    private static final Logger LOG = Logger.getLogger(GcMonitor.class);
+    // notifications are sent from a service thread, so they can arrive a
+    // little after the collection
+    private static final long NOTIFICATION_WAIT_MILLIS = 100;
+    // the collectors that report a whole concurrent cycle as one collection;
+    // ZGC and Shenandoah have a separate "Cycles" collector for that from Java 17
+    private static final Set<String> CONCURRENT_COLLECTOR_NAMES = new HashSet<String>(Arrays.asList("ConcurrentMarkSweep", "ZGC"));
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final Set<String> oldGenPoolNames = findOldGenPoolNames();
+
+    private final Map<String, Long> collectionCountsBefore = new HashMap<String, Long>();
+    private long collectionCountBefore;
+    private long collectionTimeBefore;
+
+    private int notifications;
+    private long totalPauseMillis;
+    private long maxPauseMillis;
+    private long promotedBytes;
+    private int majorCollections;
+
+    private static Set<String> findOldGenPoolNames()
+    {
+        Set<String> names = new HashSet<String>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && (pool.getName().contains("Old") || pool.getName().contains("Tenured")))
+            {
+                names.add(pool.getName());
+            }
+        }
+        return names;
+    }
+
+    public void start()
+    {
+        synchronized (this)
+        {
+            notifications = 0;
+            totalPauseMillis = 0;
+            maxPauseMillis = 0;
+            promotedBytes = 0;
+            majorCollections = 0;
+            for (GarbageCollectorMXBean collector : collectors)
+            {
+                collectionCountsBefore.put(collector.getName(), Long.valueOf(collector.getCollectionCount()));
+            }
+        }
+        collectionCountBefore = getCollectionCount();
+        collectionTimeBefore = getCollectionTime();
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            if (collector instanceof NotificationEmitter)
+            {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    /**
+     * Stops listening, and sets the attributes for the collections since
+     * start() on the results.
+     */
+    public void stop(PerformanceTestResultsImpl results) throws InterruptedException
+    {
+        long collectionCount = getCollectionCount() - collectionCountBefore;
+        long collectionTime = getCollectionTime() - collectionTimeBefore;
+        waitForNotifications(collectionCount);
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            if (collector instanceof NotificationEmitter)
+            {
+                try
+                {
+                    ((NotificationEmitter) collector).removeNotificationListener(this);
+                }
+                catch (ListenerNotFoundException e)
+                {
+                    LOG.warn("GC listener was already removed from " + collector.getName());
+                }
+            }
+        }
+        synchronized (this)
+        {
+            results.setAttribute(PerformanceTestResults.GC_COUNT, collectionCount);
+            // the collectors round their times separately from the
+            // notifications, so the notifications are used when they're all in
+            if (notifications >= collectionCount)
+            {
+                results.setAttribute(PerformanceTestResults.GC_PAUSE_MILLIS, totalPauseMillis);
+            }
+            else
+            {
+                results.setAttribute(PerformanceTestResults.GC_PAUSE_MILLIS, Math.max(collectionTime, totalPauseMillis));
+            }
+            results.setAttribute(PerformanceTestResults.GC_MAX_PAUSE_MILLIS, maxPauseMillis);
+            results.setAttribute(PerformanceTestResults.GC_PROMOTED_BYTES, promotedBytes);
+            results.setAttribute(PerformanceTestResults.MAJOR_GC_COUNT, majorCollections);
+        }
+    }
+
+    private synchronized void waitForNotifications(long collectionCount) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + NOTIFICATION_WAIT_MILLIS;
+        long remaining = NOTIFICATION_WAIT_MILLIS;
+        while (notifications < collectionCount && remaining > 0)
+        {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public synchronized void handleNotification(Notification notification, Object handback)
+    {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+        {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+        Long collectionCountBefore = collectionCountsBefore.get(info.getGcName());
+        // the id is the collector's collection count, so it tells the
+        // collections from before this pass apart from late notifications
+        if (collectionCountBefore == null || gcInfo.getId() <= collectionCountBefore.longValue())
+        {
+            // a late notification for a collection before this pass
+            return;
+        }
+        notifications++;
+        if (!isConcurrentCycle(info.getGcName(), info.getGcAction()))
+        {
+            totalPauseMillis += gcInfo.getDuration();
+            maxPauseMillis = Math.max(maxPauseMillis, gcInfo.getDuration());
+        }
+        if (info.getGcAction().contains("major"))
+        {
+            majorCollections++;
+        }
+        promotedBytes += getOldGenGrowth(gcInfo.getMemoryUsageBeforeGc(), gcInfo.getMemoryUsageAfterGc());
+        notifyAll();
+    }
+
+    /**
+     * Whether the collector's collections are concurrent cycles, rather than
+     * stop-the-world pauses. A collector with an unknown name is assumed to
+     * pause, unless its action says it ran a cycle.
+     */
+    static boolean isConcurrentCycle(String gcName, String gcAction)
+    {
+        return CONCURRENT_COLLECTOR_NAMES.contains(gcName) || gcName.endsWith("Cycles") || gcAction.contains("cycle");
+    }
+
+    private long getOldGenGrowth(Map<String, MemoryUsage> before, Map<String, MemoryUsage> after)
+    {
+        long growth = 0;
+        for (String poolName : oldGenPoolNames)
+        {
+            if (before.containsKey(poolName) && after.containsKey(poolName))
+            {
+                growth += Math.max(after.get(poolName).getUsed() - before.get(poolName).getUsed(), 0);
+            }
+        }
+        return growth;
+    }
+
+    private long getCollectionCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private long getCollectionTime()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            if (!isConcurrentCycle(collector.getName(), ""))
+            {
+                time += Math.max(collector.getCollectionTime(), 0);
+            }
+        }
+        return time;
+    }
+
+}
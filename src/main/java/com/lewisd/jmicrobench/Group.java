@@ -0,0 +1,29 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a test method in a group of methods that are run together as one
+ * test, each on its own number of threads, against the same test instance.
+ * For example, a put() method with 3 threads and a get() method with 5
+ * threads in the same group measure a map under mixed read/write load.
+ * <p>
+ * The combined results are stored under the group's name, and each
+ * method's operations, throughput and latency are stored as well, as
+ * attributes prefixed with the method's name, eg. "put.opsPerSecond". The
+ * {@link PerformanceTest} settings can be put on at most one of the methods
+ * in a group, and apply to the whole group.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.METHOD })
+public @interface Group
+{
+
+    String value();
+
+    int threads() default 1;
+
+}
@@ -0,0 +1,91 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * The methods of a {@link Group}, which run as a single test named after the
+ * group. The annotations of the test are those of the member that has the
+ * {@link PerformanceTest} settings, or of the first member otherwise.
+ */
+public class GroupFrameworkMethod extends ParameterizedFrameworkMethod
+{
+    private final String groupName;
+    private final List<FrameworkMethod> members;
+
+    public GroupFrameworkMethod(String groupName, List<FrameworkMethod> members, Map<Field, String> values)
+    {
+        super(findConfiguredMember(members), values);
+        this.groupName = groupName;
+        this.members = members;
+    }
+
+    private static Method findConfiguredMember(List<FrameworkMethod> members)
+    {
+        for (FrameworkMethod member : members)
+        {
+            if (member.getAnnotation(PerformanceTest.class) != null)
+            {
+                return member.getMethod();
+            }
+        }
+        return members.get(0).getMethod();
+    }
+
+    public GroupFrameworkMethod withParameters(Map<Field, String> values)
+    {
+        return new GroupFrameworkMethod(groupName, members, values);
+    }
+
+    @Override
+    public String getName()
+    {
+        return groupName;
+    }
+
+    public List<FrameworkMethod> getMembers()
+    {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * The member each thread runs, with each member repeated once for each of
+     * its threads.
+     */
+    public List<FrameworkMethod> getThreadMembers()
+    {
+        List<FrameworkMethod> threadMembers = new ArrayList<FrameworkMethod>();
+        for (FrameworkMethod member : members)
+        {
+            for (int i = 0; i < member.getAnnotation(Group.class).threads(); ++i)
+            {
+                threadMembers.add(member);
+            }
+        }
+        return threadMembers;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof GroupFrameworkMethod))
+        {
+            return false;
+        }
+        GroupFrameworkMethod other = (GroupFrameworkMethod) obj;
+        return groupName.equals(other.groupName) && getParameters().equals(other.getParameters());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return groupName.hashCode() * 31 + getParameters().hashCode();
+    }
+
+}
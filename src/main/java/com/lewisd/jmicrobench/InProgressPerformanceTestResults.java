@@ -4,12 +4,12 @@ package com.lewisd.jmicrobench;
 public class InProgressPerformanceTestResults extends PerformanceTestResultsImpl
 {
     
-    private final PerformanceTestRunner runner;
+    private final DurationTimer timer;
     
-    public InProgressPerformanceTestResults(BuildInfo buildInfo, String testGroupName, String testName, PerformanceTestRunner runner)
+    public InProgressPerformanceTestResults(BuildInfo buildInfo, String testGroupName, String testName, DurationTimer timer)
     {
         super(buildInfo, testGroupName, testName);
-        this.runner = runner;
+        this.timer = timer;
     }
 
 
@@ -22,10 +22,19 @@ public class InProgressPerformanceTestResults extends PerformanceTestResultsImpl
         }
         else
         {
-            return runner.getActualDurationNanos();
+            return timer.getActualDurationNanos();
         }
     }
 
+    /**
+     * Whether the duration is the one measured by the timer, rather than one
+     * set by the test.
+     */
+    public boolean isDurationTimed()
+    {
+        return !super.hasDurationNanos();
+    }
+
     @Override
     public double getOperationsPerSecond()
     {
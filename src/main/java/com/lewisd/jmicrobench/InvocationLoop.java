@@ -0,0 +1,608 @@
+package com.lewisd.jmicrobench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Calls a test method repeatedly in batches, checking the timer only once
+ * per batch. The test method is called through an interface implementation
+ * generated by {@link LambdaMetafactory}, so after inlining a call costs the
+ * same as calling the method directly, instead of going through reflection
+ * and the JUnit statement chain. Primitive return values are passed to the
+ * blackhole's overload for their type, so they're never boxed. Each
+ * benchmark gets a copy of the loop class of its own, defined by a class
+ * loader of its own, so the JIT profiles the call to the invoker separately
+ * for each one, and it stays monomorphic however many benchmarks have run in
+ * the JVM.
+ */
+public abstract class InvocationLoop
+{
+    private static final Logger LOG = Logger.getLogger(InvocationLoop.class);
+    // MethodHandles.privateLookupIn needs Java 9, so it's found reflectively
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    public interface Invoker
+    {
+        Object invoke(Object target) throws Throwable;
+    }
+
+    public interface VoidInvoker
+    {
+        void invoke(Object target) throws Throwable;
+    }
+
+    public interface BooleanInvoker
+    {
+        boolean invoke(Object target) throws Throwable;
+    }
+
+    public interface ByteInvoker
+    {
+        byte invoke(Object target) throws Throwable;
+    }
+
+    public interface CharInvoker
+    {
+        char invoke(Object target) throws Throwable;
+    }
+
+    public interface ShortInvoker
+    {
+        short invoke(Object target) throws Throwable;
+    }
+
+    public interface IntInvoker
+    {
+        int invoke(Object target) throws Throwable;
+    }
+
+    public interface LongInvoker
+    {
+        long invoke(Object target) throws Throwable;
+    }
+
+    public interface FloatInvoker
+    {
+        float invoke(Object target) throws Throwable;
+    }
+
+    public interface DoubleInvoker
+    {
+        double invoke(Object target) throws Throwable;
+    }
+
+    protected final int batchSize;
+
+    protected InvocationLoop(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Calls the test method in batches until the timer has run long enough,
+     * and returns the number of calls made.
+     */
+    public abstract long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable;
+
+    private static Method findPrivateLookupIn()
+    {
+        try
+        {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    public static InvocationLoop create(Method method, int batchSize)
+    {
+        MethodHandle handle;
+        MethodHandles.Lookup lookup;
+        try
+        {
+            lookup = getLookup(method.getDeclaringClass());
+            handle = lookup.unreflect(method);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException("Can't access test method " + method, e);
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == Void.TYPE)
+        {
+            return newLoop(VoidInvocationLoop.class, VoidInvoker.class, createVoidInvoker(lookup, handle), batchSize);
+        }
+        else if (returnType.isPrimitive())
+        {
+            return createPrimitiveLoop(lookup, handle, returnType, batchSize);
+        }
+        else
+        {
+            return newLoop(ValueInvocationLoop.class, Invoker.class, createInvoker(lookup, handle), batchSize);
+        }
+    }
+
+    /**
+     * Creates a loop whose invoker returns the primitive the test method
+     * returns, so the value reaches the blackhole without being boxed, or a
+     * loop that boxes it if the invoker can't be generated.
+     */
+    private static InvocationLoop createPrimitiveLoop(MethodHandles.Lookup lookup, MethodHandle handle, Class<?> returnType, int batchSize)
+    {
+        Class<? extends InvocationLoop> loopClass;
+        Class<?> invokerType;
+        if (returnType == Boolean.TYPE)
+        {
+            loopClass = BooleanInvocationLoop.class;
+            invokerType = BooleanInvoker.class;
+        }
+        else if (returnType == Byte.TYPE)
+        {
+            loopClass = ByteInvocationLoop.class;
+            invokerType = ByteInvoker.class;
+        }
+        else if (returnType == Character.TYPE)
+        {
+            loopClass = CharInvocationLoop.class;
+            invokerType = CharInvoker.class;
+        }
+        else if (returnType == Short.TYPE)
+        {
+            loopClass = ShortInvocationLoop.class;
+            invokerType = ShortInvoker.class;
+        }
+        else if (returnType == Integer.TYPE)
+        {
+            loopClass = IntInvocationLoop.class;
+            invokerType = IntInvoker.class;
+        }
+        else if (returnType == Long.TYPE)
+        {
+            loopClass = LongInvocationLoop.class;
+            invokerType = LongInvoker.class;
+        }
+        else if (returnType == Float.TYPE)
+        {
+            loopClass = FloatInvocationLoop.class;
+            invokerType = FloatInvoker.class;
+        }
+        else if (returnType == Double.TYPE)
+        {
+            loopClass = DoubleInvocationLoop.class;
+            invokerType = DoubleInvoker.class;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unexpected return type " + returnType);
+        }
+        Object invoker;
+        try
+        {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(invokerType), MethodType.methodType(returnType, Object.class), handle, handle.type());
+            invoker = site.getTarget().invoke();
+        }
+        catch (Throwable t)
+        {
+            return newLoop(ValueInvocationLoop.class, Invoker.class, createInvoker(lookup, handle), batchSize);
+        }
+        return newLoop(loopClass, invokerType, invoker, batchSize);
+    }
+
+    /**
+     * A lookup in the test class where the JVM allows it, so the invoker is
+     * defined alongside the test, or this class's own lookup on Java 8, which
+     * can still reach the public test methods.
+     */
+    private static MethodHandles.Lookup getLookup(Class<?> testClass) throws IllegalAccessException
+    {
+        if (PRIVATE_LOOKUP_IN == null)
+        {
+            return MethodHandles.lookup();
+        }
+        try
+        {
+            return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, testClass, MethodHandles.lookup());
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getCause() instanceof IllegalAccessException)
+            {
+                throw (IllegalAccessException) e.getCause();
+            }
+            throw new IllegalStateException("Can't look up test class " + testClass, e.getCause());
+        }
+    }
+
+    /**
+     * Creates the loop from a new copy of the loop class, or from the shared
+     * class if the copy can't be defined.
+     */
+    private static InvocationLoop newLoop(Class<? extends InvocationLoop> loopClass, Class<?> invokerType, Object invoker, int batchSize)
+    {
+        Class<?> copy;
+        try
+        {
+            copy = new LoopClassLoader(loopClass.getClassLoader()).defineCopy(loopClass);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to copy " + loopClass.getName() + ", so the call to the test method may not be inlined", e);
+            copy = loopClass;
+        }
+        try
+        {
+            Constructor<?> constructor = copy.getDeclaredConstructor(invokerType, Integer.TYPE);
+            constructor.setAccessible(true);
+            return (InvocationLoop) constructor.newInstance(invoker, Integer.valueOf(batchSize));
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException("Unable to create " + loopClass.getName(), e);
+        }
+    }
+
+    private static VoidInvoker createVoidInvoker(MethodHandles.Lookup lookup, final MethodHandle handle)
+    {
+        try
+        {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(VoidInvoker.class), MethodType.methodType(Void.TYPE, Object.class), handle, handle.type());
+            return (VoidInvoker) site.getTarget().invoke();
+        }
+        catch (Throwable t)
+        {
+            // fall back to the method handle, which is slower but still avoids reflection
+            return new VoidInvoker()
+            {
+                @Override
+                public void invoke(Object target) throws Throwable
+                {
+                    handle.invoke(target);
+                }
+            };
+        }
+    }
+
+    private static Invoker createInvoker(MethodHandles.Lookup lookup, final MethodHandle handle)
+    {
+        try
+        {
+            MethodType instantiatedType = handle.type().changeReturnType(handle.type().wrap().returnType());
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(Invoker.class), MethodType.methodType(Object.class, Object.class), handle, instantiatedType);
+            return (Invoker) site.getTarget().invoke();
+        }
+        catch (Throwable t)
+        {
+            // fall back to the method handle, which is slower but still avoids reflection
+            return new Invoker()
+            {
+                @Override
+                public Object invoke(Object target) throws Throwable
+                {
+                    return handle.invoke(target);
+                }
+            };
+        }
+    }
+
+    /**
+     * Defines a copy of a class from the same bytes as the original, which
+     * resolves everything else through the parent.
+     */
+    private static class LoopClassLoader extends ClassLoader
+    {
+        LoopClassLoader(ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        Class<?> defineCopy(Class<?> original) throws IOException
+        {
+            InputStream in = getParent().getResourceAsStream(original.getName().replace('.', '/') + ".class");
+            if (in == null)
+            {
+                throw new IOException("Class file of " + original.getName() + " not found");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try
+            {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) >= 0)
+                {
+                    bytes.write(buffer, 0, read);
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            return defineClass(original.getName(), bytes.toByteArray(), 0, bytes.size());
+        }
+    }
+
+    private static class VoidInvocationLoop extends InvocationLoop
+    {
+        private final VoidInvoker invoker;
+
+        VoidInvocationLoop(VoidInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    invoker.invoke(target);
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class ValueInvocationLoop extends InvocationLoop
+    {
+        private final Invoker invoker;
+
+        ValueInvocationLoop(Invoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+
+    private static class BooleanInvocationLoop extends InvocationLoop
+    {
+        private final BooleanInvoker invoker;
+
+        BooleanInvocationLoop(BooleanInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class ByteInvocationLoop extends InvocationLoop
+    {
+        private final ByteInvoker invoker;
+
+        ByteInvocationLoop(ByteInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class CharInvocationLoop extends InvocationLoop
+    {
+        private final CharInvoker invoker;
+
+        CharInvocationLoop(CharInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class ShortInvocationLoop extends InvocationLoop
+    {
+        private final ShortInvoker invoker;
+
+        ShortInvocationLoop(ShortInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class IntInvocationLoop extends InvocationLoop
+    {
+        private final IntInvoker invoker;
+
+        IntInvocationLoop(IntInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class LongInvocationLoop extends InvocationLoop
+    {
+        private final LongInvoker invoker;
+
+        LongInvocationLoop(LongInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class FloatInvocationLoop extends InvocationLoop
+    {
+        private final FloatInvoker invoker;
+
+        FloatInvocationLoop(FloatInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+    private static class DoubleInvocationLoop extends InvocationLoop
+    {
+        private final DoubleInvoker invoker;
+
+        DoubleInvocationLoop(DoubleInvoker invoker, int batchSize)
+        {
+            super(batchSize);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public long run(Object target, DurationTimer timer, Blackhole blackhole) throws Throwable
+        {
+            long operations = 0;
+            do
+            {
+                for (int i = 0; i < batchSize; ++i)
+                {
+                    blackhole.consume(invoker.invoke(target));
+                }
+                operations += batchSize;
+            }
+            while (!timer.hasRunLongEnough());
+            return operations;
+        }
+    }
+
+}
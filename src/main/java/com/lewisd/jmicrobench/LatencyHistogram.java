@@ -0,0 +1,185 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * Fixed-size histogram of latencies in nanoseconds, with logarithmic
+ * buckets. Values below 2^SUB_BUCKET_BITS are counted exactly, larger values
+ * are counted in buckets whose width is at most 1/64th of their value, so
+ * any percentile is within about 1.6% of the true value.
+ * <p>
+ * Recording a value never allocates, and is not thread-safe; each benchmark
+ * thread records into its own histogram, and they are merged afterwards.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = 0;
+    private double sum;
+    private double sumOfSquares;
+
+    public void recordValue(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        if (value < minValue)
+        {
+            minValue = value;
+        }
+        if (value > maxValue)
+        {
+            maxValue = value;
+        }
+    }
+
+    public void add(LatencyHistogram other)
+    {
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    /**
+     * Adds counts that were recorded elsewhere, such as in another JVM, along
+     * with the minimum, maximum, sum and sum of squares of the values they
+     * were recorded from.
+     */
+    void addCounts(long[] bucketCounts, long otherMinValue, long otherMaxValue, double otherSum, double otherSumOfSquares)
+    {
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            counts[i] += bucketCounts[i];
+            totalCount += bucketCounts[i];
+        }
+        sum += otherSum;
+        sumOfSquares += otherSumOfSquares;
+        minValue = Math.min(minValue, otherMinValue);
+        maxValue = Math.max(maxValue, otherMaxValue);
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    long getCountAtIndex(int index)
+    {
+        return counts[index];
+    }
+
+    double getSum()
+    {
+        return sum;
+    }
+
+    double getSumOfSquares()
+    {
+        return sumOfSquares;
+    }
+
+    public long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    public long getMinValue()
+    {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long getMaxValue()
+    {
+        return maxValue;
+    }
+
+    public double getMean()
+    {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public double getStandardDeviation()
+    {
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+        double mean = getMean();
+        double variance = (sumOfSquares / totalCount) - (mean * mean);
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * Returns the highest value that is equivalent to the value at the given
+     * percentile, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+        long countAtPercentile = (long) Math.ceil(totalCount * Math.min(percentile, 100.0) / 100.0);
+        if (countAtPercentile < 1)
+        {
+            countAtPercentile = 1;
+        }
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= countAtPercentile)
+            {
+                return Math.max(Math.min(highestEquivalentValue(i), maxValue), minValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return (shift * SUB_BUCKET_HALF_COUNT) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+        int shift = (index / SUB_BUCKET_HALF_COUNT) - 1;
+        long subBucket = index - (shift * SUB_BUCKET_HALF_COUNT);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * What an attribute measures: its unit, and whether a higher value is an
+ * improvement or a regression.
+ */
+public class Metric
+{
+    // the width of the unit column in test_results.ddl
+    private static final int MAX_UNIT_LENGTH = 20;
+    // the width of the attribute column in test_results.ddl, which has to
+    // hold the name along with the suffixes of its dispersion across passes
+    // and of its variance across forks
+    private static final int MAX_ATTRIBUTE_LENGTH = 100;
+    private static final int MAX_NAME_LENGTH = MAX_ATTRIBUTE_LENGTH
+            - longestLength(PerformanceTestResults.STD_DEV_SUFFIX, PerformanceTestResults.MAD_SUFFIX, PerformanceTestResults.CI95_SUFFIX)
+            - longestLength(ForkedTestLauncher.BETWEEN_FORKS_VARIANCE_SUFFIX, ForkedTestLauncher.WITHIN_FORKS_VARIANCE_SUFFIX);
+
+    public static final Metric OPS_PER_SECOND = new Metric(PerformanceTestResults.OPS_PER_SECOND, "ops/s", true);
+    public static final Metric LATENCY = new Metric(PerformanceTestResults.LATENCY, "ns", false);
+    public static final Metric MEMORY = new Metric(PerformanceTestResults.MEMORY, "bytes", false);
+    public static final Metric OPERATIONS = new Metric(PerformanceTestResults.OPERATIONS, "ops", true);
+    public static final Metric DURATION_NANOS = new Metric(PerformanceTestResults.DURATION_NANOS, "ns", false);
+    public static final Metric TIME_TO_90_PERCENT_THROUGHPUT = new Metric(PerformanceTestResults.TIME_TO_90_PERCENT_THROUGHPUT, "ns", false);
+    public static final Metric WARMUP_OPERATIONS = new Metric(PerformanceTestResults.WARMUP_OPERATIONS, "ops", false);
+
+    private final String name;
+    private final String unit;
+    private final boolean higherIsBetter;
+
+    public Metric(String name, String unit, boolean higherIsBetter)
+    {
+        if (name == null || name.length() == 0)
+        {
+            throw new IllegalArgumentException("A metric must have a name");
+        }
+        // names and units are written as name=value pairs to forked JVMs' output
+        if (name.contains(",") || name.contains("=") || name.contains(":"))
+        {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        if (name.length() > MAX_NAME_LENGTH)
+        {
+            throw new IllegalArgumentException("The name of metric " + name + " must be at most " + MAX_NAME_LENGTH + " characters");
+        }
+        if (unit == null || unit.contains(","))
+        {
+            throw new IllegalArgumentException("Invalid unit for metric " + name + ": " + unit);
+        }
+        if (unit.length() > MAX_UNIT_LENGTH)
+        {
+            throw new IllegalArgumentException("The unit for metric " + name + " must be at most " + MAX_UNIT_LENGTH + " characters: " + unit);
+        }
+        this.name = name;
+        this.unit = unit;
+        this.higherIsBetter = higherIsBetter;
+    }
+
+    private static int longestLength(String... suffixes)
+    {
+        int longest = 0;
+        for (String suffix : suffixes)
+        {
+            longest = Math.max(longest, suffix.length());
+        }
+        return longest;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getUnit()
+    {
+        return unit;
+    }
+
+    public boolean isHigherBetter()
+    {
+        return higherIsBetter;
+    }
+
+    /**
+     * Whether going from one value to another is an improvement.
+     */
+    public boolean isImprovement(double from, double to)
+    {
+        return higherIsBetter ? to > from : to < from;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof Metric))
+        {
+            return false;
+        }
+        Metric other = (Metric) obj;
+        return name.equals(other.name) && unit.equals(other.unit) && higherIsBetter == other.higherIsBetter;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return name.hashCode() * 31 + unit.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " (" + unit + ", " + (higherIsBetter ? "higher" : "lower") + " is better)";
+    }
+
+}
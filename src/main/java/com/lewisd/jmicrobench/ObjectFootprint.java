@@ -0,0 +1,393 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The exact size of everything reachable from a root object, walked
+ * through its instance fields and array elements, with the size of each
+ * object taken from the field offsets the JVM actually chose, so it
+ * includes headers, padding and alignment. Class objects and static fields
+ * aren't followed, but any other object that's reachable is counted, even
+ * if it's shared with something outside the graph, such as an enum
+ * constant. The offsets come from sun.misc.Unsafe, which is only reached
+ * reflectively, so nothing refers to it when the tree is built.
+ */
+public class ObjectFootprint
+{
+    private static final Object UNSAFE = findUnsafe();
+    private static final MethodHandle OBJECT_FIELD_OFFSET = findUnsafeMethod("objectFieldOffset", long.class, Field.class);
+    private static final MethodHandle ARRAY_BASE_OFFSET = findUnsafeMethod("arrayBaseOffset", int.class, Class.class);
+    private static final MethodHandle ARRAY_INDEX_SCALE = findUnsafeMethod("arrayIndexScale", int.class, Class.class);
+    private static final MethodHandle GET_OBJECT = findUnsafeMethod("getObject", Object.class, Object.class, long.class);
+    private static final int REFERENCE_SIZE = arrayIndexScale(Object[].class);
+    // arrays have the same header as other objects, followed by an int length
+    private static final int OBJECT_HEADER_SIZE = arrayBaseOffset(byte[].class) - 4;
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    private static final Map<Class<?>, ClassLayout> LAYOUTS = new HashMap<Class<?>, ClassLayout>();
+
+    private final Map<Class<?>, ClassFootprint> classFootprints = new HashMap<Class<?>, ClassFootprint>();
+    private long totalBytes;
+    private long objectCount;
+
+    private ObjectFootprint()
+    {
+        // use measure
+    }
+
+    private static Object findUnsafe()
+    {
+        try
+        {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return field.get(null);
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException("Can't measure object sizes without sun.misc.Unsafe", e);
+        }
+    }
+
+    /**
+     * Finds the method, bound to {@link #UNSAFE}, so that it's called with
+     * invokeExact without boxing anything.
+     */
+    private static MethodHandle findUnsafeMethod(String name, Class<?> returnType, Class<?>... parameterTypes)
+    {
+        try
+        {
+            return MethodHandles.lookup().findVirtual(UNSAFE.getClass(), name, MethodType.methodType(returnType, parameterTypes)).bindTo(UNSAFE);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Can't measure object sizes without sun.misc.Unsafe." + name, e);
+        }
+    }
+
+    private static long objectFieldOffset(Field field)
+    {
+        try
+        {
+            return (long) OBJECT_FIELD_OFFSET.invokeExact(field);
+        }
+        catch (Throwable e)
+        {
+            throw propagate(e);
+        }
+    }
+
+    private static int arrayBaseOffset(Class<?> arrayType)
+    {
+        try
+        {
+            return (int) ARRAY_BASE_OFFSET.invokeExact(arrayType);
+        }
+        catch (Throwable e)
+        {
+            throw propagate(e);
+        }
+    }
+
+    private static int arrayIndexScale(Class<?> arrayType)
+    {
+        try
+        {
+            return (int) ARRAY_INDEX_SCALE.invokeExact(arrayType);
+        }
+        catch (Throwable e)
+        {
+            throw propagate(e);
+        }
+    }
+
+    private static Object getObject(Object object, long offset)
+    {
+        try
+        {
+            return (Object) GET_OBJECT.invokeExact(object, offset);
+        }
+        catch (Throwable e)
+        {
+            throw propagate(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e)
+    {
+        if (e instanceof RuntimeException)
+        {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error)
+        {
+            throw (Error) e;
+        }
+        return new IllegalStateException("Failed to call sun.misc.Unsafe", e);
+    }
+
+    public static ObjectFootprint measure(Object root)
+    {
+        ObjectFootprint footprint = new ObjectFootprint();
+        Map<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        // walked with a stack of its own, since a long linked list would overflow the thread's
+        LinkedList<Object> pending = new LinkedList<Object>();
+        if (root != null)
+        {
+            pending.push(root);
+        }
+        while (!pending.isEmpty())
+        {
+            Object object = pending.pop();
+            if (object instanceof Class || visited.put(object, object) != null)
+            {
+                continue;
+            }
+            Class<?> type = object.getClass();
+            if (type.isArray())
+            {
+                footprint.add(type, getArraySize(object));
+                if (!type.getComponentType().isPrimitive())
+                {
+                    for (Object element : (Object[]) object)
+                    {
+                        if (element != null)
+                        {
+                            pending.push(element);
+                        }
+                    }
+                }
+            }
+            else
+            {
+                ClassLayout layout = getLayout(type);
+                footprint.add(type, layout.size);
+                for (Object child : layout.getReferences(object))
+                {
+                    pending.push(child);
+                }
+            }
+        }
+        return footprint;
+    }
+
+    private void add(Class<?> type, long bytes)
+    {
+        ClassFootprint classFootprint = classFootprints.get(type);
+        if (classFootprint == null)
+        {
+            classFootprint = new ClassFootprint(type);
+            classFootprints.put(type, classFootprint);
+        }
+        classFootprint.count++;
+        classFootprint.bytes += bytes;
+        objectCount++;
+        totalBytes += bytes;
+    }
+
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    public long getObjectCount()
+    {
+        return objectCount;
+    }
+
+    /**
+     * The number and size of the objects of each class in the graph, largest
+     * first.
+     */
+    public List<ClassFootprint> getClassFootprints()
+    {
+        List<ClassFootprint> footprints = new ArrayList<ClassFootprint>(classFootprints.values());
+        Collections.sort(footprints, new Comparator<ClassFootprint>()
+        {
+            @Override
+            public int compare(ClassFootprint footprint1, ClassFootprint footprint2)
+            {
+                return Long.valueOf(footprint2.bytes).compareTo(Long.valueOf(footprint1.bytes));
+            }
+        });
+        return footprints;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder description = new StringBuilder(String.format("%d bytes in %d objects", totalBytes, objectCount));
+        for (ClassFootprint classFootprint : getClassFootprints())
+        {
+            description.append(String.format("%n%12d bytes %10d x %s", classFootprint.bytes, classFootprint.count, classFootprint.type.getName()));
+        }
+        return description.toString();
+    }
+
+    private static long getArraySize(Object array)
+    {
+        Class<?> type = array.getClass();
+        return align(arrayBaseOffset(type) + (long) Array.getLength(array) * arrayIndexScale(type));
+    }
+
+    private static long align(long size)
+    {
+        return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    private static synchronized ClassLayout getLayout(Class<?> type)
+    {
+        ClassLayout layout = LAYOUTS.get(type);
+        if (layout == null)
+        {
+            layout = new ClassLayout(type);
+            LAYOUTS.put(type, layout);
+        }
+        return layout;
+    }
+
+    private static int getFieldSize(Class<?> type)
+    {
+        if (type == long.class || type == double.class)
+        {
+            return 8;
+        }
+        if (type == int.class || type == float.class)
+        {
+            return 4;
+        }
+        if (type == short.class || type == char.class)
+        {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class)
+        {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+
+    /**
+     * The number and total size of the objects of one class.
+     */
+    public static class ClassFootprint
+    {
+        private final Class<?> type;
+        private long count;
+        private long bytes;
+
+        private ClassFootprint(Class<?> type)
+        {
+            this.type = type;
+        }
+
+        public Class<?> getType()
+        {
+            return type;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+    }
+
+    /**
+     * The size of the instances of a class, and where their references are.
+     */
+    private static class ClassLayout
+    {
+        private final long size;
+        private final List<Long> referenceOffsets = new ArrayList<Long>();
+        // the fields of records and hidden classes, which Unsafe won't give the offsets of
+        private final List<Field> referenceFields = new ArrayList<Field>();
+
+        public ClassLayout(Class<?> type)
+        {
+            long end = OBJECT_HEADER_SIZE;
+            for (Class<?> declaringType = type; declaringType != null; declaringType = declaringType.getSuperclass())
+            {
+                for (Field field : declaringType.getDeclaredFields())
+                {
+                    if (Modifier.isStatic(field.getModifiers()))
+                    {
+                        continue;
+                    }
+                    long offset;
+                    try
+                    {
+                        offset = objectFieldOffset(field);
+                    }
+                    catch (UnsupportedOperationException e)
+                    {
+                        // assume the fields are packed after the header
+                        offset = -1;
+                    }
+                    int fieldSize = getFieldSize(field.getType());
+                    end = offset >= 0 ? Math.max(end, offset + fieldSize) : end + fieldSize;
+                    if (!field.getType().isPrimitive())
+                    {
+                        if (offset >= 0)
+                        {
+                            referenceOffsets.add(offset);
+                        }
+                        else
+                        {
+                            field.setAccessible(true);
+                            referenceFields.add(field);
+                        }
+                    }
+                }
+            }
+            size = align(end);
+        }
+
+        public List<Object> getReferences(Object object)
+        {
+            List<Object> references = new ArrayList<Object>();
+            for (long offset : referenceOffsets)
+            {
+                addReference(references, getObject(object, offset));
+            }
+            for (Field field : referenceFields)
+            {
+                try
+                {
+                    addReference(references, field.get(object));
+                }
+                catch (IllegalAccessException e)
+                {
+                    throw new IllegalStateException("Can't read " + field + " to measure its footprint", e);
+                }
+            }
+            return references;
+        }
+
+        private void addReference(List<Object> references, Object reference)
+        {
+            if (reference != null)
+            {
+                references.add(reference);
+            }
+        }
+    }
+
+}
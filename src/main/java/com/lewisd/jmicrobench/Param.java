@@ -0,0 +1,24 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a performance test class as a parameter. Every test method
+ * in the class is run once for each combination of the values of all the
+ * parameters, and each combination's results are stored separately.
+ * <p>
+ * Values are converted to the field's type, which can be a String, a
+ * primitive or its wrapper, or an enum. Integer values may have a k, m or g
+ * suffix, for multiples of 1024, eg. "64k".
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.FIELD })
+public @interface Param
+{
+
+    String[] value();
+
+}
@@ -0,0 +1,60 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * A test method together with one combination of the values of the test
+ * class's {@link Param} fields.
+ */
+public class ParameterizedFrameworkMethod extends FrameworkMethod
+{
+    private final Map<Field, String> values;
+    private final Map<String, String> parameters = new TreeMap<String, String>();
+
+    public ParameterizedFrameworkMethod(Method method, Map<Field, String> values)
+    {
+        super(method);
+        this.values = values;
+        for (Map.Entry<Field, String> value : values.entrySet())
+        {
+            parameters.put(value.getKey().getName(), value.getValue());
+        }
+    }
+
+    public Map<String, String> getParameters()
+    {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public void injectParameters(Object test)
+    {
+        for (Map.Entry<Field, String> value : values.entrySet())
+        {
+            Parameters.inject(test, value.getKey(), value.getValue());
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof ParameterizedFrameworkMethod))
+        {
+            return false;
+        }
+        ParameterizedFrameworkMethod other = (ParameterizedFrameworkMethod) obj;
+        return getMethod().equals(other.getMethod()) && parameters.equals(other.parameters);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return getMethod().hashCode() * 31 + parameters.hashCode();
+    }
+
+}
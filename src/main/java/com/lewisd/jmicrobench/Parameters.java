@@ -0,0 +1,171 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts the values of {@link Param} fields, and formats sets of parameter
+ * values as strings like "loadFactor=0.75,size=64k" for storage.
+ */
+public class Parameters
+{
+    private static final String SEPARATOR = ",";
+    private static final String ASSIGNMENT = "=";
+
+    private Parameters()
+    {
+        // do nothing
+    }
+
+    public static String format(Map<String, String> parameters)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> parameter : new TreeMap<String, String>(parameters).entrySet())
+        {
+            if (builder.length() > 0)
+            {
+                builder.append(SEPARATOR);
+            }
+            builder.append(parameter.getKey()).append(ASSIGNMENT).append(parameter.getValue());
+        }
+        return builder.toString();
+    }
+
+    public static Map<String, String> parse(String parameters)
+    {
+        Map<String, String> map = new TreeMap<String, String>();
+        if (parameters == null || parameters.isEmpty())
+        {
+            return map;
+        }
+        for (String parameter : parameters.split(SEPARATOR))
+        {
+            int assignment = parameter.indexOf(ASSIGNMENT);
+            if (assignment < 0)
+            {
+                throw new IllegalArgumentException("Invalid parameter: " + parameter);
+            }
+            map.put(parameter.substring(0, assignment), parameter.substring(assignment + 1));
+        }
+        return map;
+    }
+
+    /**
+     * Returns the test name with the parameters appended, eg.
+     * "MapTest[size=64k]", for telling results apart in logs and reports.
+     */
+    public static String describe(String testName, Map<String, String> parameters)
+    {
+        if (parameters.isEmpty())
+        {
+            return testName;
+        }
+        return testName + "[" + format(parameters) + "]";
+    }
+
+    public static void validate(Field field, String value)
+    {
+        if (value.contains(SEPARATOR) || value.contains(ASSIGNMENT))
+        {
+            throw new IllegalArgumentException("Invalid value specified for " + field.getName() + ": " + value);
+        }
+        convert(field, value);
+    }
+
+    public static void inject(Object test, Field field, String value)
+    {
+        try
+        {
+            field.setAccessible(true);
+            field.set(test, convert(field, value));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException("Unable to set parameter " + field.getName(), e);
+        }
+    }
+
+    private static Object convert(Field field, String value)
+    {
+        Class<?> type = field.getType();
+        try
+        {
+            if (type == String.class)
+            {
+                return value;
+            }
+            else if (type == Integer.TYPE || type == Integer.class)
+            {
+                long size = parseSize(value);
+                if (size > Integer.MAX_VALUE || size < Integer.MIN_VALUE)
+                {
+                    throw new IllegalArgumentException("Invalid value specified for " + field.getName() + ": " + value);
+                }
+                return Integer.valueOf((int) size);
+            }
+            else if (type == Long.TYPE || type == Long.class)
+            {
+                return Long.valueOf(parseSize(value));
+            }
+            else if (type == Double.TYPE || type == Double.class)
+            {
+                return Double.valueOf(value);
+            }
+            else if (type == Float.TYPE || type == Float.class)
+            {
+                return Float.valueOf(value);
+            }
+            else if (type == Boolean.TYPE || type == Boolean.class)
+            {
+                // Boolean.valueOf would quietly turn a typo into false
+                if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+                {
+                    throw new IllegalArgumentException("Invalid value specified for " + field.getName() + ": " + value);
+                }
+                return Boolean.valueOf(value);
+            }
+            else if (type.isEnum())
+            {
+                for (Object constant : type.getEnumConstants())
+                {
+                    if (((Enum<?>) constant).name().equalsIgnoreCase(value))
+                    {
+                        return constant;
+                    }
+                }
+                throw new IllegalArgumentException("No constant " + value + " in " + type.getName());
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid value specified for " + field.getName() + ": " + value);
+        }
+        throw new IllegalArgumentException("Unsupported type for parameter " + field.getName() + ": " + type.getName());
+    }
+
+    private static long parseSize(String value)
+    {
+        String number = value.trim();
+        long multiplier = 1;
+        char suffix = Character.toLowerCase(number.charAt(number.length() - 1));
+        if (suffix == 'k')
+        {
+            multiplier = 1024L;
+        }
+        else if (suffix == 'm')
+        {
+            multiplier = 1024L * 1024;
+        }
+        else if (suffix == 'g')
+        {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1)
+        {
+            number = number.substring(0, number.length() - 1);
+        }
+        return Long.parseLong(number) * multiplier;
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.lewisd.jmicrobench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import com.lewisd.jmicrobench.dao.TestResultsDao;
+
+/**
+ * Reads the history of every test from the database, and writes a report of
+ * the builds where each of their attributes shifted for good, as found by a
+ * {@link ChangePointDetector}, to change-points.tsv.
+ */
+public class PerfTestChangePointAnalyzer
+{
+    private static final Logger LOG = Logger.getLogger(PerfTestChangePointAnalyzer.class);
+
+    private static final String REPORT_FILENAME = "change-points.tsv";
+    private static final Metric[] STANDARD_METRICS = { Metric.OPS_PER_SECOND, Metric.LATENCY, Metric.MEMORY, Metric.OPERATIONS, Metric.DURATION_NANOS,
+            Metric.TIME_TO_90_PERCENT_THROUGHPUT, Metric.WARMUP_OPERATIONS };
+
+    private final ChangePointDetector detector;
+
+    public PerfTestChangePointAnalyzer()
+    {
+        this(new ChangePointDetector(Integer.parseInt(PropertiesHelper.getProperty("build.performance.changepoint.min.builds", "3")), Double.parseDouble(PropertiesHelper.getProperty(
+                "build.performance.changepoint.penalty", "3"))));
+    }
+
+    public PerfTestChangePointAnalyzer(ChangePointDetector detector)
+    {
+        this.detector = detector;
+    }
+
+    /**
+     * Finds the changes in one attribute across the history of a test,
+     * which must be in build order. Builds that don't have the attribute are
+     * skipped.
+     */
+    public List<ChangePoint> findChangePoints(List<PerformanceTestResults> history, String attributeName)
+    {
+        List<BuildInfo> builds = new ArrayList<BuildInfo>();
+        double[] values = new double[history.size()];
+        for (PerformanceTestResults results : history)
+        {
+            Double value = results.asMap().get(attributeName);
+            if (value != null)
+            {
+                values[builds.size()] = value.doubleValue();
+                builds.add(results.getBuildInfo());
+            }
+        }
+
+        int[] changes = detector.detect(Arrays.copyOf(values, builds.size()));
+        List<ChangePoint> changePoints = new ArrayList<ChangePoint>();
+        for (int i = 0; i < changes.length; ++i)
+        {
+            int segmentStart = i == 0 ? 0 : changes[i - 1];
+            int nextSegmentEnd = i == changes.length - 1 ? builds.size() : changes[i + 1];
+            double meanBefore = mean(values, segmentStart, changes[i]);
+            double meanAfter = mean(values, changes[i], nextSegmentEnd);
+            changePoints.add(new ChangePoint(builds.get(changes[i]), attributeName, meanBefore, meanAfter));
+        }
+        return changePoints;
+    }
+
+    private double mean(double[] values, int start, int end)
+    {
+        double total = 0;
+        for (int i = start; i < end; ++i)
+        {
+            total += values[i];
+        }
+        return total / (end - start);
+    }
+
+    private void analyzeRecentBuilds(String projectName, int buildCount, File outputDir) throws SQLException, IOException
+    {
+        outputDir.mkdirs();
+
+        TestResultsDao dao = DBHelper.getTestResultsDao(projectName);
+        List<BuildInfo> recentBuilds = dao.getRecentBuilds(buildCount);
+        Map<BuildInfo, List<PerformanceTestResults>> buildResults = dao.getBuildResults(recentBuilds);
+
+        // the history of each test, keyed by group, then test name and parameters
+        SortedMap<String, SortedMap<String, List<PerformanceTestResults>>> historiesByGroup = new TreeMap<String, SortedMap<String, List<PerformanceTestResults>>>();
+        for (BuildInfo build : recentBuilds)
+        {
+            for (PerformanceTestResults result : buildResults.get(build))
+            {
+                SortedMap<String, List<PerformanceTestResults>> groupHistories = historiesByGroup.get(result.getTestGroupName());
+                if (groupHistories == null)
+                {
+                    groupHistories = new TreeMap<String, List<PerformanceTestResults>>();
+                    historiesByGroup.put(result.getTestGroupName(), groupHistories);
+                }
+                String testName = Parameters.describe(result.getTestName(), result.getParameters());
+                List<PerformanceTestResults> history = groupHistories.get(testName);
+                if (history == null)
+                {
+                    history = new ArrayList<PerformanceTestResults>();
+                    groupHistories.put(testName, history);
+                }
+                history.add(result);
+            }
+        }
+
+        File reportFile = new File(outputDir, REPORT_FILENAME);
+        PrintWriter writer = new PrintWriter(new FileWriter(reportFile));
+        writer.println("group\ttest\tparameters\tattribute\trevision\tmean_before\tmean_after\tchange_percent\tdirection");
+        int changeCount = 0;
+        for (SortedMap<String, List<PerformanceTestResults>> groupHistories : historiesByGroup.values())
+        {
+            for (List<PerformanceTestResults> history : groupHistories.values())
+            {
+                for (String attributeName : findAttributeNames(history))
+                {
+                    for (ChangePoint changePoint : findChangePoints(history, attributeName))
+                    {
+                        writeChangePoint(writer, history.get(history.size() - 1), changePoint);
+                        changeCount++;
+                    }
+                }
+            }
+        }
+        writer.close();
+        LOG.info("Wrote " + changeCount + " change points to " + reportFile);
+    }
+
+    /**
+     * The attributes of the test, apart from the dispersions of its
+     * averages, which follow the averages anyway.
+     */
+    private SortedSet<String> findAttributeNames(List<PerformanceTestResults> history)
+    {
+        SortedSet<String> attributeNames = new TreeSet<String>();
+        for (PerformanceTestResults results : history)
+        {
+            for (String attributeName : results.asMap().keySet())
+            {
+                if (!attributeName.endsWith(PerformanceTestResults.STD_DEV_SUFFIX) && !attributeName.endsWith(PerformanceTestResults.MAD_SUFFIX)
+                        && !attributeName.endsWith(PerformanceTestResults.CI95_SUFFIX))
+                {
+                    attributeNames.add(attributeName);
+                }
+            }
+        }
+        return attributeNames;
+    }
+
+    private void writeChangePoint(PrintWriter writer, PerformanceTestResults test, ChangePoint changePoint)
+    {
+        Metric metric = findMetric(test, changePoint.getAttributeName());
+        String direction = "";
+        if (metric != null)
+        {
+            direction = metric.isImprovement(changePoint.getMeanBefore(), changePoint.getMeanAfter()) ? "improvement" : "regression";
+        }
+        writer.println(test.getTestGroupName() + "\t" + test.getTestName() + "\t" + Parameters.format(test.getParameters()) + "\t" + changePoint.getAttributeName() + "\t"
+                + changePoint.getBuild().getRevision() + "\t" + String.format("%f", changePoint.getMeanBefore()) + "\t" + String.format("%f", changePoint.getMeanAfter()) + "\t"
+                + String.format("%.2f", changePoint.getChangePercentage()) + "\t" + direction);
+    }
+
+    /**
+     * The metric of the attribute, if it's known which way is better.
+     */
+    private Metric findMetric(PerformanceTestResults test, String attributeName)
+    {
+        Metric metric = test.getCustomMetrics().get(attributeName);
+        if (metric != null)
+        {
+            return metric;
+        }
+        for (Metric standardMetric : STANDARD_METRICS)
+        {
+            if (standardMetric.getName().equals(attributeName))
+            {
+                return standardMetric;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws SQLException, IOException
+    {
+        String projectName = args[0];
+        int count = Integer.parseInt(args[1]);
+        String outputDirName = args[2];
+        File outputDir = new File(outputDirName);
+
+        new PerfTestChangePointAnalyzer().analyzeRecentBuilds(projectName, count, outputDir);
+    }
+
+}
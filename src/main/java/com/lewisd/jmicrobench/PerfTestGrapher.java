@@ -7,6 +7,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,12 +30,17 @@ import com.lewisd.jmicrobench.dao.TestResultsDaoImpl;
 import com.lewisd.jmicrobench.graph.BufferedImagePainter;
 import com.lewisd.jmicrobench.graph.Graph;
 import com.lewisd.jmicrobench.graph.Plot;
+import com.lewisd.jmicrobench.graph.ScalingCurve;
 
 public class PerfTestGrapher extends PerfTestResultsDumper
 {
 
     private static final Logger LOG = Logger.getLogger(PerfTestGrapher.class);
 
+    private static final Metric[] WARMUP_METRICS = { Metric.TIME_TO_90_PERCENT_THROUGHPUT, Metric.WARMUP_OPERATIONS };
+
+    private final PerfTestChangePointAnalyzer changePointAnalyzer = new PerfTestChangePointAnalyzer();
+
     private void plotGraphsForRecentBuilds(String projectName, int buildCount, File outputDir) throws SQLException, IOException
     {
 
@@ -60,55 +68,91 @@ public class PerfTestGrapher extends PerfTestResultsDumper
         {
             LOG.info("Plotting group " + group);
             BufferedImagePainter painter = new BufferedImagePainter();
-            Graph graph = new Graph(painter);
-
-            graph.setDimensions(width, height);
-
-            graph.setMinXGridLinesPixelInterval(minXGridLinesInterval);
-            graph.setMinYGridLinesPixelInterval(minYGridLinesInterval);
-
-            graph.setXLabelHorizontalPadding(2);
-
-            graph.setXLabelFormat("%.0f");
-            graph.setYLabelFormat("%.1f");
-            graph.setGridColour(new Color(0.9f, 0.9f, 0.9f));
+            Graph graph = createGraph(painter, width, height, minXGridLinesInterval, minYGridLinesInterval);
 
             String testName = null;
             Map<String, Plot> plotsByTestName = new HashMap<String, Plot>();
+            Map<String, List<PerformanceTestResults>> historiesByTestName = new HashMap<String, List<PerformanceTestResults>>();
+            SortedMap<String, Metric> customMetrics = new TreeMap<String, Metric>();
             for (PerformanceTestResults result : allResults)
             {
                 if (result.getTestGroupName().equals(group))
                 {
-                    testName = result.getTestName();
+                    testName = Parameters.describe(result.getTestName(), result.getParameters());
                     // LOG.info("Plotting " + testName);
 
-                    Plot plot = plotsByTestName.get(testName);
-                    if (plot == null)
-                    {
-                        plot = graph.newPlot(testName);
-
-                        plot.setDrawLines(true);
-
-                        plotsByTestName.put(testName, plot);
-                    }
+                    Plot plot = getPlot(graph, plotsByTestName, testName);
 
                     Double value = result.getPlotableAttribute();
                     if (value != null)
                     {
                         plot.addPoint(result.getBuildInfo().getRevision(), value);
                     }
-
+                    List<PerformanceTestResults> history = historiesByTestName.get(testName);
+                    if (history == null)
+                    {
+                        history = new LinkedList<PerformanceTestResults>();
+                        historiesByTestName.put(testName, history);
+                    }
+                    history.add(result);
+                    customMetrics.putAll(result.getCustomMetrics());
+                    for (Metric warmupMetric : WARMUP_METRICS)
+                    {
+                        if (result.asMap().containsKey(warmupMetric.getName()))
+                        {
+                            customMetrics.put(warmupMetric.getName(), warmupMetric);
+                        }
+                    }
                 }
             }
             if (testName != null)
             {
+                addChangePointMarkers(graph, historiesByTestName.values());
                 graph.draw();
-                BufferedImage image = painter.getImage();
-                String formatName = "png";
                 String filename = group + ".png";
-                File outputFile = new File(imageOutputDir, filename);
+                writeImage(painter, new File(imageOutputDir, filename));
                 graphFilesByGroupName.put(group, filename);
-                ImageIO.write(image, formatName, outputFile);
+            }
+
+            // each custom metric, and how quickly the tests warmed up, gets a
+            // graph of its own, since its units won't match the other attributes'
+            for (Metric metric : customMetrics.values())
+            {
+                LOG.info("Plotting " + metric.getName() + " for group " + group);
+                painter = new BufferedImagePainter();
+                graph = createGraph(painter, width, height, minXGridLinesInterval, minYGridLinesInterval);
+                plotsByTestName = new HashMap<String, Plot>();
+                for (PerformanceTestResults result : allResults)
+                {
+                    Double value = result.asMap().get(metric.getName());
+                    if (result.getTestGroupName().equals(group) && value != null)
+                    {
+                        testName = Parameters.describe(result.getTestName(), result.getParameters());
+                        getPlot(graph, plotsByTestName, testName).addPoint(result.getBuildInfo().getRevision(), value);
+                    }
+                }
+                graph.draw();
+                String filename = group + "-" + metric.getName() + ".png";
+                writeImage(painter, new File(imageOutputDir, filename));
+                graphFilesByGroupName.put(group + " - " + metric, filename);
+            }
+
+            BuildInfo latestBuild = recentBuilds.get(recentBuilds.size() - 1);
+            SortedMap<String, List<PerformanceTestResults>> sweepsByTestName = findScalabilitySweeps(group, buildResults.get(latestBuild));
+            if (!sweepsByTestName.isEmpty())
+            {
+                LOG.info("Plotting scalability for group " + group);
+                painter = new BufferedImagePainter();
+                graph = createGraph(painter, width, height, minXGridLinesInterval, minYGridLinesInterval);
+                ScalingCurve scalingCurve = new ScalingCurve(graph);
+                for (Map.Entry<String, List<PerformanceTestResults>> entry : sweepsByTestName.entrySet())
+                {
+                    plotScalabilitySweep(scalingCurve, entry.getKey(), entry.getValue());
+                }
+                graph.draw();
+                String filename = group + "-scalability.png";
+                writeImage(painter, new File(imageOutputDir, filename));
+                graphFilesByGroupName.put(group + " - scalability at revision " + latestBuild.getRevision(), filename);
             }
         }
 
@@ -129,6 +173,116 @@ public class PerfTestGrapher extends PerfTestResultsDumper
         out.close();
     }
 
+    /**
+     * Marks the builds where the plotted attribute of any of the tests
+     * shifted for good.
+     */
+    private void addChangePointMarkers(Graph graph, Collection<List<PerformanceTestResults>> histories)
+    {
+        for (List<PerformanceTestResults> history : histories)
+        {
+            String attributeName = history.get(0).getPlottableMetric().getName();
+            for (ChangePoint changePoint : changePointAnalyzer.findChangePoints(history, attributeName))
+            {
+                LOG.info(history.get(0).getTestName() + " " + changePoint);
+                graph.addXMarker(changePoint.getBuild().getRevision());
+            }
+        }
+    }
+
+    /**
+     * The results of the group that were measured at a number of thread
+     * counts, by the name of the test without the thread count.
+     */
+    private SortedMap<String, List<PerformanceTestResults>> findScalabilitySweeps(String group, List<PerformanceTestResults> results)
+    {
+        SortedMap<String, List<PerformanceTestResults>> sweepsByTestName = new TreeMap<String, List<PerformanceTestResults>>();
+        for (PerformanceTestResults result : results)
+        {
+            if (result.getTestGroupName().equals(group) && result.getParameters().containsKey(PerformanceTestRunner.THREADS_PARAMETER)
+                    && result.asMap().containsKey(PerformanceTestResults.USL_CONTENTION) && result.hasOperationsPerSecond())
+            {
+                Map<String, String> parameters = new TreeMap<String, String>(result.getParameters());
+                parameters.remove(PerformanceTestRunner.THREADS_PARAMETER);
+                String testName = Parameters.describe(result.getTestName(), parameters);
+                List<PerformanceTestResults> sweep = sweepsByTestName.get(testName);
+                if (sweep == null)
+                {
+                    sweep = new ArrayList<PerformanceTestResults>();
+                    sweepsByTestName.put(testName, sweep);
+                }
+                sweep.add(result);
+            }
+        }
+        return sweepsByTestName;
+    }
+
+    private void plotScalabilitySweep(ScalingCurve scalingCurve, String testName, List<PerformanceTestResults> sweep)
+    {
+        int[] threads = new int[sweep.size()];
+        double[] throughput = new double[sweep.size()];
+        double singleThreadThroughput = 0;
+        for (int i = 0; i < sweep.size(); ++i)
+        {
+            PerformanceTestResults result = sweep.get(i);
+            threads[i] = Integer.parseInt(result.getParameters().get(PerformanceTestRunner.THREADS_PARAMETER));
+            throughput[i] = result.getOperationsPerSecond();
+            if (threads[i] == 1)
+            {
+                singleThreadThroughput = throughput[i];
+            }
+        }
+        Map<String, Double> attributes = sweep.get(0).asMap();
+        final UniversalScalabilityLaw scalability = new UniversalScalabilityLaw(singleThreadThroughput, attributes.get(PerformanceTestResults.USL_CONTENTION),
+                attributes.get(PerformanceTestResults.USL_COHERENCY));
+        scalingCurve.plot(testName, threads, throughput, new ScalingCurve.Model()
+        {
+            @Override
+            public double getThroughput(double threadCount)
+            {
+                return scalability.getThroughput(threadCount);
+            }
+        });
+    }
+
+    private Graph createGraph(BufferedImagePainter painter, int width, int height, int minXGridLinesInterval, int minYGridLinesInterval)
+    {
+        Graph graph = new Graph(painter);
+
+        graph.setDimensions(width, height);
+
+        graph.setMinXGridLinesPixelInterval(minXGridLinesInterval);
+        graph.setMinYGridLinesPixelInterval(minYGridLinesInterval);
+
+        graph.setXLabelHorizontalPadding(2);
+
+        graph.setXLabelFormat("%.0f");
+        graph.setYLabelFormat("%.1f");
+        graph.setGridColour(new Color(0.9f, 0.9f, 0.9f));
+        return graph;
+    }
+
+    private Plot getPlot(Graph graph, Map<String, Plot> plotsByTestName, String testName)
+    {
+        Plot plot = plotsByTestName.get(testName);
+        if (plot == null)
+        {
+            plot = graph.newPlot(testName);
+
+            plot.setDrawLines(true);
+
+            plotsByTestName.put(testName, plot);
+        }
+        return plot;
+    }
+
+    private void writeImage(BufferedImagePainter painter, File outputFile) throws IOException
+    {
+        BufferedImage image = painter.getImage();
+        String formatName = "png";
+        ImageIO.write(image, formatName, outputFile);
+    }
+
     private int getIntProperty(String key, int defaultValue)
     {
         return Integer.parseInt(PropertiesHelper.getProperty(key, Integer.toString(defaultValue)));
@@ -192,10 +346,25 @@ public class PerfTestGrapher extends PerfTestResultsDumper
                     {
                         results.setDurationNanos(TimeUnit.MILLISECONDS.toNanos(3000L));
                         results.setNumberOfOperations((ti + 1) * 100000L - i * 500);
+                        results.recordMetric("hit_ratio", 0.9 - ti * 0.1 - i * 0.001, "ratio", true);
+                        results.setAttribute(PerformanceTestResults.TIME_TO_90_PERCENT_THROUGHPUT, TimeUnit.MILLISECONDS.toNanos(200L + ti * 100L + (i >= buildCount / 2 ? 150L : 0L)));
+                        results.setAttribute(PerformanceTestResults.WARMUP_OPERATIONS, (ti + 1) * 20000L);
                     }
                     resultsList.add(results);
                 }
             }
+
+            UniversalScalabilityLaw scalability = new UniversalScalabilityLaw(100000, 0.05, 0.002 + i * 0.0001);
+            for (int threads = 1; threads <= 16; threads *= 2)
+            {
+                PerformanceTestResultsImpl results = new PerformanceTestResultsImpl(build, "Scalability", "testS1");
+                results.setParameters(Collections.singletonMap(PerformanceTestRunner.THREADS_PARAMETER, Integer.toString(threads)));
+                results.setDurationNanos(TimeUnit.MILLISECONDS.toNanos(1000L));
+                results.setNumberOfOperations((long) scalability.getThroughput(threads));
+                results.setAttribute(PerformanceTestResults.USL_CONTENTION, scalability.getContention());
+                results.setAttribute(PerformanceTestResults.USL_COHERENCY, scalability.getCoherency());
+                resultsList.add(results);
+            }
         }
 
         dao.storeResults(resultsList);
@@ -79,7 +79,7 @@ public class PerfTestResultsDumper
             String groupName = result.getTestGroupName();
             if (groupName.equals(group))
             {
-                String testName = result.getTestName();
+                String testName = Parameters.describe(result.getTestName(), result.getParameters());
                 List<PerformanceTestResults> testResultsList = resultsListByTestName.get(testName);
                 if (testResultsList == null)
                 {
@@ -1,11 +1,64 @@
 package com.lewisd.jmicrobench;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.log4j.Logger;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
 public class PerfUtil
 {
+    private static final Logger LOG = Logger.getLogger(PerfUtil.class);
+    // System.gc() can be disabled, or only start a concurrent cycle, so the
+    // wait for it to finish is limited
+    private static final long GC_TIMEOUT_MILLIS = Long.parseLong(PropertiesHelper.getProperty("build.performance.gc.timeout", "1000"));
 
+    /**
+     * The heap that's still used after a full collection, which is read from
+     * the usage of each heap pool after its last collection, so nothing
+     * allocated since then counts. If there's no collection to read it from,
+     * it's the heap in use, as the runtime reports it.
+     */
     public static long getMemoryUsed()
     {
-        runGc();
+        String collectorName = collect();
+        // a concurrent collector keeps everything that was allocated while it
+        // was marking, garbage included, until its next cycle
+        if (collectorName != null && collectorName.endsWith("Cycles"))
+        {
+            collectorName = collect();
+        }
+        if (collectorName != null)
+        {
+            long used = 0;
+            boolean supported = false;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            {
+                MemoryUsage collectionUsage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+                if (collectionUsage != null)
+                {
+                    used += collectionUsage.getUsed();
+                    supported = true;
+                }
+            }
+            if (supported)
+            {
+                return used;
+            }
+        }
         Runtime rt = Runtime.getRuntime();
         long usedMemory = rt.totalMemory() - rt.freeMemory();
         return usedMemory;
@@ -21,24 +74,169 @@ public class PerfUtil
         runGc(5);
     }
 
+    /**
+     * Runs full collections one after another, each returning as soon as the
+     * collection has finished.
+     */
     public static void runGc(int iterations)
     {
-        runGc(iterations, 500);
+        runGc(iterations, 0);
     }
 
+    /**
+     * Runs full collections, pausing after each one, eg. to give finalizers
+     * time to run.
+     */
     public static void runGc(int iterations, long delay)
     {
         for (int x = iterations; x > 0; --x)
+        {
+            collect();
+            if (delay > 0)
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks for a full collection, and waits until one has finished, or until
+     * {@link #GC_TIMEOUT_MILLIS} has passed. Returns the name of the
+     * collector that finished it, or null if none did.
+     */
+    private static String collect()
+    {
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        CollectionListener listener = new CollectionListener(collectors);
+        boolean notifying = false;
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            if (collector instanceof NotificationEmitter)
+            {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+                notifying = true;
+            }
+        }
+        try
         {
             System.gc();
-            try
+            if (!notifying)
+            {
+                // the best that can be done is to see whether any collector ran
+                return listener.findCollectorThatRan(collectors);
+            }
+            String collectorName = listener.await(GC_TIMEOUT_MILLIS);
+            if (collectorName == null)
+            {
+                LOG.warn("No full collection finished within " + GC_TIMEOUT_MILLIS + "ms of calling System.gc()");
+            }
+            return collectorName;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        finally
+        {
+            for (GarbageCollectorMXBean collector : collectors)
+            {
+                if (collector instanceof NotificationEmitter)
+                {
+                    try
+                    {
+                        ((NotificationEmitter) collector).removeNotificationListener(listener);
+                    }
+                    catch (ListenerNotFoundException e)
+                    {
+                        LOG.warn("GC listener was already removed from " + collector.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the notification is for the end of a full collection. The
+     * concurrent collectors, ZGC and Shenandoah, notify for their pauses as
+     * well as for the cycle, and the pauses come before the cycle has
+     * finished, so only the end of the cycle counts for them.
+     */
+    static boolean isEndOfFullCollection(String gcName, String gcAction)
+    {
+        return !gcName.endsWith("Pauses") && !gcName.contains("Minor") && !gcAction.contains("minor");
+    }
+
+    /**
+     * Waits for the end of a full collection that started after the listener
+     * was created.
+     */
+    private static class CollectionListener implements NotificationListener
+    {
+        private final Map<String, Long> collectionCountsBefore = new HashMap<String, Long>();
+        private String collectorName;
+
+        public CollectionListener(List<GarbageCollectorMXBean> collectors)
+        {
+            for (GarbageCollectorMXBean collector : collectors)
+            {
+                collectionCountsBefore.put(collector.getName(), Long.valueOf(collector.getCollectionCount()));
+            }
+        }
+
+        public String findCollectorThatRan(List<GarbageCollectorMXBean> collectors)
+        {
+            for (GarbageCollectorMXBean collector : collectors)
+            {
+                Long collectionCountBefore = collectionCountsBefore.get(collector.getName());
+                if (collectionCountBefore != null && collector.getCollectionCount() > collectionCountBefore.longValue())
+                {
+                    return collector.getName();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the name of the collector that finished a full collection,
+         * or null if none did in time.
+         */
+        public synchronized String await(long timeoutMillis) throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+            while (collectorName == null && remaining > 0)
+            {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return collectorName;
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback)
+        {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
             {
-                Thread.sleep(delay);
+                return;
             }
-            catch (InterruptedException e)
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            Long collectionCountBefore = collectionCountsBefore.get(info.getGcName());
+            // the id is the collector's collection count, which tells a late
+            // notification for an earlier collection apart
+            if (collectionCountBefore == null || info.getGcInfo().getId() <= collectionCountBefore.longValue() || !isEndOfFullCollection(info.getGcName(), info.getGcAction()))
             {
-                e.printStackTrace();
+                return;
             }
+            collectorName = info.getGcName();
+            notifyAll();
         }
     }
 
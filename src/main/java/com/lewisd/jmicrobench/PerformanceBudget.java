@@ -0,0 +1,70 @@
+package com.lewisd.jmicrobench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Absolute limits that the averaged results of a test have to stay within.
+ * A limit that's negative isn't checked.
+ */
+public class PerformanceBudget
+{
+    private final List<Limit> limits = new ArrayList<Limit>();
+
+    public PerformanceBudget(double minOpsPerSecond, double maxAverageLatencyNanos, double maxP99LatencyNanos, double maxBytesPerOperation, long maxMemoryBytes)
+    {
+        addLimit(PerformanceTestResults.OPS_PER_SECOND, "ops/s", minOpsPerSecond, true);
+        addLimit(PerformanceTestResults.LATENCY, "ns", maxAverageLatencyNanos, false);
+        addLimit(PerformanceTestResults.P99_LATENCY, "ns", maxP99LatencyNanos, false);
+        addLimit(PerformanceTestResults.ALLOCATED_BYTES_PER_OPERATION, "bytes", maxBytesPerOperation, false);
+        addLimit(PerformanceTestResults.MEMORY, "bytes", maxMemoryBytes, false);
+    }
+
+    private void addLimit(String attributeName, String unit, double limit, boolean minimum)
+    {
+        if (limit >= 0)
+        {
+            limits.add(new Limit(attributeName, unit, limit, minimum));
+        }
+    }
+
+    /**
+     * Describes each limit that the results broke, including the ones for
+     * attributes that weren't measured at all.
+     */
+    public List<String> findViolations(PerformanceTestResults results)
+    {
+        List<String> violations = new ArrayList<String>();
+        for (Limit limit : limits)
+        {
+            Double value = results.asMap().get(limit.attributeName);
+            if (value == null)
+            {
+                violations.add(limit.attributeName + " has a budget, but wasn't measured");
+            }
+            else if (limit.minimum ? value.doubleValue() < limit.limit : value.doubleValue() > limit.limit)
+            {
+                violations.add(String.format("%s was %.4g %s, %s its budget of %.4g %s", limit.attributeName, value.doubleValue(), limit.unit, limit.minimum ? "below" : "over",
+                        limit.limit, limit.unit));
+            }
+        }
+        return violations;
+    }
+
+    private static class Limit
+    {
+        private final String attributeName;
+        private final String unit;
+        private final double limit;
+        private final boolean minimum;
+
+        public Limit(String attributeName, String unit, double limit, boolean minimum)
+        {
+            this.attributeName = attributeName;
+            this.unit = unit;
+            this.limit = limit;
+            this.minimum = minimum;
+        }
+    }
+
+}
@@ -16,6 +16,8 @@ public @interface PerformanceTest
 
     int warmupDurationMillis() default -1;
 
+    int warmupQuietPasses() default -1;
+
     int maxPasses() default -1;
 
     int stablePasses() default -1;
@@ -32,4 +34,54 @@ public @interface PerformanceTest
     
     String runBeforesAndAftersEachPass() default "";
 
+    int threads() default -1;
+
+    String threadType() default "";
+
+    String stateScope() default "";
+
+    double targetRate() default -1;
+
+    String arrivals() default "";
+
+    String estimator() default "";
+
+    double confidenceWidthPercentage() default -1;
+
+    long timeBudgetMillis() default -1;
+
+    double trimPercentage() default -1;
+
+    int forks() default -1;
+
+    int batchSize() default -1;
+
+    String subtractTimerOverhead() default "";
+
+    double maxTimerErrorPercentage() default -1;
+
+    String scalabilitySweep() default "";
+
+    String singleShot() default "";
+
+    String footprint() default "";
+
+    int maxThreads() default -1;
+
+    int regressionBuilds() default -1;
+
+    double regressionPercentage() default -1;
+
+    double regressionSignificance() default -1;
+
+    double minOpsPerSecond() default -1;
+
+    double maxAverageLatencyNanos() default -1;
+
+    double maxP99LatencyNanos() default -1;
+
+    double maxBytesPerOperation() default -1;
+
+    long maxMemoryBytes() default -1;
+
 }
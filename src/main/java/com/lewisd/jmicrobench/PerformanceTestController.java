@@ -4,6 +4,14 @@ public class PerformanceTestController
 {
     private static ThreadLocal<InProgressPerformanceTestResults> resultsThreadLocal = new ThreadLocal<InProgressPerformanceTestResults>();
     private static ThreadLocal<PerformanceTestRunner> runnerThreadLocal = new ThreadLocal<PerformanceTestRunner>();
+    private static ThreadLocal<Blackhole> blackholeThreadLocal = new ThreadLocal<Blackhole>()
+    {
+        @Override
+        protected Blackhole initialValue()
+        {
+            return new Blackhole();
+        }
+    };
 
     public PerformanceTestResults getResults()
     {
@@ -70,10 +78,109 @@ public class PerformanceTestController
         resultsThreadLocal.get().setStandardDeviationLatencyNanos(latency);
     }
     
+    public void recordLatencyNanos(long latency)
+    {
+        resultsThreadLocal.get().recordLatencyNanos(latency);
+    }
+
+    /**
+     * Records the value of a metric the framework doesn't know about, such as
+     * a cache hit ratio, for this pass. It's averaged, stored and graphed
+     * like the built-in attributes. When a pass runs on several threads, the
+     * values recorded by each thread are averaged.
+     * 
+     * @param higherIsBetter
+     *            whether an increase is an improvement, rather than a
+     *            regression
+     */
+    public void recordMetric(String name, double value, String unit, boolean higherIsBetter)
+    {
+        resultsThreadLocal.get().recordMetric(name, value, unit, higherIsBetter);
+    }
+    
+    /**
+     * Returns the blackhole for the current thread. Tests that consume values
+     * in a tight loop should fetch it once, outside the loop.
+     */
+    public Blackhole getBlackhole()
+    {
+        return blackholeThreadLocal.get();
+    }
+
+    public void consume(byte b)
+    {
+        blackholeThreadLocal.get().consume(b);
+    }
+
+    public void consume(boolean bool)
+    {
+        blackholeThreadLocal.get().consume(bool);
+    }
+
+    public void consume(char c)
+    {
+        blackholeThreadLocal.get().consume(c);
+    }
+
+    public void consume(short s)
+    {
+        blackholeThreadLocal.get().consume(s);
+    }
+
+    public void consume(int i)
+    {
+        blackholeThreadLocal.get().consume(i);
+    }
+
+    public void consume(long l)
+    {
+        blackholeThreadLocal.get().consume(l);
+    }
+
+    public void consume(float f)
+    {
+        blackholeThreadLocal.get().consume(f);
+    }
+
+    public void consume(double d)
+    {
+        blackholeThreadLocal.get().consume(d);
+    }
+
+    public void consume(Object object)
+    {
+        blackholeThreadLocal.get().consume(object);
+    }
+    
     public void setMemoryBytes(long memory) {
     	resultsThreadLocal.get().setMemoryBytes(memory);
     }
 
+    /**
+     * Records the exact size of everything reachable from the root as the
+     * memory used by this pass, which is repeatable where comparing the heap
+     * before and after isn't. The returned footprint breaks it down by
+     * class.
+     */
+    public ObjectFootprint recordFootprint(Object root)
+    {
+        ObjectFootprint footprint = ObjectFootprint.measure(root);
+        InProgressPerformanceTestResults results = resultsThreadLocal.get();
+        results.setMemoryBytes(footprint.getTotalBytes());
+        results.setAttribute(PerformanceTestResults.FOOTPRINT_OBJECTS, footprint.getObjectCount());
+        return footprint;
+    }
+
+    static Blackhole getCurrentBlackhole()
+    {
+        return blackholeThreadLocal.get();
+    }
+
+    static InProgressPerformanceTestResults getCurrentResults()
+    {
+        return resultsThreadLocal.get();
+    }
+
     static void setupTest(InProgressPerformanceTestResults results, PerformanceTestRunner runner)
     {
         resultsThreadLocal.set(results);
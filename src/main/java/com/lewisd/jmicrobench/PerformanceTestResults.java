@@ -14,11 +14,55 @@ public interface PerformanceTestResults
     static final String MIN_LATENCY = "min_latency";
     static final String STD_DEV_LATENCY = "std_dev_latency";
     static final String DURATION_NANOS = "duration_nanos";
+    static final String P50_LATENCY = "p50_latency";
+    static final String P90_LATENCY = "p90_latency";
+    static final String P99_LATENCY = "p99_latency";
+    static final String P999_LATENCY = "p999_latency";
+    static final String P9999_LATENCY = "p9999_latency";
+
+    static final String ALLOCATED_BYTES = "allocated_bytes";
+    static final String ALLOCATED_BYTES_PER_SECOND = "allocated_bytes_per_second";
+    static final String ALLOCATED_BYTES_PER_OPERATION = "allocated_bytes_per_operation";
+    static final String GC_COUNT = "gc_count";
+    static final String GC_PAUSE_MILLIS = "gc_pause_millis";
+    static final String GC_MAX_PAUSE_MILLIS = "gc_max_pause_millis";
+    static final String GC_PROMOTED_BYTES = "gc_promoted_bytes";
+    static final String MAJOR_GC_COUNT = "major_gc_count";
+    static final String VIRTUAL_THREAD_PINNED_COUNT = "virtual_thread_pinned_count";
+    // the dispersion of an averaged attribute across the passes is stored
+    // under the attribute's name with these suffixes
+    static final String STD_DEV_SUFFIX = "_stddev";
+    static final String MAD_SUFFIX = "_mad";
+    static final String CI95_SUFFIX = "_ci95";
+    // stored with each thread count of a scalability sweep
+    static final String SCALING_EFFICIENCY = "scaling_efficiency";
+    static final String USL_CONTENTION = "usl_contention";
+    static final String USL_COHERENCY = "usl_coherency";
+    static final String USL_PEAK_THREADS = "usl_peak_threads";
+    static final String TIMER_GRANULARITY = "timer_granularity_nanos";
+    static final String TIMER_OVERHEAD = "timer_overhead_nanos";
+    // how quickly a test with warmup passes warmed up
+    static final String TIME_TO_90_PERCENT_THROUGHPUT = "time_to_90_percent_throughput_nanos";
+    static final String WARMUP_OPERATIONS = "warmup_operations";
+    // what the first call of a single shot test did besides running the test
+    static final String LOADED_CLASSES = "loaded_classes";
+    static final String JIT_COMPILATION_MILLIS = "jit_compilation_millis";
+    // the memory of a test that records a footprint is the size of its object graph
+    static final String FOOTPRINT_OBJECTS = "footprint_objects";
+
+    static final String[] LATENCY_PERCENTILE_ATTRIBUTES = { P50_LATENCY, P90_LATENCY, P99_LATENCY, P999_LATENCY, P9999_LATENCY };
+    static final double[] LATENCY_PERCENTILES = { 50.0, 90.0, 99.0, 99.9, 99.99 };
 
     String getTestGroupName();
 
     String getTestName();
 
+    /**
+     * The values of the test's {@link Param} fields, keyed by field name, or
+     * an empty map if it has none.
+     */
+    Map<String, String> getParameters();
+
     BuildInfo getBuildInfo();
 
     boolean hasDurationNanos();
@@ -38,11 +82,33 @@ public interface PerformanceTestResults
 
     boolean hasPlottableAttribute();
     double getPlotableAttribute();
-    
-    // Unit getPlottableAttributeUnit();
+
+    /**
+     * The unit and direction of the value returned by
+     * {@link #getPlotableAttribute()}.
+     */
+    Metric getPlottableMetric();
+
+    /**
+     * The metrics recorded by the test itself, keyed by name. Their values are
+     * in {@link #asMap()} along with the other attributes.
+     */
+    Map<String, Metric> getCustomMetrics();
 
     Map<String, Double> asMap();
 
+    /**
+     * Whether {@link #asMap()} would have the attribute, without building
+     * the map.
+     */
+    boolean hasAttribute(String attributeName);
+
+    /**
+     * The value {@link #asMap()} would have for the attribute, without
+     * building the map.
+     */
+    double getAttribute(String attributeName);
+
     public boolean hasMaxLatencyNanos();
 
     public long getMaxLatencyNanos();
@@ -55,4 +121,32 @@ public interface PerformanceTestResults
 
     public double getStandardDeviationLatencyNanos();
 
+    public boolean hasLatencyPercentiles();
+
+    public long getP50LatencyNanos();
+
+    public long getP90LatencyNanos();
+
+    public long getP99LatencyNanos();
+
+    public long getP999LatencyNanos();
+
+    public long getP9999LatencyNanos();
+
+    public boolean hasAllocatedBytes();
+
+    public long getAllocatedBytes();
+
+    public boolean hasAllocatedBytesPerSecond();
+
+    public double getAllocatedBytesPerSecond();
+
+    public boolean hasAllocatedBytesPerOperation();
+
+    public double getAllocatedBytesPerOperation();
+
+    public boolean hasLatencyHistogram();
+
+    public LatencyHistogram getLatencyHistogram();
+
 }
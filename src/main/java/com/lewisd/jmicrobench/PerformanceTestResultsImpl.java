@@ -1,10 +1,17 @@
 package com.lewisd.jmicrobench;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class PerformanceTestResultsImpl implements PerformanceTestResults
 {
+    private static final Set<String> STANDARD_ATTRIBUTES = new HashSet<String>(Arrays.asList(OPS_PER_SECOND, MEMORY, OPERATIONS, LATENCY, MAX_LATENCY, MIN_LATENCY, STD_DEV_LATENCY,
+            DURATION_NANOS, P50_LATENCY, P90_LATENCY, P99_LATENCY, P999_LATENCY, P9999_LATENCY, ALLOCATED_BYTES, ALLOCATED_BYTES_PER_SECOND, ALLOCATED_BYTES_PER_OPERATION));
 
     private boolean hasAverageLatencyNanos;
     private long averageLatencyNanos;
@@ -16,6 +23,12 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
     private long numberOfOperations;
     private boolean hasOperationsPerSecond;
     private double operationsPerSecond;
+    private boolean hasAllocatedBytes;
+    private long allocatedBytes;
+    private boolean hasAllocatedBytesPerSecond;
+    private double allocatedBytesPerSecond;
+    private boolean hasAllocatedBytesPerOperation;
+    private double allocatedBytesPerOperation;
     
     private final BuildInfo buildInfo;
     private final String testGroupName;
@@ -26,6 +39,12 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
     boolean hasMinLatencyNanos;
     double standardDeviationLatencyNanos;
     boolean hasStandardDeviationLatencyNanos;
+    private final long[] latencyPercentileNanos = new long[LATENCY_PERCENTILES.length];
+    private boolean hasLatencyPercentiles;
+    private LatencyHistogram latencyHistogram;
+    private final Map<String, Double> additionalAttributes = new HashMap<String, Double>();
+    private final Map<String, String> parameters = new TreeMap<String, String>();
+    private final Map<String, Metric> customMetrics = new TreeMap<String, Metric>();
 
     public PerformanceTestResultsImpl(BuildInfo buildInfo, String testGroupName, String testName)
     {
@@ -79,6 +98,36 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
             memoryBytes = map.get(MEMORY).longValue();
             hasMemoryBytes = true;
         }
+        if (map.containsKey(ALLOCATED_BYTES))
+        {
+            allocatedBytes = map.get(ALLOCATED_BYTES).longValue();
+            hasAllocatedBytes = true;
+        }
+        if (map.containsKey(ALLOCATED_BYTES_PER_SECOND))
+        {
+            allocatedBytesPerSecond = map.get(ALLOCATED_BYTES_PER_SECOND).doubleValue();
+            hasAllocatedBytesPerSecond = true;
+        }
+        if (map.containsKey(ALLOCATED_BYTES_PER_OPERATION))
+        {
+            allocatedBytesPerOperation = map.get(ALLOCATED_BYTES_PER_OPERATION).doubleValue();
+            hasAllocatedBytesPerOperation = true;
+        }
+        for (int i = 0; i < LATENCY_PERCENTILE_ATTRIBUTES.length; ++i)
+        {
+            if (map.containsKey(LATENCY_PERCENTILE_ATTRIBUTES[i]))
+            {
+                latencyPercentileNanos[i] = map.get(LATENCY_PERCENTILE_ATTRIBUTES[i]).longValue();
+                hasLatencyPercentiles = true;
+            }
+        }
+        for (String attributeName : map.keySet())
+        {
+            if (!STANDARD_ATTRIBUTES.contains(attributeName))
+            {
+                additionalAttributes.put(attributeName, map.get(attributeName));
+            }
+        }
         calculateUnsetFields();
     }
 
@@ -111,6 +160,35 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
         }
     }
     
+    @Override
+    public Metric getPlottableMetric()
+    {
+        if (hasOperationsPerSecond())
+        {
+            return Metric.OPS_PER_SECOND;
+        }
+        else if (hasAverageLatencyNanos())
+        {
+            return Metric.LATENCY;
+        }
+        else if (hasMemoryBytes())
+        {
+            return Metric.MEMORY;
+        }
+        else if (hasNumberOfOperations())
+        {
+            return Metric.OPERATIONS;
+        }
+        else if (hasDurationNanos())
+        {
+            return Metric.DURATION_NANOS;
+        }
+        else
+        {
+            throw new IllegalStateException("No plottable attribute has been set");
+        }
+    }
+
     @Override
     public boolean hasPlottableAttribute()
     {
@@ -132,14 +210,68 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
         return testName;
     }
 
+    @Override
+    public Map<String, String> getParameters()
+    {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public void setParameters(Map<String, String> parameters)
+    {
+        this.parameters.clear();
+        this.parameters.putAll(parameters);
+    }
+
+    @Override
+    public Map<String, Metric> getCustomMetrics()
+    {
+        return Collections.unmodifiableMap(customMetrics);
+    }
+
+    /**
+     * Records the value of a metric defined by the test, replacing any value
+     * recorded for it before.
+     */
+    public void recordMetric(String name, double value, String unit, boolean higherIsBetter)
+    {
+        Metric metric = customMetrics.get(name);
+        if (metric == null || !metric.getUnit().equals(unit) || metric.isHigherBetter() != higherIsBetter)
+        {
+            defineMetric(new Metric(name, unit, higherIsBetter));
+        }
+        setAttribute(name, value);
+    }
+
+    /**
+     * Defines a metric without recording a value, for results whose values
+     * were set from a map.
+     */
+    public void defineMetric(Metric metric)
+    {
+        Metric existing = customMetrics.get(metric.getName());
+        if (existing != null && !existing.equals(metric))
+        {
+            throw new IllegalArgumentException("Metric " + metric.getName() + " is already defined as " + existing);
+        }
+        if (STANDARD_ATTRIBUTES.contains(metric.getName()))
+        {
+            throw new IllegalArgumentException("'" + metric.getName() + "' is a standard attribute, and can't be used as a metric name");
+        }
+        customMetrics.put(metric.getName(), metric);
+    }
+
     @Override
     public long getAverageLatencyNanos()
     {
-        if (!hasAverageLatencyNanos)
+        if (hasAverageLatencyNanos)
+        {
+            return averageLatencyNanos;
+        }
+        if (!hasRecordedLatencies())
         {
             throw new IllegalStateException("Average latency is not set");
         }
-        return averageLatencyNanos;
+        return Math.round(latencyHistogram.getMean());
     }
 
     public void setAverageLatencyNanos(long latency)
@@ -152,7 +284,7 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
     @Override
     public boolean hasAverageLatencyNanos()
     {
-        return hasAverageLatencyNanos;
+        return hasAverageLatencyNanos || hasRecordedLatencies();
     }
 
     public void setMaxLatencyNanos(long latency)
@@ -164,16 +296,20 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
 
     public boolean hasMaxLatencyNanos()
     {
-        return hasMaxLatencyNanos;
+        return hasMaxLatencyNanos || hasRecordedLatencies();
     }
     
     public long getMaxLatencyNanos()
     {
-        if (!hasMaxLatencyNanos)
+        if (hasMaxLatencyNanos)
+        {
+            return maxLatencyNanos;
+        }
+        if (!hasRecordedLatencies())
         {
             throw new IllegalStateException("Max Latency is not set");
         }
-        return maxLatencyNanos;
+        return latencyHistogram.getMaxValue();
     }
 
     public void setMinLatencyNanos(long latency)
@@ -185,16 +321,20 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
 
     public boolean hasMinLatencyNanos()
     {
-        return hasMinLatencyNanos;
+        return hasMinLatencyNanos || hasRecordedLatencies();
     }
     
     public long getMinLatencyNanos()
     {
-        if (!hasMinLatencyNanos)
+        if (hasMinLatencyNanos)
+        {
+            return minLatencyNanos;
+        }
+        if (!hasRecordedLatencies())
         {
             throw new IllegalStateException("Min Latency is not set");
         }
-        return minLatencyNanos;
+        return latencyHistogram.getMinValue();
     }
 
     public void setStandardDeviationLatencyNanos(double latency)
@@ -206,16 +346,114 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
     
     public boolean hasStandardDeviationLatencyNanos()
     {
-        return hasMaxLatencyNanos;
+        return hasStandardDeviationLatencyNanos || hasRecordedLatencies();
     }
     
     public double getStandardDeviationLatencyNanos()
     {
-        if (!hasStandardDeviationLatencyNanos)
+        if (hasStandardDeviationLatencyNanos)
+        {
+            return standardDeviationLatencyNanos;
+        }
+        if (!hasRecordedLatencies())
         {
             throw new IllegalStateException("Standard Deviation Latency is not set");
         }
-        return standardDeviationLatencyNanos;
+        return latencyHistogram.getStandardDeviation();
+    }
+
+    /**
+     * Records the latency of a single operation. This is called once per
+     * operation from within the measured code, so it doesn't allocate once
+     * there's a histogram; the runner creates one before each pass starts.
+     */
+    public void recordLatencyNanos(long latency)
+    {
+        if (latencyHistogram == null)
+        {
+            latencyHistogram = new LatencyHistogram();
+        }
+        latencyHistogram.recordValue(latency);
+    }
+
+    /**
+     * Records latencies into the given histogram from now on, which may be
+     * shared with other results.
+     */
+    public void useLatencyHistogram(LatencyHistogram histogram)
+    {
+        latencyHistogram = histogram;
+    }
+
+    public void addLatencyHistogram(LatencyHistogram histogram)
+    {
+        if (latencyHistogram == null)
+        {
+            latencyHistogram = new LatencyHistogram();
+        }
+        latencyHistogram.add(histogram);
+    }
+
+    public boolean hasLatencyHistogram()
+    {
+        return latencyHistogram != null;
+    }
+
+    public LatencyHistogram getLatencyHistogram()
+    {
+        if (latencyHistogram == null)
+        {
+            throw new IllegalStateException("Latency histogram is not set");
+        }
+        return latencyHistogram;
+    }
+
+    private boolean hasRecordedLatencies()
+    {
+        return latencyHistogram != null && latencyHistogram.getTotalCount() > 0;
+    }
+
+    public boolean hasLatencyPercentiles()
+    {
+        return hasLatencyPercentiles || hasRecordedLatencies();
+    }
+
+    public long getP50LatencyNanos()
+    {
+        return getLatencyPercentileNanos(0);
+    }
+
+    public long getP90LatencyNanos()
+    {
+        return getLatencyPercentileNanos(1);
+    }
+
+    public long getP99LatencyNanos()
+    {
+        return getLatencyPercentileNanos(2);
+    }
+
+    public long getP999LatencyNanos()
+    {
+        return getLatencyPercentileNanos(3);
+    }
+
+    public long getP9999LatencyNanos()
+    {
+        return getLatencyPercentileNanos(4);
+    }
+
+    private long getLatencyPercentileNanos(int percentileIndex)
+    {
+        if (hasRecordedLatencies())
+        {
+            return latencyHistogram.getValueAtPercentile(LATENCY_PERCENTILES[percentileIndex]);
+        }
+        if (!hasLatencyPercentiles)
+        {
+            throw new IllegalStateException("Latency percentiles are not set");
+        }
+        return latencyPercentileNanos[percentileIndex];
     }
     
     @Override
@@ -324,6 +562,68 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
         return hasOperationsPerSecond;
     }
 
+    @Override
+    public long getAllocatedBytes()
+    {
+        if (!hasAllocatedBytes)
+        {
+            throw new IllegalStateException("Allocated bytes is not set");
+        }
+        return allocatedBytes;
+    }
+
+    public void addAllocatedBytes(long bytes)
+    {
+        if (!hasAllocatedBytes)
+        {
+            this.allocatedBytes = bytes;
+        }
+        else
+        {
+            this.allocatedBytes = this.allocatedBytes + bytes;
+        }
+        hasAllocatedBytes = true;
+        calculateUnsetFields();
+    }
+
+    @Override
+    public boolean hasAllocatedBytes()
+    {
+        return hasAllocatedBytes;
+    }
+
+    @Override
+    public double getAllocatedBytesPerSecond()
+    {
+        if (!hasAllocatedBytesPerSecond)
+        {
+            throw new IllegalStateException("Allocated bytes per second is not set");
+        }
+        return allocatedBytesPerSecond;
+    }
+
+    @Override
+    public boolean hasAllocatedBytesPerSecond()
+    {
+        return hasAllocatedBytesPerSecond;
+    }
+
+    @Override
+    public double getAllocatedBytesPerOperation()
+    {
+        if (!hasAllocatedBytesPerOperation)
+        {
+            throw new IllegalStateException("Allocated bytes per operation is not set");
+        }
+        return allocatedBytesPerOperation;
+    }
+
+    @Override
+    public boolean hasAllocatedBytesPerOperation()
+    {
+        return hasAllocatedBytesPerOperation;
+    }
+
     @Override
     public Map<String, Double> asMap()
     {
@@ -361,9 +661,168 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
         {
             map.put(OPS_PER_SECOND, Double.valueOf(getOperationsPerSecond()));
         }
+        if (hasAllocatedBytes())
+        {
+            map.put(ALLOCATED_BYTES, Double.valueOf(getAllocatedBytes()));
+        }
+        if (hasAllocatedBytesPerSecond())
+        {
+            map.put(ALLOCATED_BYTES_PER_SECOND, Double.valueOf(getAllocatedBytesPerSecond()));
+        }
+        if (hasAllocatedBytesPerOperation())
+        {
+            map.put(ALLOCATED_BYTES_PER_OPERATION, Double.valueOf(getAllocatedBytesPerOperation()));
+        }
+        if (hasLatencyPercentiles())
+        {
+            for (int i = 0; i < LATENCY_PERCENTILE_ATTRIBUTES.length; ++i)
+            {
+                map.put(LATENCY_PERCENTILE_ATTRIBUTES[i], Double.valueOf(getLatencyPercentileNanos(i)));
+            }
+        }
+        map.putAll(additionalAttributes);
         return map;
     }
 
+    @Override
+    public boolean hasAttribute(String attributeName)
+    {
+        calculateUnsetFields();
+        if (DURATION_NANOS.equals(attributeName))
+        {
+            return hasDurationNanos();
+        }
+        else if (LATENCY.equals(attributeName))
+        {
+            return hasAverageLatencyNanos();
+        }
+        else if (MIN_LATENCY.equals(attributeName))
+        {
+            return hasMinLatencyNanos();
+        }
+        else if (MAX_LATENCY.equals(attributeName))
+        {
+            return hasMaxLatencyNanos();
+        }
+        else if (STD_DEV_LATENCY.equals(attributeName))
+        {
+            return hasStandardDeviationLatencyNanos();
+        }
+        else if (OPERATIONS.equals(attributeName))
+        {
+            return hasNumberOfOperations();
+        }
+        else if (MEMORY.equals(attributeName))
+        {
+            return hasMemoryBytes();
+        }
+        else if (OPS_PER_SECOND.equals(attributeName))
+        {
+            return hasOperationsPerSecond();
+        }
+        else if (ALLOCATED_BYTES.equals(attributeName))
+        {
+            return hasAllocatedBytes();
+        }
+        else if (ALLOCATED_BYTES_PER_SECOND.equals(attributeName))
+        {
+            return hasAllocatedBytesPerSecond();
+        }
+        else if (ALLOCATED_BYTES_PER_OPERATION.equals(attributeName))
+        {
+            return hasAllocatedBytesPerOperation();
+        }
+        else if (getLatencyPercentileIndex(attributeName) >= 0)
+        {
+            return hasLatencyPercentiles();
+        }
+        return additionalAttributes.containsKey(attributeName);
+    }
+
+    @Override
+    public double getAttribute(String attributeName)
+    {
+        if (!hasAttribute(attributeName))
+        {
+            throw new IllegalStateException("'" + attributeName + "' is not set");
+        }
+        if (DURATION_NANOS.equals(attributeName))
+        {
+            return getDurationNanos();
+        }
+        else if (LATENCY.equals(attributeName))
+        {
+            return getAverageLatencyNanos();
+        }
+        else if (MIN_LATENCY.equals(attributeName))
+        {
+            return getMinLatencyNanos();
+        }
+        else if (MAX_LATENCY.equals(attributeName))
+        {
+            return getMaxLatencyNanos();
+        }
+        else if (STD_DEV_LATENCY.equals(attributeName))
+        {
+            return getStandardDeviationLatencyNanos();
+        }
+        else if (OPERATIONS.equals(attributeName))
+        {
+            return getNumberOfOperations();
+        }
+        else if (MEMORY.equals(attributeName))
+        {
+            return getMemoryBytes();
+        }
+        else if (OPS_PER_SECOND.equals(attributeName))
+        {
+            return getOperationsPerSecond();
+        }
+        else if (ALLOCATED_BYTES.equals(attributeName))
+        {
+            return getAllocatedBytes();
+        }
+        else if (ALLOCATED_BYTES_PER_SECOND.equals(attributeName))
+        {
+            return getAllocatedBytesPerSecond();
+        }
+        else if (ALLOCATED_BYTES_PER_OPERATION.equals(attributeName))
+        {
+            return getAllocatedBytesPerOperation();
+        }
+        int percentileIndex = getLatencyPercentileIndex(attributeName);
+        if (percentileIndex >= 0)
+        {
+            return getLatencyPercentileNanos(percentileIndex);
+        }
+        return additionalAttributes.get(attributeName).doubleValue();
+    }
+
+    private static int getLatencyPercentileIndex(String attributeName)
+    {
+        for (int i = 0; i < LATENCY_PERCENTILE_ATTRIBUTES.length; ++i)
+        {
+            if (LATENCY_PERCENTILE_ATTRIBUTES[i].equals(attributeName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets an attribute that has no field of its own, such as statistics
+     * derived by the framework. It's stored and averaged like any other.
+     */
+    public void setAttribute(String attributeName, double value)
+    {
+        if (STANDARD_ATTRIBUTES.contains(attributeName))
+        {
+            throw new IllegalArgumentException("'" + attributeName + "' must be set through its own setter");
+        }
+        additionalAttributes.put(attributeName, Double.valueOf(value));
+    }
+
     @Override
     public String toString()
     {
@@ -377,6 +836,16 @@ public class PerformanceTestResultsImpl implements PerformanceTestResults
             operationsPerSecond = calculateOpsPerSec(getNumberOfOperations(), getDurationNanos());
             hasOperationsPerSecond = true;
         }
+        if (hasAllocatedBytes() && hasDurationNanos())
+        {
+            allocatedBytesPerSecond = calculateOpsPerSec(getAllocatedBytes(), getDurationNanos());
+            hasAllocatedBytesPerSecond = true;
+        }
+        if (hasAllocatedBytes() && hasNumberOfOperations() && getNumberOfOperations() > 0)
+        {
+            allocatedBytesPerOperation = getAllocatedBytes() / (double) getNumberOfOperations();
+            hasAllocatedBytesPerOperation = true;
+        }
     }
 
     static double calculateOpsPerSec(long operations, long durationNanos)
@@ -1,10 +1,30 @@
 package com.lewisd.jmicrobench;
 
 import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.Logger;
+import org.junit.Test;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
@@ -15,10 +35,23 @@ import com.lewisd.test.Assert;
 public class PerformanceTestRunner extends BlockJUnit4ClassRunner
 {
     private static final Logger LOG = Logger.getLogger(PerformanceTestRunner.class);
+    // parking is only accurate to tens of microseconds, so the last stretch
+    // before a scheduled call is spent yielding instead
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // above this, the granularity of the timer makes a noticeable difference to timed intervals
+    private static final double TIMER_ERROR_WARNING_PERCENTAGE = 1.0;
+    // the parameter each thread count of a scalability sweep is stored under
+    static final String THREADS_PARAMETER = "threads";
+
+    private static TimerCalibration timerCalibration;
+    private static boolean warnedAboutVirtualThreads;
 
     private boolean warmedUp = false;
     private int warmupPasses;
     private long warmupDuration;
+    private int warmupQuietPasses;
+    // the warmup passes in a row without any JIT compilations
+    private int quietPasses;
     private int maxPasses;
     private int stablePasses;
     private double stabilityPercentage;
@@ -28,11 +61,33 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
     private String testName;
     private String groupName;
     private String projectName;
+    private int threads;
+    private ThreadType threadType;
+    private StateScope stateScope;
+    private double targetRate;
+    private ArrivalDistribution arrivals;
+    private Estimator estimator;
+    private double trimPercentage;
+    private double confidenceWidthPercentage;
+    private long timeBudget;
+    private long testStartTimeNanos;
+    private int forks;
+    private int batchSize;
+    private boolean subtractTimerOverhead;
+    private double maxTimerErrorPercentage;
+    private boolean warnedAboutTimerError;
+    private Map<String, String> parameters;
+    private boolean scalabilitySweep;
+    private boolean singleShot;
+    private boolean footprint;
+    private boolean loggedFootprint;
+    private int maxThreads;
+    private RegressionGate regressionGate;
+    private PerformanceBudget budget;
     private final Class testClass;
+    private final Map<Method, InvocationLoop> invocationLoops = new HashMap<Method, InvocationLoop>();
 
-    private long totalDurationNanos;
-    private long startTimeNanos = -1;
-    private long endTimeNanos = -1;
+    private final ThreadLocal<DurationTimer> timers = new ThreadLocal<DurationTimer>();
     private int currentPass;
     private ResultsList resultsList;
 
@@ -49,56 +104,385 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
 
     public boolean testHasRunLongEnough()
     {
-        if (expectedDuration < 0)
+        return timers.get().hasRunLongEnough();
+    }
+
+    public void startDurationTimer()
+    {
+        timers.get().start();
+    }
+
+    public void stopDurationTimer(boolean includeDurationInTotal)
+    {
+        timers.get().stop(includeDurationInTotal);
+    }
+
+    long getActualDurationNanos()
+    {
+        return timers.get().getActualDurationNanos();
+    }
+
+    /**
+     * Runs the methods of each {@link Group} together as one test, and runs
+     * each test once for every combination of the values of the {@link Param}
+     * fields.
+     */
+    @Override
+    protected List<FrameworkMethod> computeTestMethods()
+    {
+        List<FrameworkMethod> methods = groupMethods(super.computeTestMethods());
+        List<Field> parameterFields = getParameterFields();
+        if (parameterFields.isEmpty())
         {
-            return true;
+            return methods;
         }
-        else
+        List<FrameworkMethod> parameterizedMethods = new ArrayList<FrameworkMethod>();
+        for (FrameworkMethod method : methods)
         {
-            long timeSpent = TimeUnit.NANOSECONDS.toMillis(getActualDurationNanos());
-            return (timeSpent >= expectedDuration);
+            addParameterCombinations(parameterizedMethods, method, parameterFields, new LinkedHashMap<Field, String>());
         }
+        return parameterizedMethods;
     }
 
-    public void startDurationTimer()
+    private List<FrameworkMethod> groupMethods(List<FrameworkMethod> methods)
+    {
+        List<FrameworkMethod> groupedMethods = new ArrayList<FrameworkMethod>();
+        Map<String, List<FrameworkMethod>> membersByGroup = new TreeMap<String, List<FrameworkMethod>>();
+        for (FrameworkMethod method : methods)
+        {
+            Group group = method.getAnnotation(Group.class);
+            if (group == null)
+            {
+                groupedMethods.add(method);
+                continue;
+            }
+            List<FrameworkMethod> members = membersByGroup.get(group.value());
+            if (members == null)
+            {
+                members = new ArrayList<FrameworkMethod>();
+                membersByGroup.put(group.value(), members);
+            }
+            members.add(method);
+        }
+        for (Map.Entry<String, List<FrameworkMethod>> group : membersByGroup.entrySet())
+        {
+            List<FrameworkMethod> members = group.getValue();
+            Collections.sort(members, new Comparator<FrameworkMethod>()
+            {
+                @Override
+                public int compare(FrameworkMethod method1, FrameworkMethod method2)
+                {
+                    return method1.getName().compareTo(method2.getName());
+                }
+            });
+            groupedMethods.add(new GroupFrameworkMethod(group.getKey(), members, Collections.<Field, String> emptyMap()));
+        }
+        return groupedMethods;
+    }
+
+    private void addParameterCombinations(List<FrameworkMethod> methods, FrameworkMethod method, List<Field> remainingFields, Map<Field, String> values)
     {
-        startTimeNanos = System.nanoTime();
-        endTimeNanos = -1;
+        if (remainingFields.isEmpty())
+        {
+            if (method instanceof GroupFrameworkMethod)
+            {
+                methods.add(((GroupFrameworkMethod) method).withParameters(new LinkedHashMap<Field, String>(values)));
+            }
+            else
+            {
+                methods.add(new ParameterizedFrameworkMethod(method.getMethod(), new LinkedHashMap<Field, String>(values)));
+            }
+            return;
+        }
+        Field field = remainingFields.get(0);
+        for (String value : field.getAnnotation(Param.class).value())
+        {
+            values.put(field, value);
+            addParameterCombinations(methods, method, remainingFields.subList(1, remainingFields.size()), values);
+        }
+        values.remove(field);
     }
 
-    public void stopDurationTimer(boolean includeDurationInTotal)
+    private List<Field> getParameterFields()
     {
-        if (endTimeNanos < 0)
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> type = getTestClass().getJavaClass(); type != null; type = type.getSuperclass())
         {
-            endTimeNanos = System.nanoTime();
-            if (includeDurationInTotal)
+            for (Field field : type.getDeclaredFields())
             {
-                totalDurationNanos += (endTimeNanos - startTimeNanos);
+                if (field.isAnnotationPresent(Param.class))
+                {
+                    fields.add(field);
+                }
             }
         }
+        Collections.sort(fields, new Comparator<Field>()
+        {
+            @Override
+            public int compare(Field field1, Field field2)
+            {
+                return field1.getName().compareTo(field2.getName());
+            }
+        });
+        return fields;
     }
 
-    long getActualDurationNanos()
+    @Override
+    protected String testName(FrameworkMethod method)
+    {
+        return Parameters.describe(method.getName(), getParameters(method));
+    }
+
+    private Map<String, String> getParameters(FrameworkMethod method)
+    {
+        if (method instanceof ParameterizedFrameworkMethod)
+        {
+            return ((ParameterizedFrameworkMethod) method).getParameters();
+        }
+        return Collections.emptyMap();
+    }
+
+    @Override
+    protected Statement methodBlock(FrameworkMethod method)
+    {
+        configure(method);
+        if (forks > 0 && !ForkedTestMain.isForked())
+        {
+            // the test instance, befores and afters all belong in the forks
+            return withForks(method);
+        }
+        return super.methodBlock(method);
+    }
+
+    private Statement withForks(final FrameworkMethod method)
     {
-        if (startTimeNanos < 0)
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                LOG.info("Running " + testName(method) + " in " + forks + " forked JVMs");
+                PerformanceTestResults averageResults = new ForkedTestLauncher(testClass, testName(method), forks, singleShot).run(BuildInfoImpl.getCurrentBuild(), groupName, testName, parameters);
+                // only the averages of the forks make it back to this JVM
+                failOnProblems(method, storeAndCheckResults(averageResults, null));
+            }
+        };
+    }
+
+    /**
+     * Test methods may return a value, which the runner consumes so that the
+     * JIT can't eliminate the work that produced it.
+     */
+    @Override
+    protected void validateTestMethods(List<Throwable> errors)
+    {
+        for (FrameworkMethod method : getTestClass().getAnnotatedMethods(Test.class))
+        {
+            Method javaMethod = method.getMethod();
+            if (Modifier.isStatic(javaMethod.getModifiers()))
+            {
+                errors.add(new Exception("Method " + javaMethod.getName() + "() should not be static"));
+            }
+            if (!Modifier.isPublic(javaMethod.getModifiers()))
+            {
+                errors.add(new Exception("Method " + javaMethod.getName() + "() should be public"));
+            }
+            if (javaMethod.getParameterTypes().length != 0)
+            {
+                errors.add(new Exception("Method " + javaMethod.getName() + " should have no parameters"));
+            }
+        }
+        validateGroups(errors);
+        for (Field field : getParameterFields())
         {
-            return 0;
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+            {
+                errors.add(new Exception("Parameter " + field.getName() + " should not be static or final"));
+            }
+            if (field.getAnnotation(Param.class).value().length == 0)
+            {
+                errors.add(new Exception("Parameter " + field.getName() + " should have at least one value"));
+            }
+            for (String value : field.getAnnotation(Param.class).value())
+            {
+                try
+                {
+                    Parameters.validate(field, value);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    errors.add(e);
+                }
+            }
         }
-        if (endTimeNanos < 0)
+    }
+
+    private void validateGroups(List<Throwable> errors)
+    {
+        Map<String, String> configuredMembers = new HashMap<String, String>();
+        for (FrameworkMethod method : getTestClass().getAnnotatedMethods(Group.class))
         {
-            final long now = System.nanoTime();
-            return totalDurationNanos + (now - startTimeNanos);
+            Group group = method.getAnnotation(Group.class);
+            if (method.getAnnotation(Test.class) == null)
+            {
+                errors.add(new Exception("Method " + method.getName() + "() is in group " + group.value() + ", so it should be annotated with @Test"));
+            }
+            if (group.threads() < 1)
+            {
+                errors.add(new Exception("Method " + method.getName() + "() should have at least 1 thread"));
+            }
+            if (method.getAnnotation(PerformanceTest.class) != null)
+            {
+                String configuredMember = configuredMembers.put(group.value(), method.getName());
+                if (configuredMember != null)
+                {
+                    errors.add(new Exception("Only one method in group " + group.value() + " should have @PerformanceTest, but " + configuredMember + "() and " + method.getName()
+                            + "() both do"));
+                }
+            }
         }
-        return totalDurationNanos;
     }
 
     @Override
     protected Statement methodInvoker(FrameworkMethod method, Object test)
     {
-        Statement statement = super.methodInvoker(method, test);
+        if (method instanceof ParameterizedFrameworkMethod)
+        {
+            // this is the first the runner sees of each test instance, so the
+            // parameters are set before any befores run
+            ((ParameterizedFrameworkMethod) method).injectParameters(test);
+        }
+        if (batchSize > 0)
+        {
+            return withInvocationLoop(method, test);
+        }
+        if (footprint)
+        {
+            return withRecordedFootprint(method, test);
+        }
+        Statement statement;
+        if (method.getMethod().getReturnType() == Void.TYPE)
+        {
+            statement = super.methodInvoker(method, test);
+        }
+        else
+        {
+            statement = withConsumedReturnValue(method, test);
+        }
+        if (threadType == ThreadType.VIRTUAL && targetRate <= 0)
+        {
+            statement = withRecordedLatency(statement);
+        }
         return withStartAndStopDurationTimer(method, test, statement);
     }
 
+    /**
+     * Runs the whole pass in one evaluation, calling the test method in
+     * batches of {@link #batchSize}, with each call counted as one operation,
+     * unless the test counts its own operations, in which case only those
+     * count. Befores and afters run around the pass rather than around each
+     * call.
+     */
+    private Statement withInvocationLoop(final FrameworkMethod method, final Object test)
+    {
+        final InvocationLoop loop = getInvocationLoop(method.getMethod());
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                DurationTimer timer = timers.get();
+                InProgressPerformanceTestResults results = PerformanceTestController.getCurrentResults();
+                long operationsBefore = getOperationsCountedSoFar(results);
+                timer.start();
+                long operations = loop.run(test, timer, PerformanceTestController.getCurrentBlackhole());
+                timer.stop(true);
+                if (getOperationsCountedSoFar(results) == operationsBefore)
+                {
+                    results.addNumberOfOperations(operations);
+                }
+            }
+        };
+    }
+
+    private long getOperationsCountedSoFar(InProgressPerformanceTestResults results)
+    {
+        return results.hasNumberOfOperations() ? results.getNumberOfOperations() : 0;
+    }
+
+    private synchronized InvocationLoop getInvocationLoop(Method method)
+    {
+        InvocationLoop loop = invocationLoops.get(method);
+        if (loop == null)
+        {
+            loop = InvocationLoop.create(method, batchSize);
+            invocationLoops.put(method, loop);
+        }
+        return loop;
+    }
+
+    /**
+     * Times the call, and then records the footprint of the object it
+     * returned as the memory of the pass, outside the timed interval. The
+     * breakdown by class is logged the first time.
+     */
+    private Statement withRecordedFootprint(final FrameworkMethod method, final Object test)
+    {
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                startDurationTimer();
+                Object root = method.invokeExplosively(test);
+                stopDurationTimer(true);
+                ObjectFootprint objectFootprint = new PerformanceTestController().recordFootprint(root);
+                if (!loggedFootprint)
+                {
+                    LOG.info("Footprint of " + testName(method) + ": " + objectFootprint);
+                    loggedFootprint = true;
+                }
+            }
+        };
+    }
+
+    private Statement withConsumedReturnValue(final FrameworkMethod method, final Object test)
+    {
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                PerformanceTestController.getCurrentBlackhole().consume(method.invokeExplosively(test));
+            }
+        };
+    }
+
+    /**
+     * Times each call, for virtual threads, where the calls are expected to
+     * block and their latency matters as much as throughput. Each call counts
+     * as one operation, unless the test counts its own operations.
+     */
+    private Statement withRecordedLatency(final Statement statement)
+    {
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                InProgressPerformanceTestResults results = PerformanceTestController.getCurrentResults();
+                long operationsBefore = getOperationsCountedSoFar(results);
+                long start = System.nanoTime();
+                statement.evaluate();
+                results.recordLatencyNanos(System.nanoTime() - start);
+                if (getOperationsCountedSoFar(results) == operationsBefore)
+                {
+                    results.addNumberOfOperations(1);
+                }
+            }
+        };
+    }
+
     private Statement withStartAndStopDurationTimer(final FrameworkMethod method, final Object test, final Statement statement)
     {
         return new Statement()
@@ -156,14 +540,221 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
 
     private void runTestUntilStable(FrameworkMethod method, Object test, Statement statement) throws Throwable
     {
-        resultsList = new ResultsList(runsToAverage, stablePasses, stabilityPercentage);
+        if (scalabilitySweep)
+        {
+            runScalabilitySweep(method, test, statement);
+            return;
+        }
+        PerformanceTestResultsImpl averageResults = singleShot ? measureSingleShot(method, statement) : measureUntilStable(method, test, statement);
+        if (ForkedTestMain.isForked())
+        {
+            // the parent JVM aggregates and stores the results of all the forks
+            ForkedTestMain.writeResults(ForkedTestMain.AVERAGE, averageResults);
+            ForkedTestMain.writeMetrics(averageResults);
+            if (averageResults.hasLatencyHistogram() && averageResults.getLatencyHistogram().getTotalCount() > 0)
+            {
+                ForkedTestMain.writeHistogram(averageResults.getLatencyHistogram());
+            }
+        }
+        else
+        {
+            failOnProblems(method, storeAndCheckResults(averageResults, resultsList));
+        }
+    }
+
+    /**
+     * Runs the test with 1, 2, 4... threads, up to {@link #maxThreads}, and
+     * stores the results of each thread count separately, with the thread
+     * count as a parameter. Each thread count's results also get the parallel
+     * efficiency, and the coefficients of the {@link UniversalScalabilityLaw}
+     * fitted to the throughput at all of them.
+     */
+    private void runScalabilitySweep(FrameworkMethod method, Object test, Statement statement) throws Throwable
+    {
+        Map<String, String> methodParameters = parameters;
+        List<Integer> threadCounts = getScalabilitySweepThreadCounts();
+        List<PerformanceTestResultsImpl> resultsByThreadCount = new ArrayList<PerformanceTestResultsImpl>();
+        List<ResultsList> passesByThreadCount = new ArrayList<ResultsList>();
+        try
+        {
+            for (int threadCount : threadCounts)
+            {
+                threads = threadCount;
+                parameters = new TreeMap<String, String>(methodParameters);
+                parameters.put(THREADS_PARAMETER, Integer.toString(threadCount));
+                LOG.info("Running " + testName(method) + " with " + threadCount + " threads");
+                resultsByThreadCount.add(measureUntilStable(method, test, statement));
+                passesByThreadCount.add(resultsList);
+            }
+        }
+        finally
+        {
+            parameters = methodParameters;
+        }
+
+        int[] threadCountArray = new int[threadCounts.size()];
+        double[] throughput = new double[threadCounts.size()];
+        for (int i = 0; i < threadCounts.size(); ++i)
+        {
+            threadCountArray[i] = threadCounts.get(i);
+            PerformanceTestResultsImpl results = resultsByThreadCount.get(i);
+            throughput[i] = results.hasOperationsPerSecond() ? results.getOperationsPerSecond() : 0;
+        }
+        if (throughput[0] > 0)
+        {
+            UniversalScalabilityLaw scalability = UniversalScalabilityLaw.fit(threadCountArray, throughput);
+            LOG.info(testName(method) + " contention = " + String.format("%f", scalability.getContention()) + ", coherency = " + String.format("%f", scalability.getCoherency()));
+            for (int i = 0; i < threadCounts.size(); ++i)
+            {
+                PerformanceTestResultsImpl results = resultsByThreadCount.get(i);
+                results.setAttribute(PerformanceTestResults.SCALING_EFFICIENCY, throughput[i] / (threadCountArray[i] * throughput[0]));
+                results.setAttribute(PerformanceTestResults.USL_CONTENTION, scalability.getContention());
+                results.setAttribute(PerformanceTestResults.USL_COHERENCY, scalability.getCoherency());
+                if (scalability.getPeakThreads() > 0)
+                {
+                    results.setAttribute(PerformanceTestResults.USL_PEAK_THREADS, scalability.getPeakThreads());
+                }
+            }
+        }
+        else
+        {
+            LOG.warn("Can't calculate the scalability of " + testName(method) + " without a number of operations");
+        }
+        List<String> problems = new ArrayList<String>();
+        for (int i = 0; i < threadCounts.size(); ++i)
+        {
+            for (String problem : storeAndCheckResults(resultsByThreadCount.get(i), passesByThreadCount.get(i)))
+            {
+                problems.add("with " + threadCountArray[i] + " threads, " + problem);
+            }
+        }
+        failOnProblems(method, problems);
+    }
+
+    private List<Integer> getScalabilitySweepThreadCounts()
+    {
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int threadCount = 1; threadCount < maxThreads; threadCount *= 2)
+        {
+            threadCounts.add(threadCount);
+        }
+        threadCounts.add(maxThreads);
+        return threadCounts;
+    }
 
+    private PerformanceTestResultsImpl measureUntilStable(FrameworkMethod method, Object test, Statement statement) throws Throwable
+    {
+        resultsList = new ResultsList(runsToAverage, stablePasses, stabilityPercentage, estimator, trimPercentage, confidenceWidthPercentage);
+        // each thread count of a scalability sweep warms up on its own, since
+        // more threads can take the code down paths the JIT hasn't seen yet
+        warmedUp = warmupPasses == 0 && warmupDuration == 0 && warmupQuietPasses == 0;
+        quietPasses = 0;
+        TimerCalibration calibration = getTimerCalibration();
+        timers.set(newTimer());
+        // after the calibration, which the first test in the JVM waits for,
+        // so it counts towards neither the warmup curve nor the time budget
+        testStartTimeNanos = System.nanoTime();
+
+        WarmupCurve warmupCurve = new WarmupCurve();
         currentPass = 0;
         while (!isTestDone())
         {
-            runPass(method, statement);
+            boolean warmupPass = !warmedUp;
+            InProgressPerformanceTestResults results = runPass(method, test, statement);
+            warmupCurve.addPass(System.nanoTime() - testStartTimeNanos, results, warmupPass);
+            if (ForkedTestMain.isForked())
+            {
+                ForkedTestMain.writeResults(warmupPass ? ForkedTestMain.WARMUP_PASS : ForkedTestMain.MEASURED_PASS, results);
+            }
+        }
+        PerformanceTestResultsImpl averageResults = resultsList.getAverageResults();
+        averageResults.setAttribute(PerformanceTestResults.TIMER_GRANULARITY, calibration.getGranularityNanos());
+        averageResults.setAttribute(PerformanceTestResults.TIMER_OVERHEAD, calibration.getTimerOverheadNanos());
+        warmupCurve.setAttributes(averageResults);
+        if (warmupCurve.getWarmupPasses() > 0)
+        {
+            storeWarmupCurve(averageResults, warmupCurve);
+        }
+        return averageResults;
+    }
+
+    /**
+     * Calls the test method once, before anything else in this JVM has used
+     * the code under test, so the time includes loading and initialising its
+     * classes and running it in the interpreter. The classes loaded and the
+     * time spent compiling during the call, and its befores and afters, are
+     * recorded with it. The timer isn't calibrated first, since that would
+     * warm up the JVM.
+     */
+    private PerformanceTestResultsImpl measureSingleShot(FrameworkMethod method, Statement statement) throws Throwable
+    {
+        DurationTimer timer = new DurationTimer(-1);
+        timers.set(timer);
+        InProgressPerformanceTestResults results = newResults(BuildInfoImpl.getCurrentBuild(), timer);
+        PerformanceTestController.setupTest(results, this);
+        LOG.info("Running single shot of " + testName(method));
+
+        ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
+        CompilationMonitor compilationMonitor = new CompilationMonitor();
+        long loadedClassesBefore = classLoadingBean.getTotalLoadedClassCount();
+        compilationMonitor.start();
+        statement.evaluate();
+        long compilationMillis = compilationMonitor.stop();
+        long loadedClasses = classLoadingBean.getTotalLoadedClassCount() - loadedClassesBefore;
+
+        PerformanceTestResultsImpl shotResults = new PerformanceTestResultsImpl(BuildInfoImpl.getCurrentBuild(), groupName, testName);
+        shotResults.setParameters(parameters);
+        shotResults.setDurationNanos(timer.getActualDurationNanos());
+        shotResults.setNumberOfOperations(1);
+        shotResults.setAverageLatencyNanos(timer.getActualDurationNanos());
+        shotResults.setAttribute(PerformanceTestResults.LOADED_CLASSES, loadedClasses);
+        if (compilationMonitor.isSupported())
+        {
+            shotResults.setAttribute(PerformanceTestResults.JIT_COMPILATION_MILLIS, compilationMillis);
+        }
+        return shotResults;
+    }
+
+    /**
+     * Stores the results, and checks them against the budget, and against
+     * the results from recent builds if the regression gate is enabled.
+     * Returns a description of each problem found.
+     *
+     * @param passes
+     *            the passes that the results were averaged from, or null if
+     *            they aren't known
+     */
+    private List<String> storeAndCheckResults(PerformanceTestResults averageResults, ResultsList passes) throws Exception
+    {
+        List<PerformanceTestResults> history = null;
+        if (regressionGate.isEnabled())
+        {
+            history = regressionGate.loadHistory(projectName, averageResults);
+        }
+        storeResults(averageResults);
+        List<String> problems = budget.findViolations(averageResults);
+        if (history != null)
+        {
+            problems.addAll(regressionGate.findRegressions(averageResults, passes, history));
+        }
+        return problems;
+    }
+
+    private void failOnProblems(FrameworkMethod method, List<String> problems)
+    {
+        if (!problems.isEmpty())
+        {
+            StringBuilder message = new StringBuilder(testName(method) + " failed its performance checks:");
+            for (String problem : problems)
+            {
+                message.append("\n  ").append(problem);
+            }
+            Assert.fail(message.toString());
         }
-        PerformanceTestResults averageResults = resultsList.getAverageResults();
+    }
+
+    private void storeResults(PerformanceTestResults averageResults) throws Exception
+    {
         try
         {
             new ResultsRecorder(projectName).storeResults(averageResults);
@@ -178,28 +769,523 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
         }
     }
 
-    private void runPass(FrameworkMethod method, Statement statement) throws Throwable
+    private void storeWarmupCurve(PerformanceTestResults averageResults, WarmupCurve warmupCurve)
     {
-        InProgressPerformanceTestResults results = new InProgressPerformanceTestResults(BuildInfoImpl.getCurrentBuild(), groupName, testName, this);
+        try
+        {
+            new ResultsRecorder(projectName).storeWarmupCurve(averageResults, warmupCurve);
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error storing warmup curve", e);
+        }
+    }
+
+    private InProgressPerformanceTestResults runPass(FrameworkMethod method, Object test, Statement statement) throws Throwable
+    {
+        DurationTimer timer = newTimer();
+        timers.set(timer);
+        InProgressPerformanceTestResults results = newResults(BuildInfoImpl.getCurrentBuild(), timer);
         PerformanceTestController.setupTest(results, this);
-        totalDurationNanos = 0;
-        startTimeNanos = -1;
-        endTimeNanos = -1;
         currentPass++;
         LOG.info("Running " + (warmedUp ? "real " : "warmup ") + "pass for " + testName(method));
-        // add the results class before we run, so that it's counted by
-        // calls to isDone from within the test method
-        resultsList.add(results);
 
+        GcMonitor gcMonitor = new GcMonitor();
+        gcMonitor.start();
+        PinningMonitor pinningMonitor = null;
+        if (threadType == ThreadType.VIRTUAL && threadType.isSupported())
+        {
+            pinningMonitor = new PinningMonitor();
+            pinningMonitor.start();
+        }
+        CompilationMonitor compilationMonitor = null;
+        if (!warmedUp && warmupQuietPasses > 0)
+        {
+            compilationMonitor = new CompilationMonitor(true);
+            if (!compilationMonitor.isSupported() && !compilationMonitor.isCounting())
+            {
+                LOG.warn("The JIT doesn't report its compilation time, so warmup can't wait for it to finish");
+            }
+            compilationMonitor.start();
+        }
+        try
+        {
+            if (threads > 1 || threadType == ThreadType.VIRTUAL || method instanceof GroupFrameworkMethod)
+            {
+                runThreadedPass(method, test, statement, results);
+                // the per-thread results are only merged once every thread has
+                // finished, so the pass is only counted after that
+                resultsList.add(results);
+            }
+            else
+            {
+                // add the results class before we run, so that it's counted by
+                // calls to isDone from within the test method
+                resultsList.add(results);
+
+                Statement passLoop = withPassLoop(statement);
+                long allocatedBytesBefore = AllocationCounter.getAllocatedBytes();
+                passLoop.evaluate();
+                addAllocatedBytes(results, allocatedBytesBefore);
+            }
+        }
+        finally
+        {
+            gcMonitor.stop(results);
+            if (pinningMonitor != null)
+            {
+                pinningMonitor.stop(results);
+            }
+            if (compilationMonitor != null)
+            {
+                long compilationMillis = compilationMonitor.stop();
+                boolean quiet;
+                if (compilationMonitor.isCounting())
+                {
+                    long compilations = compilationMonitor.getCompilationCount();
+                    LOG.info("JIT made " + compilations + " compilations, taking " + compilationMillis + "ms, during warmup pass");
+                    // the time also covers compilations that were still
+                    // running when the pass ended, which aren't counted yet
+                    quiet = compilations == 0 && compilationMillis == 0;
+                }
+                else
+                {
+                    LOG.info("JIT compiled for " + compilationMillis + "ms during warmup pass");
+                    quiet = compilationMillis == 0;
+                }
+                quietPasses = quiet ? quietPasses + 1 : 0;
+            }
+        }
+
+        if (!results.hasDurationNanos())
+        {
+            results.setDurationNanos(getActualDurationNanos());
+        }
+        checkTimerError(method, results, timer);
+        resultsList.finishPass();
+        return results;
+    }
+
+    /**
+     * Creates the results of a pass, or of one thread's part of it, along with
+     * the histogram its latencies are recorded into, so that the histogram
+     * isn't created inside the timed part of the pass and counted as
+     * allocated by the test.
+     */
+    private InProgressPerformanceTestResults newResults(BuildInfo buildInfo, DurationTimer timer)
+    {
+        InProgressPerformanceTestResults results = new InProgressPerformanceTestResults(buildInfo, groupName, testName, timer);
+        results.setParameters(parameters);
+        results.useLatencyHistogram(new LatencyHistogram());
+        return results;
+    }
+
+    private DurationTimer newTimer()
+    {
+        long overheadNanos = subtractTimerOverhead ? Math.round(getTimerCalibration().getTimerOverheadNanos()) : 0;
+        return new DurationTimer(expectedDuration, overheadNanos);
+    }
+
+    /**
+     * Measures the timer once per JVM, using this runner's controller set up,
+     * so the overhead includes everything a test pays to start and stop it.
+     */
+    private TimerCalibration getTimerCalibration()
+    {
+        synchronized (PerformanceTestRunner.class)
+        {
+            if (timerCalibration == null)
+            {
+                DurationTimer timer = new DurationTimer(-1);
+                timers.set(timer);
+                PerformanceTestController.setupTest(new InProgressPerformanceTestResults(BuildInfoImpl.getCurrentBuild(), groupName, testName, timer), this);
+                timerCalibration = TimerCalibration.measure(new PerformanceTestController(), timer);
+                LOG.info("Calibrated " + timerCalibration);
+            }
+            return timerCalibration;
+        }
+    }
+
+    /**
+     * Checks whether the intervals timed in the pass were long enough for
+     * the granularity of the timer not to matter.
+     */
+    private void checkTimerError(FrameworkMethod method, InProgressPerformanceTestResults results, DurationTimer timer)
+    {
+        if (!results.isDurationTimed() || timer.getIntervals() == 0)
+        {
+            return;
+        }
+        double averageIntervalNanos = timer.getActualDurationNanos() / (double) timer.getIntervals();
+        double errorPercentage = getTimerCalibration().getGranularityNanos() * 100.0 / averageIntervalNanos;
+        String message = String.format("Timed intervals in %s averaged %.0fns, so the timer granularity of %dns could be %.2f%% of each", testName(method), averageIntervalNanos,
+                getTimerCalibration().getGranularityNanos(), errorPercentage);
+        if (maxTimerErrorPercentage >= 0 && errorPercentage > maxTimerErrorPercentage)
+        {
+            Assert.fail(message);
+        }
+        else if (errorPercentage > TIMER_ERROR_WARNING_PERCENTAGE && !warnedAboutTimerError)
+        {
+            LOG.warn(message);
+            warnedAboutTimerError = true;
+        }
+    }
+
+    private void addAllocatedBytes(InProgressPerformanceTestResults results, long allocatedBytesBefore)
+    {
+        if (AllocationCounter.isSupported())
+        {
+            results.addAllocatedBytes(AllocationCounter.getAllocatedBytes() - allocatedBytesBefore);
+        }
+    }
+
+    private void runUntilPassIsLongEnough(Statement statement) throws Throwable
+    {
         statement.evaluate();
         while (!testHasRunLongEnough())
         {
             statement.evaluate();
         }
-        
-        if (!results.hasDurationNanos())
+    }
+
+    /**
+     * Runs the pass on {@link #threads} new threads of {@link #threadType}, or
+     * on the threads of each member of a group, which are released together
+     * by a barrier. The number of operations is the sum across the threads,
+     * and the duration is the wall-clock window from the barrier being
+     * released until the last thread finished.
+     */
+    private void runThreadedPass(final FrameworkMethod method, final Object test, final Statement statement, final InProgressPerformanceTestResults results) throws Throwable
+    {
+        List<FrameworkMethod> threadMethods = getThreadMethods(method);
+        final DurationTimer passTimer = timers.get();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CyclicBarrier startBarrier = new CyclicBarrier(threadMethods.size(), new Runnable()
         {
-            results.setDurationNanos(getActualDurationNanos());
+            @Override
+            public void run()
+            {
+                passTimer.start();
+            }
+        });
+
+        // each member of a group has histograms of its own, so that its
+        // latencies can be reported separately
+        Map<FrameworkMethod, LatencyHistogram[]> sharedHistograms = null;
+        if (threadType == ThreadType.VIRTUAL)
+        {
+            warnIfVirtualThreadsAreUnsupported();
+            sharedHistograms = new HashMap<FrameworkMethod, LatencyHistogram[]>();
+            for (FrameworkMethod threadMethod : threadMethods)
+            {
+                if (!sharedHistograms.containsKey(threadMethod))
+                {
+                    LatencyHistogram[] histograms = new LatencyHistogram[Runtime.getRuntime().availableProcessors() * 2];
+                    for (int i = 0; i < histograms.length; ++i)
+                    {
+                        histograms[i] = new SharedLatencyHistogram();
+                    }
+                    sharedHistograms.put(threadMethod, histograms);
+                }
+            }
+        }
+
+        List<InProgressPerformanceTestResults> threadResultsList = new ArrayList<InProgressPerformanceTestResults>(threadMethods.size());
+        List<Thread> workers = new ArrayList<Thread>(threadMethods.size());
+        for (int threadIndex = 0; threadIndex < threadMethods.size(); ++threadIndex)
+        {
+            FrameworkMethod threadMethod = threadMethods.get(threadIndex);
+            final Statement threadStatement;
+            String threadName;
+            if (method instanceof GroupFrameworkMethod)
+            {
+                threadStatement = createGroupMemberStatement(threadMethod, test);
+                threadName = testName(method) + "-" + threadMethod.getName() + "-" + threadIndex;
+            }
+            else
+            {
+                threadStatement = createThreadStatement(method, statement);
+                threadName = testName(method) + "-" + threadIndex;
+            }
+            final DurationTimer threadTimer = newTimer();
+            final InProgressPerformanceTestResults threadResults;
+            if (sharedHistograms != null)
+            {
+                threadResults = new InProgressPerformanceTestResults(results.getBuildInfo(), groupName, testName, threadTimer);
+                threadResults.setParameters(parameters);
+                LatencyHistogram[] histograms = sharedHistograms.get(threadMethod);
+                threadResults.useLatencyHistogram(histograms[threadIndex % histograms.length]);
+            }
+            else
+            {
+                threadResults = newResults(results.getBuildInfo(), threadTimer);
+            }
+            threadResultsList.add(threadResults);
+            workers.add(threadType.newThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    timers.set(threadTimer);
+                    PerformanceTestController.setupTest(threadResults, PerformanceTestRunner.this);
+                    try
+                    {
+                        startBarrier.await();
+                        long allocatedBytesBefore = AllocationCounter.getAllocatedBytes();
+                        threadStatement.evaluate();
+                        addAllocatedBytes(threadResults, allocatedBytesBefore);
+                    }
+                    catch (Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                        // don't leave the other threads waiting for one that will never arrive
+                        startBarrier.reset();
+                    }
+                }
+            }, threadName));
+        }
+
+        for (Thread worker : workers)
+        {
+            worker.start();
+        }
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        passTimer.stop(true);
+
+        if (failure.get() != null)
+        {
+            throw failure.get();
+        }
+
+        // shared histograms must only be merged once
+        Set<LatencyHistogram> mergedHistograms = Collections.newSetFromMap(new IdentityHashMap<LatencyHistogram, Boolean>());
+        Map<String, Metric> customMetrics = new HashMap<String, Metric>();
+        Map<String, Double> customMetricTotals = new HashMap<String, Double>();
+        Map<String, Integer> customMetricCounts = new HashMap<String, Integer>();
+        for (InProgressPerformanceTestResults threadResults : threadResultsList)
+        {
+            Map<String, Double> threadValues = threadResults.asMap();
+            for (Metric metric : threadResults.getCustomMetrics().values())
+            {
+                String name = metric.getName();
+                Double total = customMetricTotals.get(name);
+                Integer count = customMetricCounts.get(name);
+                customMetrics.put(name, metric);
+                customMetricTotals.put(name, (total == null ? 0 : total) + threadValues.get(name));
+                customMetricCounts.put(name, (count == null ? 0 : count) + 1);
+            }
+            if (threadResults.hasNumberOfOperations())
+            {
+                results.addNumberOfOperations(threadResults.getNumberOfOperations());
+            }
+            if (threadResults.hasAllocatedBytes())
+            {
+                results.addAllocatedBytes(threadResults.getAllocatedBytes());
+            }
+            if (threadResults.hasLatencyHistogram() && mergedHistograms.add(threadResults.getLatencyHistogram()))
+            {
+                results.addLatencyHistogram(threadResults.getLatencyHistogram());
+            }
+        }
+        for (Metric metric : customMetrics.values())
+        {
+            String name = metric.getName();
+            results.recordMetric(name, customMetricTotals.get(name) / customMetricCounts.get(name), metric.getUnit(), metric.isHigherBetter());
+        }
+        results.setDurationNanos(passTimer.getActualDurationNanos());
+        if (method instanceof GroupFrameworkMethod)
+        {
+            addGroupMemberResults(threadMethods, threadResultsList, results);
+        }
+    }
+
+    private List<FrameworkMethod> getThreadMethods(FrameworkMethod method)
+    {
+        if (method instanceof GroupFrameworkMethod)
+        {
+            return ((GroupFrameworkMethod) method).getThreadMembers();
+        }
+        return Collections.nCopies(threads, method);
+    }
+
+    /**
+     * Stores the operations, throughput and latency of each member of a group
+     * in the pass's results, prefixed with the member's name.
+     */
+    private void addGroupMemberResults(List<FrameworkMethod> threadMethods, List<InProgressPerformanceTestResults> threadResultsList, InProgressPerformanceTestResults results)
+    {
+        Map<FrameworkMethod, PerformanceTestResultsImpl> memberResultsByMethod = new LinkedHashMap<FrameworkMethod, PerformanceTestResultsImpl>();
+        Set<LatencyHistogram> mergedHistograms = Collections.newSetFromMap(new IdentityHashMap<LatencyHistogram, Boolean>());
+        for (int threadIndex = 0; threadIndex < threadMethods.size(); ++threadIndex)
+        {
+            InProgressPerformanceTestResults threadResults = threadResultsList.get(threadIndex);
+            PerformanceTestResultsImpl memberResults = memberResultsByMethod.get(threadMethods.get(threadIndex));
+            if (memberResults == null)
+            {
+                memberResults = new PerformanceTestResultsImpl(results.getBuildInfo(), groupName, testName);
+                memberResults.setDurationNanos(results.getDurationNanos());
+                memberResultsByMethod.put(threadMethods.get(threadIndex), memberResults);
+            }
+            if (threadResults.hasNumberOfOperations())
+            {
+                memberResults.addNumberOfOperations(threadResults.getNumberOfOperations());
+            }
+            if (threadResults.hasAllocatedBytes())
+            {
+                memberResults.addAllocatedBytes(threadResults.getAllocatedBytes());
+            }
+            if (threadResults.hasLatencyHistogram() && mergedHistograms.add(threadResults.getLatencyHistogram()))
+            {
+                memberResults.addLatencyHistogram(threadResults.getLatencyHistogram());
+            }
+        }
+        for (Map.Entry<FrameworkMethod, PerformanceTestResultsImpl> memberResults : memberResultsByMethod.entrySet())
+        {
+            Map<String, Double> values = memberResults.getValue().asMap();
+            // every member ran for the whole pass
+            values.remove(PerformanceTestResults.DURATION_NANOS);
+            for (Map.Entry<String, Double> value : values.entrySet())
+            {
+                results.setAttribute(memberResults.getKey().getName() + "." + value.getKey(), value.getValue().doubleValue());
+            }
+        }
+    }
+
+    private void warnIfVirtualThreadsAreUnsupported()
+    {
+        synchronized (PerformanceTestRunner.class)
+        {
+            if (!ThreadType.VIRTUAL.isSupported() && !warnedAboutVirtualThreads)
+            {
+                LOG.warn("Virtual threads need Java 21 or later, using platform threads instead");
+                warnedAboutVirtualThreads = true;
+            }
+        }
+    }
+
+    /**
+     * The members of a group share the test instance, but are invoked
+     * separately, with the befores and afters around each call if they run
+     * each pass.
+     */
+    private Statement createGroupMemberStatement(FrameworkMethod member, Object test)
+    {
+        Statement statement = methodInvoker(member, test);
+        if (runBeforeAndAftersEachPass)
+        {
+            statement = super.withBefores(member, test, super.withAfters(member, test, statement));
+        }
+        return withPassLoop(statement);
+    }
+
+    private Statement createThreadStatement(final FrameworkMethod method, final Statement sharedStatement) throws Exception
+    {
+        if (stateScope == StateScope.SHARED)
+        {
+            return withPassLoop(sharedStatement);
+        }
+
+        Object threadTarget = createTest();
+        Statement statement = methodInvoker(method, threadTarget);
+        if (runBeforeAndAftersEachPass)
+        {
+            return withPassLoop(super.withBefores(method, threadTarget, super.withAfters(method, threadTarget, statement)));
+        }
+        else
+        {
+            return super.withBefores(method, threadTarget, super.withAfters(method, threadTarget, withPassLoop(statement)));
+        }
+    }
+
+    private Statement withPassLoop(final Statement statement)
+    {
+        if (targetRate > 0)
+        {
+            return withFixedRateSchedule(statement);
+        }
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                runUntilPassIsLongEnough(statement);
+            }
+        };
+    }
+
+    /**
+     * Calls the test method open-loop, on a schedule of intended start times
+     * at the target rate, split evenly across the threads. Each call is one
+     * operation, unless the test counts its own operations, and its latency is measured from its intended start time
+     * rather than its actual one, so a stall in the code under test shows up
+     * as queueing delay on every call scheduled behind it instead of being
+     * hidden by the calls that were never made.
+     */
+    private Statement withFixedRateSchedule(final Statement statement)
+    {
+        final double meanIntervalNanos = TimeUnit.SECONDS.toNanos(threads) / targetRate;
+        final long expectedDurationNanos = TimeUnit.MILLISECONDS.toNanos(expectedDuration);
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                InProgressPerformanceTestResults results = PerformanceTestController.getCurrentResults();
+                // the pass lasts for the whole schedule, not just the time
+                // spent in calls, so the calls are timed by a separate timer
+                DurationTimer passTimer = timers.get();
+                timers.set(newTimer());
+                Random random = new Random();
+                long operationsBefore = getOperationsCountedSoFar(results);
+                long operations = 0;
+                passTimer.start();
+                long startTimeNanos = System.nanoTime();
+                long intendedStartNanos = startTimeNanos;
+                try
+                {
+                    do
+                    {
+                        waitUntil(intendedStartNanos);
+                        statement.evaluate();
+                        results.recordLatencyNanos(System.nanoTime() - intendedStartNanos);
+                        operations++;
+                        intendedStartNanos += arrivals.nextIntervalNanos(meanIntervalNanos, random);
+                    }
+                    while (intendedStartNanos - startTimeNanos < expectedDurationNanos);
+                    // the pass covers the whole scheduled window, even though
+                    // nothing was scheduled at the very end of it
+                    waitUntil(startTimeNanos + expectedDurationNanos);
+                }
+                finally
+                {
+                    passTimer.stop(true);
+                    timers.set(passTimer);
+                }
+                if (getOperationsCountedSoFar(results) == operationsBefore)
+                {
+                    results.addNumberOfOperations(operations);
+                }
+            }
+        };
+    }
+
+    private void waitUntil(long timeNanos)
+    {
+        long remaining = timeNanos - System.nanoTime();
+        while (remaining > 0)
+        {
+            if (remaining > MIN_PARK_NANOS)
+            {
+                LockSupport.parkNanos(remaining - MIN_PARK_NANOS);
+            }
+            else
+            {
+                Thread.yield();
+            }
+            remaining = timeNanos - System.nanoTime();
         }
     }
 
@@ -209,7 +1295,7 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
         return (PerformanceTest) testClass.getAnnotation(PerformanceTest.class);
     }
 
-    public boolean isTestDone()
+    public synchronized boolean isTestDone()
     {
         if (!testHasRunLongEnough())
         {
@@ -225,6 +1311,14 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
             {
                 return false;
             }
+            if (quietPasses < warmupQuietPasses)
+            {
+                if (currentPass < maxPasses)
+                {
+                    return false;
+                }
+                LOG.warn("Ending warmup of " + testName + " after " + currentPass + " passes, but the JIT was still compiling");
+            }
 
             // once warmup is done, clear the results so that stability checks
             // aren't using the warmup passes
@@ -236,8 +1330,19 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
         {
             return currentPass > 0;
         }
+        if (timeBudget > 0 && currentPass > 0 && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - testStartTimeNanos) >= timeBudget)
+        {
+            LOG.warn("Stopping " + testName + " after " + currentPass + " passes, its time budget of " + timeBudget + "ms is used up");
+            return true;
+        }
         if (currentPass >= maxPasses)
         {
+            if (confidenceWidthPercentage > 0)
+            {
+                // a noisy test just gets reported with its wider interval
+                LOG.warn("Stopping " + testName + " after " + currentPass + " passes without reaching the target confidence interval");
+                return true;
+            }
             Assert.fail("Exceeded max passes for test");
         }
 
@@ -255,16 +1360,34 @@ public class PerformanceTestRunner extends BlockJUnit4ClassRunner
         this.expectedDuration = configuration.getExpectedDuration();
         this.warmupPasses = configuration.getWarmupPasses();
         this.warmupDuration = configuration.getWarmupDuration();
+        this.warmupQuietPasses = configuration.getWarmupQuietPasses();
         this.groupName = configuration.getGroupName();
         this.testName = configuration.getTestName();
         this.projectName = configuration.getProjectName();
         this.runBeforeAndAftersEachPass = configuration.getRunBeforeAndAftersEachPass();
-        
-        warmedUp = false;
-        if (warmupPasses == 0 && warmupDuration == 0)
-        {
-            warmedUp = true;
-        }
+        this.threads = configuration.getThreads();
+        this.threadType = configuration.getThreadType();
+        this.stateScope = configuration.getStateScope();
+        this.targetRate = configuration.getTargetRate();
+        this.arrivals = configuration.getArrivals();
+        this.estimator = configuration.getEstimator();
+        this.trimPercentage = configuration.getTrimPercentage();
+        this.confidenceWidthPercentage = configuration.getConfidenceWidthPercentage();
+        this.timeBudget = configuration.getTimeBudget();
+        this.forks = configuration.getForks();
+        this.batchSize = configuration.getBatchSize();
+        this.subtractTimerOverhead = configuration.getSubtractTimerOverhead();
+        this.maxTimerErrorPercentage = configuration.getMaxTimerErrorPercentage();
+        this.scalabilitySweep = configuration.getScalabilitySweep();
+        this.singleShot = configuration.getSingleShot();
+        this.footprint = configuration.getFootprint();
+        this.loggedFootprint = false;
+        this.maxThreads = configuration.getMaxThreads();
+        this.regressionGate = new RegressionGate(configuration.getRegressionBuilds(), configuration.getRegressionPercentage(), configuration.getRegressionSignificance());
+        this.budget = new PerformanceBudget(configuration.getMinOpsPerSecond(), configuration.getMaxAverageLatencyNanos(), configuration.getMaxP99LatencyNanos(),
+                configuration.getMaxBytesPerOperation(), configuration.getMaxMemoryBytes());
+        this.warnedAboutTimerError = false;
+        this.parameters = getParameters(method);
     }
 
 }
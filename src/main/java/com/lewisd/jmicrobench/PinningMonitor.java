@@ -0,0 +1,26 @@
+package com.lewisd.jmicrobench;
+
+import java.io.IOException;
+
+/**
+ * Counts the times a virtual thread blocked while pinned to its carrier
+ * thread during a pass, using the JDK's flight recorder. Only virtual
+ * threads get pinned, so this is only used on Java 21 or later. Every time
+ * is counted, not just those over the flight recorder's default threshold
+ * of 20ms.
+ */
+public class PinningMonitor
+{
+    private final FlightRecording recording = new FlightRecording("jdk.VirtualThreadPinned");
+
+    public void start()
+    {
+        recording.start();
+    }
+
+    public void stop(PerformanceTestResultsImpl results) throws IOException
+    {
+        results.setAttribute(PerformanceTestResults.VIRTUAL_THREAD_PINNED_COUNT, recording.stop());
+    }
+
+}
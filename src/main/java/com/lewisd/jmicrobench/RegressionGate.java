@@ -0,0 +1,172 @@
+package com.lewisd.jmicrobench;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compares the results of a test with the ones it had in recent builds, and
+ * finds the metrics that got worse by more than a threshold: throughput,
+ * mean latency and any custom metrics. A metric only counts as regressed if
+ * the Mann-Whitney U test says the change is unlikely to be noise. That can't
+ * tell a single value from noise until the history is around 40 builds
+ * long, so a single value, such as a test that only has its average, is
+ * compared with the spread of the history instead.
+ */
+public class RegressionGate
+{
+    private static final Logger LOG = Logger.getLogger(RegressionGate.class);
+    // the variation between builds can't be judged from fewer
+    private static final int MIN_HISTORY_BUILDS = 3;
+
+    private final int builds;
+    private final double percentage;
+    private final double significance;
+
+    public RegressionGate(int builds, double percentage, double significance)
+    {
+        this.builds = builds;
+        this.percentage = percentage;
+        this.significance = significance;
+    }
+
+    public boolean isEnabled()
+    {
+        return builds > 0;
+    }
+
+    /**
+     * The results of the test from the most recent builds, or null if they
+     * can't be loaded. They have to be loaded before the results are stored,
+     * or they'd be compared with themselves.
+     */
+    public List<PerformanceTestResults> loadHistory(String projectName, PerformanceTestResults results)
+    {
+        if (results.getBuildInfo().getRevision() < 0)
+        {
+            LOG.info("No build.revision property, not checking for regressions");
+            return null;
+        }
+        try
+        {
+            return DBHelper.getTestResultsDao(projectName).getTestHistory(results.getTestGroupName(), results.getTestName(), results.getParameters(), builds);
+        }
+        catch (SQLException e)
+        {
+            LOG.error("Error loading test history", e);
+            return null;
+        }
+    }
+
+    /**
+     * Describes each metric that regressed.
+     *
+     * @param resultsList
+     *            the passes that the results were averaged from, or null if
+     *            only the averages are known
+     */
+    public List<String> findRegressions(PerformanceTestResults results, ResultsList resultsList, List<PerformanceTestResults> history)
+    {
+        List<String> regressions = new ArrayList<String>();
+        for (Metric metric : getCheckedMetrics(results))
+        {
+            double[] baseline = getValues(metric.getName(), history);
+            if (baseline.length < MIN_HISTORY_BUILDS)
+            {
+                LOG.info("Only " + baseline.length + " earlier builds have " + metric.getName() + ", not checking it for regressions");
+                continue;
+            }
+            double[] current = resultsList == null ? null : resultsList.getAveragedValues(metric.getName());
+            if (current == null)
+            {
+                current = new double[] { results.asMap().get(metric.getName()) };
+            }
+            String regression = findRegression(metric, current, baseline);
+            if (regression != null)
+            {
+                regressions.add(regression);
+            }
+        }
+        return regressions;
+    }
+
+    private List<Metric> getCheckedMetrics(PerformanceTestResults results)
+    {
+        List<Metric> metrics = new ArrayList<Metric>();
+        if (results.hasOperationsPerSecond())
+        {
+            metrics.add(Metric.OPS_PER_SECOND);
+        }
+        if (results.asMap().containsKey(PerformanceTestResults.LATENCY))
+        {
+            metrics.add(Metric.LATENCY);
+        }
+        metrics.addAll(results.getCustomMetrics().values());
+        return metrics;
+    }
+
+    private double[] getValues(String attributeName, List<PerformanceTestResults> history)
+    {
+        double[] values = new double[history.size()];
+        int count = 0;
+        for (PerformanceTestResults results : history)
+        {
+            Double value = results.asMap().get(attributeName);
+            if (value != null)
+            {
+                values[count++] = value.doubleValue();
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Describes how the metric regressed from the baseline, or returns null
+     * if it didn't.
+     */
+    String findRegression(Metric metric, double[] current, double[] baseline)
+    {
+        double baselineMedian = median(baseline);
+        double currentMedian = median(current);
+        if (baselineMedian == 0)
+        {
+            return null;
+        }
+        double changePercentage = (currentMedian - baselineMedian) * 100 / Math.abs(baselineMedian);
+        double worsePercentage = metric.isHigherBetter() ? -changePercentage : changePercentage;
+        if (worsePercentage <= percentage)
+        {
+            return null;
+        }
+        // how likely values this much worse would be if nothing had changed
+        double pValue;
+        if (current.length == 1)
+        {
+            double zScore = Statistics.predictionZScore(current[0], baseline);
+            pValue = Statistics.normalCdf(metric.isHigherBetter() ? zScore : -zScore);
+        }
+        else
+        {
+            pValue = metric.isHigherBetter() ? Statistics.mannWhitneyPValue(current, baseline) : Statistics.mannWhitneyPValue(baseline, current);
+        }
+        String description = String.format("%s was %.2f%% worse than the median of %.4g %s over the last %d builds (p = %.3f)", metric.getName(), worsePercentage, baselineMedian,
+                metric.getUnit(), baseline.length, pValue);
+        if (pValue >= significance)
+        {
+            LOG.warn(description + ", which could be noise");
+            return null;
+        }
+        return description;
+    }
+
+    private double median(double[] values)
+    {
+        double[] sortedValues = Arrays.copyOf(values, values.length);
+        Arrays.sort(sortedValues);
+        return Statistics.median(sortedValues);
+    }
+
+}
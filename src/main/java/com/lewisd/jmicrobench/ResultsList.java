@@ -1,6 +1,7 @@
 package com.lewisd.jmicrobench;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -10,78 +11,292 @@ import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+/**
+ * The results of the passes of one test. Once a pass has finished, its
+ * attributes are folded into an {@link AttributeHistory} each, so the
+ * checks made between passes work on primitives without allocating. The
+ * pass that's still running is read as it is, since tests can check whether
+ * they're done from within a pass.
+ */
 public class ResultsList
 {
     private static final Logger LOG = Logger.getLogger(ResultsList.class);
     private static final int RESULTS_REMOVED_BY_PRUNING = 2;
+    // with fewer, two passes that happen to agree look like a narrow interval
+    private static final int MIN_PASSES_FOR_CONFIDENCE_INTERVAL = 3;
+    // tail percentiles are too noisy to compare the first and last pass, and
+    // they're calculated from the merged histograms when averaging anyway
+    private static final Set<String> ATTRIBUTES_IGNORED_FOR_STABILITY = new HashSet<String>(Arrays.asList(PerformanceTestResults.LATENCY_PERCENTILE_ATTRIBUTES));
+
+    // these differ from pass to pass by nature; a pass with a major GC is
+    // discarded instead
+    private static final String[] GC_ATTRIBUTES = { PerformanceTestResults.GC_COUNT, PerformanceTestResults.GC_PAUSE_MILLIS,
+            PerformanceTestResults.GC_MAX_PAUSE_MILLIS, PerformanceTestResults.GC_PROMOTED_BYTES, PerformanceTestResults.MAJOR_GC_COUNT };
+
+    static
+    {
+        ATTRIBUTES_IGNORED_FOR_STABILITY.addAll(Arrays.asList(GC_ATTRIBUTES));
+        // the bytes allocated in a pass, and per second, only follow the
+        // operations and throughput, which are judged already; per operation
+        // it's often close to zero, where the few bytes the runner itself
+        // allocates on the thread make a large relative difference
+        ATTRIBUTES_IGNORED_FOR_STABILITY.add(PerformanceTestResults.ALLOCATED_BYTES);
+        ATTRIBUTES_IGNORED_FOR_STABILITY.add(PerformanceTestResults.ALLOCATED_BYTES_PER_SECOND);
+        ATTRIBUTES_IGNORED_FOR_STABILITY.add(PerformanceTestResults.ALLOCATED_BYTES_PER_OPERATION);
+    }
 
-    private List<PerformanceTestResults> resultsList= new LinkedList<PerformanceTestResults>();
     private final int runsToAverage;
     private final int stablePasses;
     private final double stabilityPercentage;
-    
+    private final Estimator estimator;
+    private final double trimPercentage;
+    private final double confidenceWidthPercentage;
+
+    private final PassWindow allPasses;
+    private final PassWindow passesWithoutMajorGc;
+    private PerformanceTestResults currentResults;
+    private PerformanceTestResults firstResults;
+    private long finishedDurationNanos;
+    private final Map<String, Metric> customMetrics = new HashMap<String, Metric>();
+    // the values of one attribute are copied here to be sorted
+    private double[] sortedValues;
+
     public ResultsList(int runsToAverage, int stablePasses, double stabilityPercentage)
     {
+        this(runsToAverage, stablePasses, stabilityPercentage, Estimator.MEAN, 0, -1);
+    }
+
+    /**
+     * @param confidenceWidthPercentage
+     *            if positive, the results are only stable once the 95%
+     *            confidence interval of the mean of every attribute is
+     *            narrower than this percentage of the mean, and all the
+     *            passes are averaged instead of the last runsToAverage
+     */
+    public ResultsList(int runsToAverage, int stablePasses, double stabilityPercentage, Estimator estimator, double trimPercentage, double confidenceWidthPercentage)
+    {
+        this.confidenceWidthPercentage = confidenceWidthPercentage;
         this.runsToAverage = runsToAverage;
         this.stablePasses = stablePasses;
         this.stabilityPercentage = stabilityPercentage;
+        this.estimator = estimator;
+        this.trimPercentage = trimPercentage;
+
+        // only as many passes as are compared or averaged are kept, except
+        // when all of them are averaged
+        int capacity = 0;
+        if (confidenceWidthPercentage <= 0)
+        {
+            capacity = Math.max(Math.max(runsToAverage, stablePasses), 1) + RESULTS_REMOVED_BY_PRUNING;
+        }
+        this.allPasses = new PassWindow(capacity);
+        this.passesWithoutMajorGc = new PassWindow(capacity);
+        this.sortedValues = new double[Math.max(capacity, 1) + 1];
     }
 
-    public PerformanceTestResults getAverageResults()
+    public PerformanceTestResultsImpl getAverageResults()
     {
-        Set<String> attributes = findAllAttributes(resultsList);
+        Map<String, Double> currentValues = getCurrentValues();
+        PassWindow passes = getPassesNotSkewedByGc(Math.max(runsToAverage, 1) + RESULTS_REMOVED_BY_PRUNING);
+        Set<String> attributes = new HashSet<String>(passes.getAttributeNames());
+        if (currentValues != null)
+        {
+            attributes.addAll(currentValues.keySet());
+        }
         Map<String, Double> attributeAverages = new HashMap<String, Double>();
         for (String attributeName : attributes)
         {
-            List<Double> resultList = getResultsForAttribute(attributeName, resultsList);
-            List<Double> prunedResults;
-            if (runsToAverage > 0)
+            if (confidenceWidthPercentage > 0 || runsToAverage > 0)
             {
-                prunedResults = getPrunedResults(resultList, runsToAverage);
+                int valueCount = copySortedValues(passes, attributeName, getPassesToAverage(passes));
+                if (valueCount < 0)
+                {
+                    // not every pass has it yet, eg. allocation while a pass is still running
+                    continue;
+                }
+                double[] values = Arrays.copyOf(sortedValues, valueCount);
+                double[] selectedValues = estimator.select(values, trimPercentage);
+                // TODO: we don't want to average all attributes (like duration)
+                attributeAverages.put(attributeName, estimator.estimate(selectedValues));
             }
-            else
+            else if (copySortedValues(passes, attributeName, 1) > 0)
             {
-                prunedResults = Collections.singletonList(resultList.get(resultList.size() - 1));
+                attributeAverages.put(attributeName, sortedValues[0]);
             }
-            double total = 0;
-            for (Double result : prunedResults)
+        }
+        PerformanceTestResults values = firstResults;
+        PerformanceTestResultsImpl averageResults = new PerformanceTestResultsImpl(values.getBuildInfo(), values.getTestGroupName(), values.getTestName(), attributeAverages);
+        averageResults.setParameters(values.getParameters());
+        if ((confidenceWidthPercentage > 0 || runsToAverage > 0) && averageResults.hasPlottableAttribute())
+        {
+            addDispersion(averageResults, averageResults.getPlottableMetric().getName(), passes);
+        }
+        defineCustomMetrics(averageResults);
+        mergeLatencyHistograms(averageResults, passes);
+        return averageResults;
+    }
+
+    /**
+     * The values of the attribute from the passes that the average results
+     * are taken from, or null if some of them don't have it.
+     */
+    public double[] getAveragedValues(String attributeName)
+    {
+        PassWindow passes = getPassesNotSkewedByGc(Math.max(runsToAverage, 1) + RESULTS_REMOVED_BY_PRUNING);
+        int valueCount = copySortedValues(passes, attributeName, getAveragedPassCount(passes));
+        return valueCount < 0 ? null : Arrays.copyOf(sortedValues, valueCount);
+    }
+
+    /**
+     * Adds how widely the averaged values of the attribute are spread. This
+     * is only stored for the test's main metric, since storing it for every
+     * attribute would take three more rows each.
+     */
+    private void addDispersion(PerformanceTestResultsImpl averageResults, String attributeName, PassWindow passes)
+    {
+        int valueCount = copySortedValues(passes, attributeName, getPassesToAverage(passes));
+        if (valueCount < 0)
+        {
+            return;
+        }
+        double[] values = Arrays.copyOf(sortedValues, valueCount);
+        double[] selectedValues = estimator.select(values, trimPercentage);
+        averageResults.setAttribute(attributeName + PerformanceTestResults.STD_DEV_SUFFIX, Statistics.standardDeviation(selectedValues));
+        averageResults.setAttribute(attributeName + PerformanceTestResults.MAD_SUFFIX, Statistics.medianAbsoluteDeviation(values));
+        averageResults.setAttribute(attributeName + PerformanceTestResults.CI95_SUFFIX, Statistics.confidenceInterval95(selectedValues));
+    }
+
+    private void defineCustomMetrics(PerformanceTestResultsImpl averageResults)
+    {
+        Map<String, Metric> metrics = new HashMap<String, Metric>(customMetrics);
+        if (currentResults != null)
+        {
+            metrics.putAll(currentResults.getCustomMetrics());
+        }
+        Map<String, Double> averages = averageResults.asMap();
+        for (Metric metric : metrics.values())
+        {
+            if (averages.containsKey(metric.getName()))
             {
-                total += result;
+                averageResults.defineMetric(metric);
             }
-            double average = total / prunedResults.size();
-            // TODO: we don't want to average all attributes (like duration)
-            attributeAverages.put(attributeName, average);
         }
-        PerformanceTestResults values = resultsList.get(0);
-        return new PerformanceTestResultsImpl(values.getBuildInfo(), values.getTestGroupName(), values.getTestName(), attributeAverages);
     }
 
-    private boolean isStable()
+    /**
+     * Percentiles can't be averaged, so the histograms of the passes being
+     * averaged are merged, and the percentiles are taken from that instead.
+     */
+    private void mergeLatencyHistograms(PerformanceTestResultsImpl averageResults, PassWindow passes)
     {
-        if (stablePasses == 0)
+        List<PerformanceTestResults> resultsList = new ArrayList<PerformanceTestResults>(passes.getRecentResults());
+        if (currentResults != null)
         {
-            return true;
+            resultsList.add(currentResults);
         }
-        else if (resultsList.size() < (stablePasses + RESULTS_REMOVED_BY_PRUNING))
+        // the same passes as the other attributes are averaged from
+        int passesToMerge = Math.min(getAveragedPassCount(passes), resultsList.size());
+        for (PerformanceTestResults results : resultsList.subList(resultsList.size() - passesToMerge, resultsList.size()))
         {
-            return false;
+            if (results.hasLatencyHistogram())
+            {
+                averageResults.addLatencyHistogram(results.getLatencyHistogram());
+            }
         }
-        else
+    }
+
+    /**
+     * How many of the most recent passes the average results are taken
+     * from, or 1 if the latest is used on its own.
+     */
+    private int getAveragedPassCount(PassWindow passes)
+    {
+        return confidenceWidthPercentage > 0 || runsToAverage > 0 ? getPassesToAverage(passes) : 1;
+    }
+
+    private int getPassesToAverage(PassWindow passes)
+    {
+        if (confidenceWidthPercentage > 0)
         {
-            Set<String> attributes = findAllAttributes(resultsList);
+            return getPassCount(passes);
+        }
+        return runsToAverage + RESULTS_REMOVED_BY_PRUNING;
+    }
 
-            Map<String, List<Double>> attributeResultLists = new HashMap<String, List<Double>>();
+    private int getPassCount(PassWindow passes)
+    {
+        return (int) passes.getPassCount() + (currentResults == null ? 0 : 1);
+    }
 
-            for (String attributeName : attributes)
+    private boolean isConfident()
+    {
+        if (getPassCount(allPasses) < MIN_PASSES_FOR_CONFIDENCE_INTERVAL)
+        {
+            return false;
+        }
+        PassWindow passes = getPassesNotSkewedByGc(MIN_PASSES_FOR_CONFIDENCE_INTERVAL);
+        for (int i = 0; i < passes.getStabilityHistories().size(); ++i)
+        {
+            AttributeHistory history = passes.getStabilityHistories().get(i);
+            String attributeName = history.getAttributeName();
+            if (!passes.isComplete(attributeName))
+            {
+                continue;
+            }
+            long count = history.getCount();
+            double mean = history.getMean();
+            double sumOfSquares = history.getSumOfSquares();
+            if (currentResults != null)
+            {
+                if (!currentResults.hasAttribute(attributeName))
+                {
+                    continue;
+                }
+                // one more step of Welford's method, without adding the value
+                // to the history
+                double currentValue = currentResults.getAttribute(attributeName);
+                count++;
+                double delta = currentValue - mean;
+                mean += delta / count;
+                sumOfSquares += delta * (currentValue - mean);
+            }
+            double variance = count < 2 ? 0 : sumOfSquares / (count - 1);
+            double width = 2 * Statistics.confidenceInterval95(count, variance);
+            if (width > 0 && (mean == 0 || width * 100 / Math.abs(mean) > confidenceWidthPercentage))
             {
-                List<Double> resultList = getResultsForAttribute(attributeName, resultsList);
-                attributeResultLists.put(attributeName, resultList);
+                LOG.info("Confidence interval for " + attributeName + " was too wide: " + width + " (" + String.format("%.2f", width * 100 / Math.abs(mean)) + "%)");
+                return false;
             }
+        }
+        return true;
+    }
 
-            for (String attributeName : attributes)
+    private boolean isStable()
+    {
+        if (confidenceWidthPercentage > 0)
+        {
+            return isConfident();
+        }
+        if (stablePasses == 0)
+        {
+            return true;
+        }
+        else if (getPassCount(allPasses) < (stablePasses + RESULTS_REMOVED_BY_PRUNING))
+        {
+            return false;
+        }
+        else
+        {
+            PassWindow passes = getPassesNotSkewedByGc(stablePasses + RESULTS_REMOVED_BY_PRUNING);
+            for (int i = 0; i < passes.getStabilityHistories().size(); ++i)
             {
-                List<Double> resultList = attributeResultLists.get(attributeName);
-                if (!isAttributeStable(attributeName, resultList, stabilityPercentage))
+                String attributeName = passes.getStabilityHistories().get(i).getAttributeName();
+                int valueCount = copySortedValues(passes, attributeName, stablePasses + RESULTS_REMOVED_BY_PRUNING);
+                if (valueCount < 0)
+                {
+                    continue;
+                }
+                if (!isAttributeStable(attributeName, valueCount, stabilityPercentage))
                 {
                     return false;
                 }
@@ -90,26 +305,85 @@ public class ResultsList
         }
     }
 
-    private List<Double> getResultsForAttribute(String attributeName, List<PerformanceTestResults> resultsList)
+    /**
+     * Whether the attribute is ignored when checking stability, including
+     * when it's one of a group member's attributes, eg. "put.p99_latency".
+     */
+    private static boolean isIgnoredForStability(String attributeName)
     {
-        List<Double> resultList = new LinkedList<Double>();
-        for (PerformanceTestResults testResult : resultsList)
+        int prefixEnd = attributeName.lastIndexOf('.');
+        return ATTRIBUTES_IGNORED_FOR_STABILITY.contains(attributeName.substring(prefixEnd + 1));
+    }
+
+    /**
+     * Leaves out the passes that had a major GC, as long as there are still
+     * enough passes left, since a full collection in one pass makes it look
+     * much slower without the code being any less stable.
+     */
+    private PassWindow getPassesNotSkewedByGc(int resultsNeeded)
+    {
+        long skewedPasses = allPasses.getPassCount() - passesWithoutMajorGc.getPassCount();
+        if (skewedPasses > 0 && getPassCount(passesWithoutMajorGc) >= resultsNeeded)
         {
-            Double result = testResult.asMap().get(attributeName);
-            resultList.add(result);
+            return passesWithoutMajorGc;
         }
-        return resultList;
+        return allPasses;
     }
 
-    private boolean isAttributeStable(String attributeName, List<Double> resultList, double stabilityPercentage)
+    /**
+     * The values of the pass that's still running, or null if there isn't one.
+     */
+    private Map<String, Double> getCurrentValues()
     {
-        LinkedList<Double> prunedResults = getPrunedResults(resultList, stablePasses);
+        return currentResults == null ? null : currentResults.asMap();
+    }
 
-        double first = prunedResults.getFirst();
-        double last = prunedResults.getLast();
+    /**
+     * Copies the last valueCount values of the attribute, including the one
+     * from the pass that's still running, into {@link #sortedValues} and sorts
+     * them. Returns how many were copied, or -1 if some of the passes don't
+     * have the attribute.
+     */
+    private int copySortedValues(PassWindow passes, String attributeName, int valueCount)
+    {
+        if (!passes.isComplete(attributeName))
+        {
+            return -1;
+        }
+        if (currentResults != null && !currentResults.hasAttribute(attributeName))
+        {
+            return -1;
+        }
+        if (sortedValues.length < valueCount)
+        {
+            sortedValues = new double[valueCount * 2];
+        }
+        AttributeHistory history = passes.getHistory(attributeName);
+        int copied = 0;
+        if (history != null)
+        {
+            copied = history.copyLastValues(sortedValues, 0, currentResults == null ? valueCount : valueCount - 1);
+        }
+        if (currentResults != null)
+        {
+            sortedValues[copied++] = currentResults.getAttribute(attributeName);
+        }
+        Arrays.sort(sortedValues, 0, copied);
+        return copied;
+    }
+
+    /**
+     * Compares the smallest and largest of the sorted values, after the
+     * extremes are pruned.
+     */
+    private boolean isAttributeStable(String attributeName, int valueCount, double stabilityPercentage)
+    {
+        double first = sortedValues[1];
+        double last = sortedValues[valueCount - 2];
 
         double diff = Math.abs(last - first);
-        double percent = diff * 100 / first;
+        // a metric that's always 0 is perfectly stable
+        double percent = diff == 0 ? 0 : diff * 100 / first;
 
         if (percent <= stabilityPercentage)
         {
@@ -122,37 +396,16 @@ public class ResultsList
         }
     }
 
-    private LinkedList<Double> getPrunedResults(List<Double> resultList, int resultCount)
-    {
-        LinkedList<Double> prunedResults = new LinkedList<Double>();
-        prunedResults.addAll(resultList.subList(resultList.size() - resultCount - RESULTS_REMOVED_BY_PRUNING, resultList.size()));
-        Collections.sort(prunedResults);
-
-        prunedResults.removeFirst();
-        prunedResults.removeLast();
-        return prunedResults;
-    }
-
-    private Set<String> findAllAttributes(List<PerformanceTestResults> resultsList)
-    {
-        Set<String> attributeNames = new HashSet<String>();
-        for (PerformanceTestResults results : resultsList)
-        {
-            attributeNames.addAll(results.asMap().keySet());
-        }
-        return attributeNames;
-    }
-    
     public long getTotalDurationNanos()
     {
-        long totalDurationNanos = 0;
-        for (PerformanceTestResults results : resultsList)
+        long totalDurationNanos = finishedDurationNanos;
+        if (currentResults != null)
         {
-            totalDurationNanos += results.getDurationNanos();
+            totalDurationNanos += currentResults.getDurationNanos();
         }
         return totalDurationNanos;
     }
-    
+
     public boolean hasEnoughResults()
     {
         return isStable() && hasEnoughResultsToAverage();
@@ -161,17 +414,142 @@ public class ResultsList
     private boolean hasEnoughResultsToAverage()
     {
         int runsNeededToAverage = runsToAverage + RESULTS_REMOVED_BY_PRUNING;
-        return runsToAverage == 0 || resultsList.size() >= runsNeededToAverage;
+        return confidenceWidthPercentage > 0 || runsToAverage == 0 || getPassCount(allPasses) >= runsNeededToAverage;
     }
 
+    /**
+     * Adds the results of a pass, which can still be running.
+     */
     public void add(InProgressPerformanceTestResults results)
     {
-        resultsList.add(results);
+        finishPass();
+        currentResults = results;
+        if (firstResults == null)
+        {
+            firstResults = results;
+        }
+    }
+
+    /**
+     * Folds the results of the pass that was last added into the histories,
+     * once it's finished.
+     */
+    public void finishPass()
+    {
+        if (currentResults == null)
+        {
+            return;
+        }
+        Map<String, Double> values = currentResults.asMap();
+        allPasses.add(currentResults, values);
+        Double majorCollections = values.get(PerformanceTestResults.MAJOR_GC_COUNT);
+        if (majorCollections == null || majorCollections.doubleValue() == 0)
+        {
+            passesWithoutMajorGc.add(currentResults, values);
+        }
+        else
+        {
+            LOG.info("Pass had " + majorCollections.longValue() + " major GCs, so it will be left out while there are enough passes without one");
+        }
+        finishedDurationNanos += currentResults.getDurationNanos();
+        customMetrics.putAll(currentResults.getCustomMetrics());
+        currentResults = null;
     }
 
     public void clear()
     {
-        resultsList.clear();
+        allPasses.clear();
+        passesWithoutMajorGc.clear();
+        currentResults = null;
+        firstResults = null;
+        finishedDurationNanos = 0;
+        customMetrics.clear();
+    }
+
+    /**
+     * The histories of the attributes of a set of finished passes.
+     */
+    private static class PassWindow
+    {
+        private final int capacity;
+        private final Map<String, AttributeHistory> historiesByName = new HashMap<String, AttributeHistory>();
+        // the histories of the attributes that stability is judged by, for
+        // iterating over without an iterator
+        private final List<AttributeHistory> stabilityHistories = new ArrayList<AttributeHistory>();
+        // kept for their latency histograms
+        private final LinkedList<PerformanceTestResults> recentResults = new LinkedList<PerformanceTestResults>();
+        private long passCount;
+
+        public PassWindow(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        public void add(PerformanceTestResults results, Map<String, Double> values)
+        {
+            for (Map.Entry<String, Double> entry : values.entrySet())
+            {
+                AttributeHistory history = historiesByName.get(entry.getKey());
+                if (history == null)
+                {
+                    history = new AttributeHistory(entry.getKey(), capacity);
+                    historiesByName.put(entry.getKey(), history);
+                    if (!isIgnoredForStability(entry.getKey()))
+                    {
+                        stabilityHistories.add(history);
+                    }
+                }
+                history.add(entry.getValue().doubleValue());
+            }
+            recentResults.addLast(results);
+            if (capacity > 0 && recentResults.size() > capacity)
+            {
+                recentResults.removeFirst();
+            }
+            passCount++;
+        }
+
+        public long getPassCount()
+        {
+            return passCount;
+        }
+
+        public List<AttributeHistory> getStabilityHistories()
+        {
+            return stabilityHistories;
+        }
+
+        public Set<String> getAttributeNames()
+        {
+            return historiesByName.keySet();
+        }
+
+        public AttributeHistory getHistory(String attributeName)
+        {
+            return historiesByName.get(attributeName);
+        }
+
+        /**
+         * Whether every pass had the attribute.
+         */
+        public boolean isComplete(String attributeName)
+        {
+            AttributeHistory history = historiesByName.get(attributeName);
+            return history == null ? passCount == 0 : history.getTotalAdded() == passCount;
+        }
+
+        public List<PerformanceTestResults> getRecentResults()
+        {
+            return recentResults;
+        }
+
+        public void clear()
+        {
+            historiesByName.clear();
+            stabilityHistories.clear();
+            recentResults.clear();
+            passCount = 0;
+        }
     }
 
 }
@@ -3,6 +3,7 @@ package com.lewisd.jmicrobench;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Collections;
@@ -29,6 +30,23 @@ public class ResultsRecorder
         saveResultsInDatabase(results);
     }
 
+    /**
+     * Writes the throughput of each pass, including the warmup passes, next
+     * to the results' properties file.
+     */
+    public void storeWarmupCurve(PerformanceTestResults results, WarmupCurve warmupCurve) throws IOException
+    {
+        File reportsDir = new File(PropertiesHelper.getProperty("build.performance.reports.dir"), getHostname());
+        String filename = getReportFilename(Parameters.describe(results.getTestName(), results.getParameters()), results.getTestGroupName(), "-warmup.csv");
+        LOG.info("Writing warmup curve to " + filename);
+
+        reportsDir.mkdirs();
+
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(reportsDir, filename)));
+        warmupCurve.write(writer);
+        writer.close();
+    }
+
     private void saveResultsInDatabase(PerformanceTestResults results) throws Exception
     {
         if (results.getBuildInfo().getRevision() < 0)
@@ -49,14 +67,14 @@ public class ResultsRecorder
         for (String attributeName : resultsAsMap.keySet())
         {
             Double value = resultsAsMap.get(attributeName);
-            LOG.info(results.getTestGroupName() + " - " + results.getTestName() + "." + attributeName + " = " + String.format("%f", value));
+            LOG.info(results.getTestGroupName() + " - " + Parameters.describe(results.getTestName(), results.getParameters()) + "." + attributeName + " = " + String.format("%f", value));
         }
     }
 
     private void saveResultsAsProperties(PerformanceTestResults results) throws IOException
     {
         File reportsDir = new File(PropertiesHelper.getProperty("build.performance.reports.dir"), getHostname());
-        String filename = getPropertiesFilename(results.getTestName(), results.getTestGroupName());
+        String filename = getReportFilename(Parameters.describe(results.getTestName(), results.getParameters()), results.getTestGroupName(), ".properties");
         LOG.info("Writing properties to " + filename);
         Properties prop = new Properties();
         Map<String, Double> valuesAsMap = results.asMap();
@@ -80,9 +98,9 @@ public class ResultsRecorder
         return hostname;
     }
 
-    private String getPropertiesFilename(String testGroup, String testName)
+    private String getReportFilename(String testGroup, String testName, String suffix)
     {
-        return testGroup + "-" + testName + ".properties";
+        return testGroup + "-" + testName + suffix;
     }
 
 
@@ -0,0 +1,30 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A latency histogram that several threads can record into. With thousands
+ * of virtual threads, a histogram each would take hundreds of megabytes, so
+ * they share a few of these instead. A lock is used rather than
+ * synchronization so that a contended virtual thread parks instead of
+ * pinning its carrier thread.
+ */
+public class SharedLatencyHistogram extends LatencyHistogram
+{
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Override
+    public void recordValue(long value)
+    {
+        lock.lock();
+        try
+        {
+            super.recordValue(value);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+}
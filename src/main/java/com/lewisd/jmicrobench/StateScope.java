@@ -0,0 +1,14 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * Controls which test instance the benchmark threads of a multi-threaded
+ * test invoke the test method on.
+ */
+public enum StateScope
+{
+    /** All threads share the single test instance created by JUnit. */
+    SHARED,
+
+    /** Each thread gets its own freshly created test instance every pass. */
+    THREAD;
+}
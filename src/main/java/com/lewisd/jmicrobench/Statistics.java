@@ -0,0 +1,211 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics over samples, such as the values of one attribute
+ * across passes.
+ */
+public class Statistics
+{
+    // two-sided 97.5% quantiles of Student's t distribution, by degrees of freedom
+    private static final double[] T_CRITICAL_95 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120,
+            2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+    private Statistics()
+    {
+        // do nothing
+    }
+
+    public static double mean(double[] values)
+    {
+        double total = 0;
+        for (double value : values)
+        {
+            total += value;
+        }
+        return total / values.length;
+    }
+
+    /**
+     * The sample variance, or 0 for fewer than two values.
+     */
+    public static double variance(double[] values)
+    {
+        if (values.length < 2)
+        {
+            return 0;
+        }
+        double mean = mean(values);
+        double sumOfSquares = 0;
+        for (double value : values)
+        {
+            sumOfSquares += (value - mean) * (value - mean);
+        }
+        return sumOfSquares / (values.length - 1);
+    }
+
+    public static double standardDeviation(double[] values)
+    {
+        return Math.sqrt(variance(values));
+    }
+
+    public static double median(double[] sortedValues)
+    {
+        return quantile(sortedValues, 0.5);
+    }
+
+    /**
+     * Linearly interpolates between the closest ranks of the sorted values.
+     */
+    public static double quantile(double[] sortedValues, double quantile)
+    {
+        double position = quantile * (sortedValues.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = (int) Math.ceil(position);
+        return sortedValues[lower] + (sortedValues[upper] - sortedValues[lower]) * (position - lower);
+    }
+
+    /**
+     * The median of the absolute deviations from the median, unscaled.
+     */
+    public static double medianAbsoluteDeviation(double[] sortedValues)
+    {
+        double median = median(sortedValues);
+        double[] deviations = new double[sortedValues.length];
+        for (int i = 0; i < sortedValues.length; ++i)
+        {
+            deviations[i] = Math.abs(sortedValues[i] - median);
+        }
+        Arrays.sort(deviations);
+        return median(deviations);
+    }
+
+    /**
+     * Half the width of the 95% confidence interval of the mean, or 0 for
+     * fewer than two values.
+     */
+    public static double confidenceInterval95(double[] values)
+    {
+        if (values.length < 2)
+        {
+            return 0;
+        }
+        return confidenceInterval95(values.length, variance(values));
+    }
+
+    /**
+     * The same as {@link #confidenceInterval95(double[])}, from the count and
+     * sample variance of values kept elsewhere.
+     */
+    public static double confidenceInterval95(long count, double variance)
+    {
+        if (count < 2)
+        {
+            return 0;
+        }
+        return tCritical95((int) Math.min(count - 1, Integer.MAX_VALUE)) * Math.sqrt(variance) / Math.sqrt(count);
+    }
+
+    /**
+     * The one-sided p-value of the Mann-Whitney U test that the values in
+     * the first sample tend to be lower than those in the second. It uses the
+     * normal approximation, with corrections for continuity and ties, so it's
+     * conservative for very small samples.
+     */
+    public static double mannWhitneyPValue(double[] first, double[] second)
+    {
+        double[] sorted = new double[first.length + second.length];
+        System.arraycopy(first, 0, sorted, 0, first.length);
+        System.arraycopy(second, 0, sorted, first.length, second.length);
+        Arrays.sort(sorted);
+
+        double firstRankSum = 0;
+        for (double value : first)
+        {
+            firstRankSum += averageRank(sorted, value);
+        }
+        double tieCorrection = 0;
+        for (int start = 0; start < sorted.length;)
+        {
+            int end = start + 1;
+            while (end < sorted.length && sorted[end] == sorted[start])
+            {
+                end++;
+            }
+            double ties = end - start;
+            tieCorrection += ties * ties * ties - ties;
+            start = end;
+        }
+
+        double n = sorted.length;
+        double u = firstRankSum - first.length * (first.length + 1) / 2.0;
+        double meanU = first.length * (double) second.length / 2;
+        double varianceU = first.length * (double) second.length / 12 * ((n + 1) - tieCorrection / (n * (n - 1)));
+        if (varianceU <= 0)
+        {
+            // every value is the same
+            return 1;
+        }
+        return normalCdf((u - meanU + 0.5) / Math.sqrt(varianceU));
+    }
+
+    /**
+     * How many standard deviations the value is from the mean of the values,
+     * allowing for the mean itself being estimated from them, so that a new
+     * value from the same normal distribution would have a standard normal
+     * score.
+     */
+    public static double predictionZScore(double value, double[] values)
+    {
+        double difference = value - mean(values);
+        double scale = standardDeviation(values) * Math.sqrt(1 + 1.0 / values.length);
+        if (scale == 0)
+        {
+            // every value is the same, so any difference is significant
+            return difference == 0 ? 0 : Math.signum(difference) * Double.POSITIVE_INFINITY;
+        }
+        return difference / scale;
+    }
+
+    private static double averageRank(double[] sortedValues, double value)
+    {
+        int lower = 0;
+        int equal = 0;
+        for (double sortedValue : sortedValues)
+        {
+            if (sortedValue < value)
+            {
+                lower++;
+            }
+            else if (sortedValue == value)
+            {
+                equal++;
+            }
+        }
+        return lower + (equal + 1) / 2.0;
+    }
+
+    /**
+     * The standard normal cumulative distribution function, from Abramowitz
+     * and Stegun's approximation of erf, to within about 1e-7.
+     */
+    static double normalCdf(double z)
+    {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return z < 0 ? (1 - erf) / 2 : (1 + erf) / 2;
+    }
+
+    static double tCritical95(int degreesOfFreedom)
+    {
+        if (degreesOfFreedom <= T_CRITICAL_95.length)
+        {
+            return T_CRITICAL_95[degreesOfFreedom - 1];
+        }
+        // close enough to the tabulated values beyond 30
+        return 1.96 + 2.4 / degreesOfFreedom;
+    }
+
+}
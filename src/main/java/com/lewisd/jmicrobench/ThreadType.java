@@ -0,0 +1,87 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The kind of thread the benchmark threads of a multi-threaded test are.
+ */
+public enum ThreadType
+{
+    /** Ordinary platform threads, one per benchmark thread. */
+    PLATFORM
+    {
+        @Override
+        public Thread newThread(Runnable runnable, String name)
+        {
+            return new Thread(runnable, name);
+        }
+    },
+
+    /**
+     * Virtual threads, for benchmarking blocking code at the concurrency of
+     * thousands of in-flight requests. They're created reflectively, since
+     * they need Java 21; on older JVMs platform threads are used instead.
+     */
+    VIRTUAL
+    {
+        @Override
+        public Thread newThread(Runnable runnable, String name)
+        {
+            if (VIRTUAL_THREAD_BUILDER == null)
+            {
+                return PLATFORM.newThread(runnable, name);
+            }
+            try
+            {
+                Object builder = VIRTUAL_THREAD_BUILDER.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, runnable);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Unable to create virtual thread", e);
+            }
+        }
+    };
+
+    private static final Logger LOG = Logger.getLogger(ThreadType.class);
+    private static final Method VIRTUAL_THREAD_BUILDER;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static
+    {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+        }
+        catch (Exception e)
+        {
+            LOG.debug("Virtual threads aren't available in this JVM");
+            ofVirtual = null;
+        }
+        VIRTUAL_THREAD_BUILDER = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    public abstract Thread newThread(Runnable runnable, String name);
+
+    /**
+     * Whether threads of this type are really what they say they are in this
+     * JVM.
+     */
+    public boolean isSupported()
+    {
+        return this == PLATFORM || VIRTUAL_THREAD_BUILDER != null;
+    }
+
+}
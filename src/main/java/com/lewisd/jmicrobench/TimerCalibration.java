@@ -0,0 +1,117 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * Measurements of the cost and resolution of the timer used to time passes,
+ * taken once per JVM.
+ */
+public class TimerCalibration
+{
+    private static final int GRANULARITY_SAMPLES = 10000;
+    private static final int OVERHEAD_ITERATIONS = 100000;
+    private static final int ROUNDS = 5;
+
+    private final long granularityNanos;
+    private final double nanoTimeCostNanos;
+    private final double timerOverheadNanos;
+
+    private TimerCalibration(long granularityNanos, double nanoTimeCostNanos, double timerOverheadNanos)
+    {
+        this.granularityNanos = granularityNanos;
+        this.nanoTimeCostNanos = nanoTimeCostNanos;
+        this.timerOverheadNanos = timerOverheadNanos;
+    }
+
+    /**
+     * The smallest non-zero difference seen between two consecutive readings
+     * of System.nanoTime().
+     */
+    public long getGranularityNanos()
+    {
+        return granularityNanos;
+    }
+
+    public double getNanoTimeCostNanos()
+    {
+        return nanoTimeCostNanos;
+    }
+
+    /**
+     * The duration that is added to the total by each empty interval timed
+     * with PerformanceTestController's start and stop methods, so it's the
+     * bias included in every interval a test times that way.
+     */
+    public double getTimerOverheadNanos()
+    {
+        return timerOverheadNanos;
+    }
+
+    /**
+     * Takes the measurements. The controller must already be set up for the
+     * current thread, using the given timer.
+     */
+    static TimerCalibration measure(PerformanceTestController controller, DurationTimer timer)
+    {
+        long granularity = Long.MAX_VALUE;
+        double nanoTimeCost = Double.MAX_VALUE;
+        double timerOverhead = Double.MAX_VALUE;
+        // the minimum over several rounds gives the cost once everything has been compiled
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            granularity = Math.min(granularity, measureGranularity());
+            nanoTimeCost = Math.min(nanoTimeCost, measureNanoTimeCost());
+            timerOverhead = Math.min(timerOverhead, measureTimerOverhead(controller, timer));
+        }
+        return new TimerCalibration(granularity, nanoTimeCost, timerOverhead);
+    }
+
+    private static long measureGranularity()
+    {
+        long granularity = Long.MAX_VALUE;
+        for (int i = 0; i < GRANULARITY_SAMPLES; ++i)
+        {
+            long start = System.nanoTime();
+            long end;
+            do
+            {
+                end = System.nanoTime();
+            }
+            while (end == start);
+            granularity = Math.min(granularity, end - start);
+        }
+        return granularity;
+    }
+
+    private static double measureNanoTimeCost()
+    {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OVERHEAD_ITERATIONS; ++i)
+        {
+            sink += System.nanoTime();
+        }
+        long end = System.nanoTime();
+        if (sink == 0)
+        {
+            throw new IllegalStateException("Can't happen");
+        }
+        return (end - start) / (double) OVERHEAD_ITERATIONS;
+    }
+
+    private static double measureTimerOverhead(PerformanceTestController controller, DurationTimer timer)
+    {
+        long before = timer.getActualDurationNanos();
+        for (int i = 0; i < OVERHEAD_ITERATIONS; ++i)
+        {
+            controller.startDurationTimer();
+            controller.stopDurationTimer();
+        }
+        return (timer.getActualDurationNanos() - before) / (double) OVERHEAD_ITERATIONS;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("timer granularity %dns, System.nanoTime() cost %.1fns, controller start/stop overhead %.1fns", granularityNanos, nanoTimeCostNanos, timerOverheadNanos);
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.lewisd.jmicrobench;
+
+/**
+ * Gunther's Universal Scalability Law, fitted to the throughput measured at
+ * a number of thread counts. It models the throughput at N threads as
+ * <pre>
+ * X(N) = X(1) * N / (1 + contention * (N - 1) + coherency * N * (N - 1))
+ * </pre>
+ * where contention is the share of the work that is serialized, and
+ * coherency is the cost of keeping shared data consistent between threads,
+ * which makes throughput fall again past a peak.
+ */
+public class UniversalScalabilityLaw
+{
+    private final double singleThreadThroughput;
+    private final double contention;
+    private final double coherency;
+
+    public UniversalScalabilityLaw(double singleThreadThroughput, double contention, double coherency)
+    {
+        this.singleThreadThroughput = singleThreadThroughput;
+        this.contention = contention;
+        this.coherency = coherency;
+    }
+
+    /**
+     * Fits the law by least squares, on its linear form N / C(N) - 1 =
+     * contention * (N - 1) + coherency * N * (N - 1), where C(N) is the
+     * throughput relative to a single thread. The thread counts must include
+     * 1. With only one other thread count, the coherency can't be told apart
+     * from the contention, and is taken to be 0.
+     */
+    public static UniversalScalabilityLaw fit(int[] threads, double[] throughput)
+    {
+        double singleThreadThroughput = Double.NaN;
+        for (int i = 0; i < threads.length; ++i)
+        {
+            if (threads[i] == 1)
+            {
+                singleThreadThroughput = throughput[i];
+            }
+        }
+        if (Double.isNaN(singleThreadThroughput) || singleThreadThroughput <= 0)
+        {
+            throw new IllegalArgumentException("The throughput with 1 thread is needed to fit the scalability law");
+        }
+
+        double sumContentionSquared = 0;
+        double sumContentionCoherency = 0;
+        double sumCoherencySquared = 0;
+        double sumContentionY = 0;
+        double sumCoherencyY = 0;
+        int points = 0;
+        for (int i = 0; i < threads.length; ++i)
+        {
+            if (threads[i] <= 1 || throughput[i] <= 0)
+            {
+                continue;
+            }
+            double relativeCapacity = throughput[i] / singleThreadThroughput;
+            double y = threads[i] / relativeCapacity - 1;
+            double contentionTerm = threads[i] - 1;
+            double coherencyTerm = (double) threads[i] * (threads[i] - 1);
+            sumContentionSquared += contentionTerm * contentionTerm;
+            sumContentionCoherency += contentionTerm * coherencyTerm;
+            sumCoherencySquared += coherencyTerm * coherencyTerm;
+            sumContentionY += contentionTerm * y;
+            sumCoherencyY += coherencyTerm * y;
+            points++;
+        }
+        if (points == 0)
+        {
+            return new UniversalScalabilityLaw(singleThreadThroughput, 0, 0);
+        }
+        double determinant = sumContentionSquared * sumCoherencySquared - sumContentionCoherency * sumContentionCoherency;
+        if (points == 1 || Math.abs(determinant) < 1e-12 * sumContentionSquared * sumCoherencySquared)
+        {
+            return new UniversalScalabilityLaw(singleThreadThroughput, sumContentionY / sumContentionSquared, 0);
+        }
+        double contention = (sumContentionY * sumCoherencySquared - sumCoherencyY * sumContentionCoherency) / determinant;
+        double coherency = (sumCoherencyY * sumContentionSquared - sumContentionY * sumContentionCoherency) / determinant;
+        return new UniversalScalabilityLaw(singleThreadThroughput, contention, coherency);
+    }
+
+    public double getSingleThreadThroughput()
+    {
+        return singleThreadThroughput;
+    }
+
+    public double getContention()
+    {
+        return contention;
+    }
+
+    public double getCoherency()
+    {
+        return coherency;
+    }
+
+    public double getThroughput(double threads)
+    {
+        return singleThreadThroughput * threads / (1 + contention * (threads - 1) + coherency * threads * (threads - 1));
+    }
+
+    /**
+     * The thread count with the highest modelled throughput, or -1 if the
+     * throughput never stops rising.
+     */
+    public double getPeakThreads()
+    {
+        if (coherency <= 0 || contention >= 1)
+        {
+            return -1;
+        }
+        return Math.sqrt((1 - contention) / coherency);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.lewisd.jmicrobench;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of each pass of a test, from the time it started, including
+ * the warmup passes that aren't averaged, so that how quickly the test warms
+ * up can be measured as well as how fast it is once it has.
+ */
+public class WarmupCurve
+{
+    // the fraction of the steady throughput that counts as having warmed up
+    private static final double WARMED_UP_FRACTION = 0.9;
+
+    private final List<Pass> passes = new ArrayList<Pass>();
+
+    /**
+     * @param elapsedNanos
+     *            the time from the start of the test to the end of the pass
+     */
+    public void addPass(long elapsedNanos, PerformanceTestResults results, boolean warmup)
+    {
+        if (results.hasOperationsPerSecond())
+        {
+            passes.add(new Pass(elapsedNanos, results.getNumberOfOperations(), results.getOperationsPerSecond(), warmup));
+        }
+    }
+
+    public int getWarmupPasses()
+    {
+        int warmupPasses = 0;
+        for (Pass pass : passes)
+        {
+            if (pass.warmup)
+            {
+                warmupPasses++;
+            }
+        }
+        return warmupPasses;
+    }
+
+    /**
+     * The operations run by the warmup passes, before the test was steady
+     * enough to measure.
+     */
+    public long getWarmupOperations()
+    {
+        long operations = 0;
+        for (Pass pass : passes)
+        {
+            if (pass.warmup)
+            {
+                operations += pass.operations;
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * The time from the start of the test to the end of the first pass that
+     * ran at least the given throughput, or -1 if none did.
+     */
+    public long getTimeToReachNanos(double opsPerSecond)
+    {
+        for (Pass pass : passes)
+        {
+            if (pass.opsPerSecond >= opsPerSecond)
+            {
+                return pass.elapsedNanos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records how long the test took to reach 90% of its steady throughput,
+     * and how much it ran before being measured, if it had any warmup
+     * passes.
+     */
+    public void setAttributes(PerformanceTestResultsImpl averageResults)
+    {
+        if (getWarmupPasses() == 0 || !averageResults.hasOperationsPerSecond())
+        {
+            return;
+        }
+        long timeToWarmUp = getTimeToReachNanos(WARMED_UP_FRACTION * averageResults.getOperationsPerSecond());
+        if (timeToWarmUp >= 0)
+        {
+            averageResults.setAttribute(PerformanceTestResults.TIME_TO_90_PERCENT_THROUGHPUT, timeToWarmUp);
+        }
+        averageResults.setAttribute(PerformanceTestResults.WARMUP_OPERATIONS, getWarmupOperations());
+    }
+
+    public void write(PrintWriter writer)
+    {
+        writer.println("pass,elapsed_millis,operations,ops_per_second,warmup");
+        for (int i = 0; i < passes.size(); ++i)
+        {
+            Pass pass = passes.get(i);
+            writer.println((i + 1) + "," + String.format("%f", pass.elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)) + "," + pass.operations + ","
+                    + String.format("%f", pass.opsPerSecond) + "," + pass.warmup);
+        }
+    }
+
+    private static class Pass
+    {
+        private final long elapsedNanos;
+        private final long operations;
+        private final double opsPerSecond;
+        private final boolean warmup;
+
+        public Pass(long elapsedNanos, long operations, double opsPerSecond, boolean warmup)
+        {
+            this.elapsedNanos = elapsedNanos;
+            this.operations = operations;
+            this.opsPerSecond = opsPerSecond;
+            this.warmup = warmup;
+        }
+    }
+
+}
@@ -16,4 +16,10 @@ public interface TestResultsDao
 
     Map<BuildInfo, List<PerformanceTestResults>> getBuildResults(List<BuildInfo> builds) throws SQLException;
 
+    /**
+     * The results of one test, with one set of parameters, from the most
+     * recent builds that ran it, oldest first.
+     */
+    List<PerformanceTestResults> getTestHistory(String testGroupName, String testName, Map<String, String> parameters, int buildCount) throws SQLException;
+
 }
@@ -6,6 +6,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -17,6 +18,8 @@ import org.apache.log4j.Logger;
 
 import com.lewisd.jmicrobench.BuildInfo;
 import com.lewisd.jmicrobench.BuildInfoImpl;
+import com.lewisd.jmicrobench.Metric;
+import com.lewisd.jmicrobench.Parameters;
 import com.lewisd.jmicrobench.PerformanceTestResults;
 import com.lewisd.jmicrobench.PerformanceTestResultsImpl;
 
@@ -25,12 +28,20 @@ public class TestResultsDaoImpl implements TestResultsDao
 
     private final Logger log = Logger.getLogger(this.getClass());
 
-    private static final String STORE_RESULT_SQL = "insert into test_results (project, revision, timestamp, " + "groupName, testName, attribute, value) values (?,?,?,?,?,?,?)";
+    private static final String STORE_RESULT_SQL = "insert into test_results (project, revision, timestamp, " + "groupName, testName, parameters, attribute, value, unit, direction) values (?,?,?,?,?,?,?,?,?,?)";
 
-    private static final String GET_BUILD_RESULTS_SQL = "select groupName,testName,attribute,value from " + "test_results where project=? and revision=? and timestamp=? order by groupName,testName";
+    private static final String GET_BUILD_RESULTS_SQL = "select groupName,testName,parameters,attribute,value,unit,direction from " + "test_results where project=? and revision=? and timestamp=? order by groupName,testName,parameters";
+
+    private static final String GET_TEST_HISTORY_SQL = "select revision,timestamp,attribute,value,unit,direction from "
+            + "test_results where project=? and groupName=? and testName=? and parameters=? order by revision desc,timestamp desc";
 
     private static final String GET_RECENT_BUILDS_SQL = "select revision,timestamp from " + "test_results where project=? group by revision,timestamp order by revision desc,timestamp desc limit ?";
 
+    // the direction is only stored for custom metrics, and is blank for the
+    // built-in attributes
+    private static final String HIGHER_IS_BETTER = "higher";
+    private static final String LOWER_IS_BETTER = "lower";
+
     private final Driver driver;
     private final String url;
     private final Properties properties;
@@ -92,32 +103,42 @@ public class TestResultsDaoImpl implements TestResultsDao
                 List<PerformanceTestResults> resultsForBuild = new LinkedList<PerformanceTestResults>();
                 ;
                 Map<String, Double> testValues = null;
+                List<Metric> testMetrics = null;
 
                 String testName = null;
                 String testGroupName = null;
+                String parameters = null;
                 while (rs.next())
                 {
                     String nextTestGroupName = rs.getString("groupName");
                     String nextTestName = rs.getString("testName");
+                    String nextParameters = rs.getString("parameters");
 
-                    if (!(nextTestName.equals(testName) && nextTestGroupName.equals(testGroupName)))
+                    if (!(nextTestName.equals(testName) && nextTestGroupName.equals(testGroupName) && nextParameters.equals(parameters)))
                     {
-                        // we've moved on to another test
+                        // we've moved on to another test, or another set of parameters
                         if (testName != null)
                         {
-                            addResultsToBuildResultsList(resultsForBuild, testValues, testName, testGroupName, build);
+                            addResultsToBuildResultsList(resultsForBuild, testValues, testMetrics, testName, testGroupName, parameters, build);
                         }
                         testValues = new HashMap<String, Double>();
+                        testMetrics = new LinkedList<Metric>();
                         testName = nextTestName;
                         testGroupName = nextTestGroupName;
+                        parameters = nextParameters;
                     }
                     String attributeName = rs.getString("attribute");
                     Double value = rs.getDouble("value");
                     testValues.put(attributeName, value);
+                    String direction = rs.getString("direction");
+                    if (direction.length() > 0)
+                    {
+                        testMetrics.add(new Metric(attributeName, rs.getString("unit"), HIGHER_IS_BETTER.equals(direction)));
+                    }
                 }
                 if (testValues != null && !testValues.isEmpty())
                 {
-                    addResultsToBuildResultsList(resultsForBuild, testValues, testName, testGroupName, build);
+                    addResultsToBuildResultsList(resultsForBuild, testValues, testMetrics, testName, testGroupName, parameters, build);
                 }
                 resultsByBuild.put(build, resultsForBuild);
                 rs.close();
@@ -131,9 +152,74 @@ public class TestResultsDaoImpl implements TestResultsDao
         }
     }
 
-    private void addResultsToBuildResultsList(List<PerformanceTestResults> resultsForBuild, Map<String, Double> testValues, String testName, String testGroupName, final BuildInfo buildInfo)
+    @Override
+    public List<PerformanceTestResults> getTestHistory(String testGroupName, String testName, Map<String, String> parameters, int buildCount) throws SQLException
     {
-        PerformanceTestResults results = new PerformanceTestResultsImpl(buildInfo, testGroupName, testName, testValues);
+        Connection conn = getConnection();
+        try
+        {
+            PreparedStatement statement = conn.prepareStatement(GET_TEST_HISTORY_SQL);
+            statement.setString(1, project);
+            statement.setString(2, testGroupName);
+            statement.setString(3, testName);
+            statement.setString(4, Parameters.format(parameters));
+
+            ResultSet rs = statement.executeQuery();
+            List<PerformanceTestResults> history = new LinkedList<PerformanceTestResults>();
+            Map<String, Double> testValues = null;
+            List<Metric> testMetrics = null;
+            BuildInfo build = null;
+            while (rs.next())
+            {
+                BuildInfo nextBuild = new BuildInfoImpl(rs.getInt("revision"), new Date(rs.getTimestamp("timestamp").getTime()));
+                if (!nextBuild.equals(build))
+                {
+                    // we've moved on to an older build
+                    if (build != null)
+                    {
+                        addResultsToBuildResultsList(history, testValues, testMetrics, testName, testGroupName, Parameters.format(parameters), build);
+                        if (history.size() == buildCount)
+                        {
+                            testValues = null;
+                            break;
+                        }
+                    }
+                    testValues = new HashMap<String, Double>();
+                    testMetrics = new LinkedList<Metric>();
+                    build = nextBuild;
+                }
+                String attributeName = rs.getString("attribute");
+                testValues.put(attributeName, rs.getDouble("value"));
+                String direction = rs.getString("direction");
+                if (direction.length() > 0)
+                {
+                    testMetrics.add(new Metric(attributeName, rs.getString("unit"), HIGHER_IS_BETTER.equals(direction)));
+                }
+            }
+            if (testValues != null && !testValues.isEmpty())
+            {
+                addResultsToBuildResultsList(history, testValues, testMetrics, testName, testGroupName, Parameters.format(parameters), build);
+            }
+            rs.close();
+
+            Collections.reverse(history);
+            return history;
+        }
+        finally
+        {
+            close(conn);
+        }
+    }
+
+    private void addResultsToBuildResultsList(List<PerformanceTestResults> resultsForBuild, Map<String, Double> testValues, List<Metric> testMetrics, String testName, String testGroupName,
+            String parameters, final BuildInfo buildInfo)
+    {
+        PerformanceTestResultsImpl results = new PerformanceTestResultsImpl(buildInfo, testGroupName, testName, testValues);
+        results.setParameters(Parameters.parse(parameters));
+        for (Metric metric : testMetrics)
+        {
+            results.defineMetric(metric);
+        }
         resultsForBuild.add(results);
     }
 
@@ -165,12 +251,24 @@ public class TestResultsDaoImpl implements TestResultsDao
                 statement.setTimestamp(3, new Timestamp(timestamp.getTime()));
                 statement.setString(4, results.getTestGroupName());
                 statement.setString(5, results.getTestName());
+                statement.setString(6, Parameters.format(results.getParameters()));
                 Map<String, Double> valuesAsMap = results.asMap();
                 for (String attribteName : valuesAsMap.keySet())
                 {
                     double value = valuesAsMap.get(attribteName);
-                    statement.setString(6, attribteName);
-                    statement.setDouble(7, value);
+                    statement.setString(7, attribteName);
+                    statement.setDouble(8, value);
+                    Metric metric = results.getCustomMetrics().get(attribteName);
+                    if (metric == null)
+                    {
+                        statement.setString(9, "");
+                        statement.setString(10, "");
+                    }
+                    else
+                    {
+                        statement.setString(9, metric.getUnit());
+                        statement.setString(10, metric.isHigherBetter() ? HIGHER_IS_BETTER : LOWER_IS_BETTER);
+                    }
                     statement.execute();
                 }
             }
@@ -36,6 +36,7 @@ public class Graph
     private Color axisColour = Color.BLACK;
     private Color gridColour = new Color(0.8f, 0.8f, 0.8f);
     private Color axisLabelColour = Color.BLACK;
+    private Color markerColour = Color.GRAY;
 
     private Color[] defaultPlotColours = new Color[] { Color.RED, Color.BLUE, Color.GREEN, Color.MAGENTA, Color.ORANGE, Color.PINK, Color.CYAN };
     private PointType[] defaultPlotPointTypes = new PointType[] { PointType.X, PointType.PLUS, PointType.ASTERISK, PointType.CIRCLE };
@@ -45,6 +46,7 @@ public class Graph
     private String yLabelFormat = "%.1f";
 
     private List<PlotImpl> plots = new LinkedList<PlotImpl>();
+    private List<Double> xMarkers = new LinkedList<Double>();
 
     private boolean autoScale = true;
     private boolean autoMargins = true;
@@ -89,6 +91,14 @@ public class Graph
         recalculateVariables();
     }
 
+    /**
+     * Marks a point along the x axis with a line across the whole graph.
+     */
+    public void addXMarker(double x)
+    {
+        xMarkers.add(x);
+    }
+
     public void setXScale(int min, int max)
     {
         autoScale = false;
@@ -120,6 +130,11 @@ public class Graph
         this.axisLabelColour = axisLabelColour;
     }
 
+    public void setMarkerColour(Color markerColour)
+    {
+        this.markerColour = markerColour;
+    }
+
     public void setGridColour(Color gridColour)
     {
         this.gridColour = gridColour;
@@ -179,6 +194,7 @@ public class Graph
         }
 
         drawGridLinesAndNumbers();
+        drawXMarkers();
         drawAxis();
         drawLedgend();
 
@@ -402,6 +418,19 @@ public class Graph
         }
     }
 
+    private void drawXMarkers()
+    {
+        painter.setColour(markerColour);
+        for (double x : xMarkers)
+        {
+            if (x >= minX && x <= maxX)
+            {
+                int xPixel = translateXToPixel(x);
+                painter.drawLine(2, xPixel, topMargin, xPixel, height - 1 - bottomMargin - 1);
+            }
+        }
+    }
+
     private void drawAxis()
     {
         painter.setColour(axisColour);
@@ -0,0 +1,51 @@
+package com.lewisd.jmicrobench.graph;
+
+import java.awt.Color;
+
+/**
+ * Plots the throughput measured at each thread count on a graph, along with
+ * the throughput of a model fitted to it, and the throughput if it scaled
+ * linearly from a single thread.
+ */
+public class ScalingCurve
+{
+    private static final int MODEL_POINTS_PER_THREAD = 4;
+
+    public interface Model
+    {
+        double getThroughput(double threads);
+    }
+
+    private final Graph graph;
+
+    public ScalingCurve(Graph graph)
+    {
+        this.graph = graph;
+    }
+
+    public void plot(String name, int[] threads, double[] throughput, Model model)
+    {
+        Plot measured = graph.newPlot(name);
+        int maxThreads = 1;
+        for (int i = 0; i < threads.length; ++i)
+        {
+            measured.addPoint(threads[i], throughput[i]);
+            maxThreads = Math.max(maxThreads, threads[i]);
+        }
+
+        Plot linear = graph.newPlot(name + " linear");
+        linear.setColour(Color.LIGHT_GRAY);
+        linear.setDrawLines(true);
+        linear.addPoint(PointType.SIMPLE, 1, model.getThroughput(1));
+        linear.addPoint(PointType.SIMPLE, maxThreads, maxThreads * model.getThroughput(1));
+
+        Plot fitted = graph.newPlot(name + " fitted");
+        fitted.setDrawLines(true);
+        for (int i = MODEL_POINTS_PER_THREAD; i <= maxThreads * MODEL_POINTS_PER_THREAD; ++i)
+        {
+            double x = (double) i / MODEL_POINTS_PER_THREAD;
+            fitted.addPoint(PointType.SIMPLE, x, model.getThroughput(x));
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class AttributeHistoryTest
+{
+
+    private static double[] copyAll(AttributeHistory history)
+    {
+        double[] values = new double[history.getCount()];
+        Assert.assertEquals(values.length, history.copyLastValues(values, 0, values.length));
+        return values;
+    }
+
+    private static void assertStatistics(double[] expectedValues, AttributeHistory history)
+    {
+        double mean = 0;
+        for (double value : expectedValues)
+        {
+            mean += value / expectedValues.length;
+        }
+        double sumOfSquares = 0;
+        for (double value : expectedValues)
+        {
+            sumOfSquares += (value - mean) * (value - mean);
+        }
+        Assert.assertEquals(mean, history.getMean(), 1e-9);
+        Assert.assertEquals(sumOfSquares, history.getSumOfSquares(), 1e-6);
+    }
+
+    @Test
+    public void shouldKeepEveryValueWhenUnbounded()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 0);
+        double[] expected = new double[40];
+        for (int i = 0; i < expected.length; ++i)
+        {
+            expected[i] = i * 3;
+            history.add(expected[i]);
+        }
+
+        Assert.assertEquals(40, history.getCount());
+        Assert.assertEquals(40, history.getTotalAdded());
+        Assert.assertEquals(117.0, history.getLast(), 0);
+        Assert.assertTrue(Arrays.equals(expected, copyAll(history)));
+        assertStatistics(expected, history);
+    }
+
+    @Test
+    public void shouldEvictOldestValuesWhenFull()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 3);
+        for (int i = 1; i <= 7; ++i)
+        {
+            history.add(i * 10);
+        }
+
+        Assert.assertEquals(3, history.getCount());
+        Assert.assertEquals(7, history.getTotalAdded());
+        Assert.assertEquals(70.0, history.getLast(), 0);
+        Assert.assertTrue(Arrays.equals(new double[] { 50, 60, 70 }, copyAll(history)));
+        assertStatistics(new double[] { 50, 60, 70 }, history);
+    }
+
+    @Test
+    public void shouldKeepStatisticsOfValuesLeftAfterEviction()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 4);
+        double[] values = { 1000, 3, 17, 2, 250, 9, 9, 41 };
+        for (double value : values)
+        {
+            history.add(value);
+        }
+
+        assertStatistics(new double[] { 250, 9, 9, 41 }, history);
+    }
+
+    @Test
+    public void shouldKeepOnlyLastValueWithCapacityOfOne()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 1);
+        history.add(5);
+        history.add(8);
+
+        Assert.assertEquals(1, history.getCount());
+        Assert.assertEquals(8.0, history.getMean(), 0);
+        Assert.assertEquals(0.0, history.getSumOfSquares(), 0);
+    }
+
+    @Test
+    public void shouldCopyOnlyAsManyValuesAsAreKept()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 5);
+        history.add(1);
+        history.add(2);
+        double[] dest = new double[4];
+
+        Assert.assertEquals(2, history.copyLastValues(dest, 1, 3));
+        Assert.assertTrue(Arrays.equals(new double[] { 0, 1, 2, 0 }, dest));
+        Assert.assertEquals(1, history.copyLastValues(dest, 0, 1));
+        Assert.assertEquals(2.0, dest[0], 0);
+    }
+
+    @Test
+    public void shouldStartAgainWhenCleared()
+    {
+        AttributeHistory history = new AttributeHistory("ops", 2);
+        history.add(1);
+        history.add(2);
+        history.add(3);
+        history.clear();
+        history.add(7);
+
+        Assert.assertEquals(1, history.getCount());
+        Assert.assertEquals(1, history.getTotalAdded());
+        Assert.assertEquals(7.0, history.getLast(), 0);
+        assertStatistics(new double[] { 7 }, history);
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class ChangePointDetectorTest
+{
+    private final ChangePointDetector detector = new ChangePointDetector(3, 3);
+    private final Random random = new Random(42);
+
+    private double[] noisy(double... means)
+    {
+        double[] values = new double[means.length];
+        for (int i = 0; i < means.length; ++i)
+        {
+            values[i] = means[i] + random.nextGaussian() * 10;
+        }
+        return values;
+    }
+
+    private double[] repeat(double value, int count, double[] then)
+    {
+        double[] values = new double[count + then.length];
+        Arrays.fill(values, 0, count, value);
+        System.arraycopy(then, 0, values, count, then.length);
+        return values;
+    }
+
+    @Test
+    public void shouldFindLastingShifts()
+    {
+        double[] values = noisy(repeat(1000, 15, repeat(900, 10, repeat(950, 12, new double[0]))));
+
+        int[] changes = detector.detect(values);
+
+        Assert.assertEquals("[15, 25]", Arrays.toString(changes));
+    }
+
+    @Test
+    public void shouldIgnoreSingleNoisyBuild()
+    {
+        double[] values = noisy(repeat(1000, 20, new double[0]));
+        values[10] = 800;
+
+        Assert.assertEquals(0, detector.detect(values).length);
+    }
+
+    @Test
+    public void shouldFindShiftInValuesWithoutNoise()
+    {
+        Assert.assertEquals("[4]", Arrays.toString(detector.detect(new double[] { 5, 5, 5, 5, 7, 7, 7, 7 })));
+    }
+
+    @Test
+    public void shouldFindNothingInTooFewValues()
+    {
+        Assert.assertEquals(0, detector.detect(new double[] { 1, 2, 100, 100, 100 }).length);
+    }
+
+}
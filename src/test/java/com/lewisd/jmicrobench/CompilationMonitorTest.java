@@ -0,0 +1,46 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class CompilationMonitorTest
+{
+    private long total;
+
+    private void addSquare(long value)
+    {
+        total += value * value;
+    }
+
+    @Test
+    public void shouldCountCompilationsTooShortToTime() throws Exception
+    {
+        CompilationMonitor monitor = new CompilationMonitor(true);
+        Assume.assumeTrue(monitor.isCounting());
+
+        monitor.start();
+        for (int i = 0; i < 100000; ++i)
+        {
+            addSquare(i);
+        }
+        // the compilations happen in the background
+        Thread.sleep(200);
+        monitor.stop();
+
+        Assert.assertTrue("Expected addSquare to be compiled", monitor.getCompilationCount() > 0);
+    }
+
+    @Test
+    public void shouldNotCountUnlessAsked() throws Exception
+    {
+        CompilationMonitor monitor = new CompilationMonitor();
+        monitor.start();
+        monitor.stop();
+
+        Assert.assertFalse(monitor.isCounting());
+        Assert.assertEquals(-1, monitor.getCompilationCount());
+    }
+
+}
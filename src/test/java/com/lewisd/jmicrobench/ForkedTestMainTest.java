@@ -0,0 +1,51 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class ForkedTestMainTest
+{
+
+    private static LatencyHistogram createHistogram(long from, long to)
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long latency = from; latency <= to; ++latency)
+        {
+            histogram.recordValue(latency);
+        }
+        return histogram;
+    }
+
+    @Test
+    public void shouldSendLatencyHistogramUnchanged()
+    {
+        LatencyHistogram histogram = createHistogram(1, 10000);
+
+        LatencyHistogram received = ForkedTestMain.parseHistogram(ForkedTestMain.formatHistogram(histogram));
+
+        Assert.assertEquals(histogram.getTotalCount(), received.getTotalCount());
+        Assert.assertEquals(histogram.getMinValue(), received.getMinValue());
+        Assert.assertEquals(histogram.getMaxValue(), received.getMaxValue());
+        Assert.assertEquals(histogram.getMean(), received.getMean(), 1e-9);
+        Assert.assertEquals(histogram.getStandardDeviation(), received.getStandardDeviation(), 1e-6);
+        for (double percentile : PerformanceTestResults.LATENCY_PERCENTILES)
+        {
+            Assert.assertEquals(histogram.getValueAtPercentile(percentile), received.getValueAtPercentile(percentile));
+        }
+    }
+
+    @Test
+    public void shouldTakePercentilesFromMergedForks()
+    {
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(ForkedTestMain.parseHistogram(ForkedTestMain.formatHistogram(createHistogram(1, 100))));
+        merged.add(ForkedTestMain.parseHistogram(ForkedTestMain.formatHistogram(createHistogram(101, 1000))));
+
+        // averaging the forks' medians would have given about 300
+        Assert.assertEquals(500, merged.getValueAtPercentile(50), 10);
+        Assert.assertEquals(1, merged.getMinValue());
+        Assert.assertEquals(1000, merged.getMaxValue());
+    }
+
+}
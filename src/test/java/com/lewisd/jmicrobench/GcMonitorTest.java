@@ -0,0 +1,31 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class GcMonitorTest
+{
+
+    @Test
+    public void shouldCountStopTheWorldCollectionsAsPauses()
+    {
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("G1 Young Generation", "end of minor GC"));
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("G1 Old Generation", "end of major GC"));
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("G1 Concurrent GC", "end of concurrent GC pause"));
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("PS MarkSweep", "end of major GC"));
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("ZGC Pauses", "end of GC pause"));
+        Assert.assertFalse(GcMonitor.isConcurrentCycle("Shenandoah Pauses", "end of GC pause"));
+    }
+
+    @Test
+    public void shouldNotCountConcurrentCyclesAsPauses()
+    {
+        Assert.assertTrue(GcMonitor.isConcurrentCycle("ZGC Cycles", "end of GC cycle"));
+        Assert.assertTrue(GcMonitor.isConcurrentCycle("ZGC Major Cycles", "end of GC cycle"));
+        Assert.assertTrue(GcMonitor.isConcurrentCycle("Shenandoah Cycles", "end of GC cycle"));
+        Assert.assertTrue(GcMonitor.isConcurrentCycle("ZGC", "end of major GC"));
+        Assert.assertTrue(GcMonitor.isConcurrentCycle("ConcurrentMarkSweep", "end of major GC"));
+    }
+
+}
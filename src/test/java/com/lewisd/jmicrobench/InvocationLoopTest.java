@@ -0,0 +1,70 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class InvocationLoopTest
+{
+    private int calls;
+
+    public void increment()
+    {
+        calls++;
+    }
+
+    public int incrementAndGet()
+    {
+        return ++calls;
+    }
+
+    @Test
+    public void shouldCallMethodInBatchesUntilTimerHasRunLongEnough() throws Throwable
+    {
+        InvocationLoop loop = InvocationLoop.create(getClass().getMethod("increment"), 10);
+        // a timer without an expected duration has always run long enough
+        DurationTimer timer = new DurationTimer(-1);
+
+        long operations = loop.run(this, timer, new Blackhole());
+
+        Assert.assertEquals(10, operations);
+        Assert.assertEquals(10, calls);
+    }
+
+    public double half()
+    {
+        return ++calls / 2.0;
+    }
+
+    public boolean isEven()
+    {
+        return ++calls % 2 == 0;
+    }
+
+    @Test
+    public void shouldCallMethodsReturningPrimitives() throws Throwable
+    {
+        DurationTimer timer = new DurationTimer(-1);
+        Blackhole blackhole = new Blackhole();
+
+        Assert.assertEquals(10, InvocationLoop.create(getClass().getMethod("incrementAndGet"), 10).run(this, timer, blackhole));
+        Assert.assertEquals(10, InvocationLoop.create(getClass().getMethod("half"), 10).run(this, timer, blackhole));
+        Assert.assertEquals(10, InvocationLoop.create(getClass().getMethod("isEven"), 10).run(this, timer, blackhole));
+
+        Assert.assertEquals(30, calls);
+    }
+
+    @Test
+    public void shouldUseLoopClassOfItsOwnForEachBenchmark() throws Throwable
+    {
+        InvocationLoop first = InvocationLoop.create(getClass().getMethod("increment"), 10);
+        InvocationLoop second = InvocationLoop.create(getClass().getMethod("increment"), 10);
+        InvocationLoop value = InvocationLoop.create(getClass().getMethod("incrementAndGet"), 10);
+
+        // the same loop, but a class the JIT profiles separately
+        Assert.assertEquals(first.getClass().getName(), second.getClass().getName());
+        Assert.assertNotSame(first.getClass(), second.getClass());
+        Assert.assertFalse(first.getClass().getName().equals(value.getClass().getName()));
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class MetricTest
+{
+
+    private static String repeat(char c, int count)
+    {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void shouldAcceptNamesThatFitWithTheirLongestSuffixes()
+    {
+        String name = repeat('a', 100 - "_stddev".length() - ForkedTestLauncher.BETWEEN_FORKS_VARIANCE_SUFFIX.length());
+
+        Assert.assertEquals(name, new Metric(name, "ops", true).getName());
+    }
+
+    @Test
+    public void shouldRejectNamesTooLongToStoreWithTheirSuffixes()
+    {
+        String name = repeat('a', 100 - "_stddev".length() - ForkedTestLauncher.BETWEEN_FORKS_VARIANCE_SUFFIX.length() + 1);
+        try
+        {
+            new Metric(name, "ops", true);
+            Assert.fail("Expected a name too long to store to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("must be at most 70 characters"));
+        }
+    }
+
+}
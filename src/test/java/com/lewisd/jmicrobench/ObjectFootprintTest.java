@@ -0,0 +1,76 @@
+package com.lewisd.jmicrobench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class ObjectFootprintTest
+{
+
+    private long countOf(ObjectFootprint footprint, Class<?> type)
+    {
+        for (ObjectFootprint.ClassFootprint classFootprint : footprint.getClassFootprints())
+        {
+            if (classFootprint.getType() == type)
+            {
+                return classFootprint.getCount();
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void shouldSizeArraysByLength()
+    {
+        long oneLong = ObjectFootprint.measure(new long[1]).getTotalBytes();
+        long twoLongs = ObjectFootprint.measure(new long[2]).getTotalBytes();
+
+        Assert.assertEquals(oneLong + 8, twoLongs);
+        Assert.assertEquals(0, oneLong % 8);
+    }
+
+    @Test
+    public void shouldCountSharedObjectsOnce()
+    {
+        Long shared = Long.valueOf(1234567);
+        List<Long> list = new ArrayList<Long>();
+        list.add(shared);
+        list.add(shared);
+        list.add(Long.valueOf(7654321));
+
+        ObjectFootprint footprint = ObjectFootprint.measure(list);
+
+        Assert.assertEquals(2, countOf(footprint, Long.class));
+        Assert.assertEquals(1, countOf(footprint, ArrayList.class));
+        Assert.assertEquals(1, countOf(footprint, Object[].class));
+        Assert.assertEquals(4, footprint.getObjectCount());
+    }
+
+    @Test
+    public void shouldBreakDownTotalByClass()
+    {
+        List<Object> list = new ArrayList<Object>();
+        list.add(new int[100]);
+        list.add("text");
+        // a cycle
+        list.add(list);
+
+        ObjectFootprint footprint = ObjectFootprint.measure(list);
+
+        long total = 0;
+        long previousBytes = Long.MAX_VALUE;
+        for (ObjectFootprint.ClassFootprint classFootprint : footprint.getClassFootprints())
+        {
+            Assert.assertTrue(classFootprint.getBytes() <= previousBytes);
+            previousBytes = classFootprint.getBytes();
+            total += classFootprint.getBytes();
+        }
+        Assert.assertEquals(footprint.getTotalBytes(), total);
+        Assert.assertEquals(int[].class, footprint.getClassFootprints().get(0).getType());
+        Assert.assertTrue(footprint.getTotalBytes() > 400);
+    }
+
+}
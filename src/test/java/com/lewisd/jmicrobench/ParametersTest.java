@@ -0,0 +1,41 @@
+package com.lewisd.jmicrobench;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class ParametersTest
+{
+    private boolean enabled;
+
+    private Field getEnabledField() throws NoSuchFieldException
+    {
+        return getClass().getDeclaredField("enabled");
+    }
+
+    @Test
+    public void shouldAcceptBooleansInAnyCase() throws Exception
+    {
+        Parameters.inject(this, getEnabledField(), "TRUE");
+        Assert.assertTrue(enabled);
+        Parameters.inject(this, getEnabledField(), "False");
+        Assert.assertFalse(enabled);
+    }
+
+    @Test
+    public void shouldRejectMisspeltBooleans() throws Exception
+    {
+        try
+        {
+            Parameters.validate(getEnabledField(), "ture");
+            Assert.fail("Expected a misspelt boolean to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            Assert.assertEquals("Invalid value specified for enabled: ture", e.getMessage());
+        }
+    }
+
+}
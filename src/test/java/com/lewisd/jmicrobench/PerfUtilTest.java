@@ -0,0 +1,52 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class PerfUtilTest
+{
+    private static byte[] retained;
+
+    @Test
+    public void shouldMeasureRetainedMemoryWithoutSleeping()
+    {
+        long start = System.currentTimeMillis();
+        long before = PerfUtil.getMemoryUsed();
+        retained = new byte[16 * 1024 * 1024];
+        long used = PerfUtil.getMemoryUsed(before);
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertTrue("Retained " + used + " bytes", used >= retained.length && used < retained.length * 2L);
+        // the sleeps between collections took 2.5s for each measurement
+        Assert.assertTrue("Took " + elapsed + "ms", elapsed < 2500);
+    }
+
+    @Test
+    public void shouldWaitForEndOfFullCollection()
+    {
+        Assert.assertTrue(PerfUtil.isEndOfFullCollection("G1 Old Generation", "end of major GC"));
+        Assert.assertTrue(PerfUtil.isEndOfFullCollection("PS MarkSweep", "end of major GC"));
+        Assert.assertTrue(PerfUtil.isEndOfFullCollection("ZGC Cycles", "end of GC cycle"));
+        Assert.assertTrue(PerfUtil.isEndOfFullCollection("ZGC Major Cycles", "end of GC cycle"));
+        Assert.assertTrue(PerfUtil.isEndOfFullCollection("Shenandoah Cycles", "end of GC cycle"));
+
+        Assert.assertFalse(PerfUtil.isEndOfFullCollection("G1 Young Generation", "end of minor GC"));
+        Assert.assertFalse(PerfUtil.isEndOfFullCollection("ZGC Pauses", "end of GC pause"));
+        Assert.assertFalse(PerfUtil.isEndOfFullCollection("ZGC Major Pauses", "end of GC pause"));
+        Assert.assertFalse(PerfUtil.isEndOfFullCollection("ZGC Minor Cycles", "end of GC cycle"));
+        Assert.assertFalse(PerfUtil.isEndOfFullCollection("Shenandoah Pauses", "end of GC pause"));
+    }
+
+    @Test
+    public void shouldRunSeveralCollectionsQuickly()
+    {
+        long start = System.currentTimeMillis();
+        PerfUtil.runGc();
+        long elapsed = System.currentTimeMillis() - start;
+
+        // each of the 5 collections used to be followed by a 500ms sleep
+        Assert.assertTrue("Took " + elapsed + "ms", elapsed < 2500);
+    }
+
+}
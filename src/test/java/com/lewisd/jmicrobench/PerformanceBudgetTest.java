@@ -0,0 +1,54 @@
+package com.lewisd.jmicrobench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class PerformanceBudgetTest
+{
+
+    private PerformanceTestResultsImpl createResults()
+    {
+        PerformanceTestResultsImpl results = new PerformanceTestResultsImpl(BuildInfoImpl.getCurrentBuild(), "group", "test");
+        // 2000 ops/s
+        results.setDurationNanos(TimeUnit.SECONDS.toNanos(1));
+        results.setNumberOfOperations(2000L);
+        results.setMemoryBytes(1024L);
+        return results;
+    }
+
+    @Test
+    public void shouldPassResultsWithinBudget()
+    {
+        PerformanceBudget budget = new PerformanceBudget(1000, -1, -1, -1, 2048);
+
+        Assert.assertTrue(budget.findViolations(createResults()).isEmpty());
+    }
+
+    @Test
+    public void shouldReportMeasuredValueOfBrokenBudget()
+    {
+        PerformanceBudget budget = new PerformanceBudget(2500, -1, -1, -1, 512);
+
+        List<String> violations = budget.findViolations(createResults());
+
+        Assert.assertEquals(2, violations.size());
+        Assert.assertEquals("opsPerSecond was 2000 ops/s, below its budget of 2500 ops/s", violations.get(0));
+        Assert.assertEquals("memory was 1024 bytes, over its budget of 512.0 bytes", violations.get(1));
+    }
+
+    @Test
+    public void shouldReportBudgetForAttributeThatWasNotMeasured()
+    {
+        PerformanceBudget budget = new PerformanceBudget(-1, 100, -1, -1, -1);
+
+        List<String> violations = budget.findViolations(createResults());
+
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals("latency has a budget, but wasn't measured", violations.get(0));
+    }
+
+}
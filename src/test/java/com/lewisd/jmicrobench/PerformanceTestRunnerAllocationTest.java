@@ -0,0 +1,78 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerAllocationTest
+{
+    private static final int ARRAY_SIZE = 1024;
+
+    private static PerformanceTestResults singleThreadedResults;
+    private static PerformanceTestResults multiThreadedResults;
+    private static PerformanceTestResults latencyResults;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        if (!AllocationCounter.isSupported())
+        {
+            return;
+        }
+        assertAllocatedAtLeastOneArrayPerOperation(singleThreadedResults);
+        assertAllocatedAtLeastOneArrayPerOperation(multiThreadedResults);
+        Assert.assertTrue(latencyResults.hasLatencyPercentiles());
+        // only the batches allocate, not the histogram the latencies go into
+        double latencyBytesPerOperation = latencyResults.getAllocatedBytesPerOperation();
+        Assert.assertTrue("Expected less than a byte per operation, but was " + latencyBytesPerOperation, latencyBytesPerOperation < 1);
+    }
+
+    private static void assertAllocatedAtLeastOneArrayPerOperation(PerformanceTestResults results)
+    {
+        Assert.assertNotNull(results);
+        Assert.assertTrue(results.hasAllocatedBytes());
+        Assert.assertTrue(results.hasAllocatedBytesPerSecond());
+        double bytesPerOperation = results.getAllocatedBytesPerOperation();
+        Assert.assertTrue("Expected at least " + ARRAY_SIZE + " bytes per operation, but was " + bytesPerOperation, bytesPerOperation >= ARRAY_SIZE);
+        Assert.assertEquals(Double.valueOf(bytesPerOperation), results.asMap().get(PerformanceTestResults.ALLOCATED_BYTES_PER_OPERATION));
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 50, runsToAverage = 0, stablePasses = 0)
+    public byte[] shouldMeasureAllocatedBytesPerOperation() throws Exception
+    {
+        singleThreadedResults = controller.getResults();
+        controller.addNumberOfOperations(1);
+        return new byte[ARRAY_SIZE];
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 50, runsToAverage = 0, stablePasses = 0, threads = 2)
+    public byte[] shouldSumAllocatedBytesAcrossThreads() throws Exception
+    {
+        multiThreadedResults = controller.getResults();
+        controller.addNumberOfOperations(1);
+        return new byte[ARRAY_SIZE];
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 50, runsToAverage = 0, stablePasses = 0, batchSize = 100)
+    public void shouldNotCountLatencyHistogramAsAllocated() throws Exception
+    {
+        latencyResults = controller.getResults();
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 10000)
+        {
+            // spin, so that the histogram would be spread over few operations
+        }
+        controller.recordLatencyNanos(System.nanoTime() - start);
+        controller.addNumberOfOperations(1);
+    }
+
+}
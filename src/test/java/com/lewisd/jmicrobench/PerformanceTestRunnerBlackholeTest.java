@@ -0,0 +1,41 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerBlackholeTest
+{
+    private PerformanceTestController controller = new PerformanceTestController();
+    private int calls = 0;
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0)
+    public long shouldAcceptTestMethodsThatReturnAValue() throws Exception
+    {
+        calls++;
+        controller.addNumberOfOperations(1);
+        return calls;
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0)
+    public void shouldConsumeValues() throws Exception
+    {
+        Blackhole blackhole = controller.getBlackhole();
+        Assert.assertSame(blackhole, controller.getBlackhole());
+        for (int i = 0; i < 100000; ++i)
+        {
+            controller.consume(i);
+            controller.consume((long) i);
+            controller.consume((double) i);
+            controller.consume(i % 2 == 0);
+            blackhole.consume(Integer.toString(i));
+        }
+        controller.addNumberOfOperations(100000);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test", confidenceWidthPercentage = 5)
+public class PerformanceTestRunnerConfidenceTest
+{
+    private static int steadyPasses;
+    private static int noisyPasses;
+    private static int budgetedPasses;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        // one warmup pass, then the 3 passes a confidence interval is
+        // trusted from
+        Assert.assertEquals(4, steadyPasses);
+        Assert.assertEquals(6, noisyPasses);
+        Assert.assertTrue("Expected the time budget to stop the test, but it ran " + budgetedPasses + " passes", budgetedPasses < 100);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, warmupPasses = 1)
+    public void shouldStopSteadyTestQuickly() throws Exception
+    {
+        // one call per pass, with the same results every time, so the
+        // confidence interval doesn't depend on how long the sleep takes
+        steadyPasses++;
+        controller.addNumberOfOperations(100);
+        controller.setDurationNanos(TimeUnit.MILLISECONDS.toNanos(20));
+        Thread.sleep(20);
+    }
+
+    @Test
+    @PerformanceTest(maxPasses = 6)
+    public void shouldStopNoisyTestAtMaxPasses() throws Exception
+    {
+        noisyPasses++;
+        controller.addNumberOfOperations(noisyPasses % 2 == 0 ? 100 : 1000);
+        controller.setDurationNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    @PerformanceTest(maxPasses = 1000, durationMillis = 10, timeBudgetMillis = 100)
+    public void shouldStopAtTimeBudget() throws Exception
+    {
+        budgetedPasses++;
+        controller.addNumberOfOperations(budgetedPasses % 2 == 0 ? 100 : 1000);
+        Thread.sleep(10);
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerCustomMetricTest
+{
+    private static final Metric HIT_RATIO = new Metric("hit_ratio", "ratio", true);
+    private static final Metric ROWS_SCANNED = new Metric("rows_scanned", "rows", false);
+
+    private static int averagedPasses;
+    private static PerformanceTestResults averagedResults;
+    private static final AtomicInteger threadedCalls = new AtomicInteger();
+    private static PerformanceTestResults threadedResults;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertEquals(HIT_RATIO, averagedResults.getCustomMetrics().get(HIT_RATIO.getName()));
+        // the lowest and highest of the last 5 passes are dropped
+        Assert.assertEquals(Double.valueOf(3), averagedResults.asMap().get(HIT_RATIO.getName()));
+
+        Assert.assertEquals(ROWS_SCANNED, threadedResults.getCustomMetrics().get(ROWS_SCANNED.getName()));
+        Assert.assertEquals(Double.valueOf(15), threadedResults.asMap().get(ROWS_SCANNED.getName()));
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 3, stablePasses = 0)
+    public void shouldAverageCustomMetric() throws Exception
+    {
+        averagedPasses++;
+        controller.addNumberOfOperations(1);
+        controller.recordMetric(HIT_RATIO.getName(), averagedPasses, HIT_RATIO.getUnit(), HIT_RATIO.isHigherBetter());
+        if (controller.isTestDone())
+        {
+            averagedResults = controller.getAveragedResults();
+        }
+    }
+
+    @Test
+    @PerformanceTest(threads = 2, confidenceWidthPercentage = 5, maxPasses = 3)
+    public void shouldAverageCustomMetricAcrossThreads() throws Exception
+    {
+        int call = threadedCalls.incrementAndGet();
+        controller.addNumberOfOperations(1);
+        // one thread records 10 and the other 20 in each pass
+        controller.recordMetric(ROWS_SCANNED.getName(), call % 2 == 0 ? 10 : 20, ROWS_SCANNED.getUnit(), ROWS_SCANNED.isHigherBetter());
+        if (call == 5)
+        {
+            // the first two passes have been merged by now
+            threadedResults = controller.getAveragedResults();
+        }
+    }
+
+}
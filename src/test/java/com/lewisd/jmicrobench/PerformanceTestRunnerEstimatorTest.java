@@ -0,0 +1,88 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test", runsToAverage = 3, stablePasses = 0)
+public class PerformanceTestRunnerEstimatorTest
+{
+    // runsToAverage + 2 passes are averaged, and the last one is an outlier
+    private static final int[] OPERATIONS_PER_PASS = { 100, 100, 100, 400, 1000 };
+
+    private PerformanceTestController controller = new PerformanceTestController();
+    private int pass = 0;
+
+    @Test
+    @PerformanceTest(estimator = "mean")
+    public void shouldDropLowestAndHighestForMean() throws Exception
+    {
+        Map<String, Double> average = runPass();
+        if (average != null)
+        {
+            Assert.assertEquals(200.0, average.get(PerformanceTestResults.OPERATIONS), 0.001);
+            Assert.assertEquals(Statistics.standardDeviation(new double[] { 100, 100, 400 }), average.get(PerformanceTestResults.OPS_PER_SECOND
+                    + PerformanceTestResults.STD_DEV_SUFFIX), 0.001);
+            // only the main metric gets them
+            Assert.assertFalse(average.containsKey(PerformanceTestResults.OPERATIONS + PerformanceTestResults.STD_DEV_SUFFIX));
+        }
+    }
+
+    @Test
+    @PerformanceTest(estimator = "median")
+    public void shouldUseMedianAndMad() throws Exception
+    {
+        Map<String, Double> average = runPass();
+        if (average != null)
+        {
+            Assert.assertEquals(100.0, average.get(PerformanceTestResults.OPERATIONS), 0.001);
+            Assert.assertEquals(0.0, average.get(PerformanceTestResults.OPS_PER_SECOND + PerformanceTestResults.MAD_SUFFIX), 0.001);
+            Assert.assertTrue(average.get(PerformanceTestResults.OPS_PER_SECOND + PerformanceTestResults.CI95_SUFFIX) > 0);
+        }
+    }
+
+    @Test
+    @PerformanceTest(estimator = "trimmed_mean", trimPercentage = 40)
+    public void shouldTrimBothEnds() throws Exception
+    {
+        Map<String, Double> average = runPass();
+        if (average != null)
+        {
+            // two values from each end
+            Assert.assertEquals(100.0, average.get(PerformanceTestResults.OPERATIONS), 0.001);
+        }
+    }
+
+    @Test
+    @PerformanceTest(estimator = "tukey")
+    public void shouldRejectValuesOutsideTukeyFences() throws Exception
+    {
+        Map<String, Double> average = runPass();
+        if (average != null)
+        {
+            Assert.assertEquals(175.0, average.get(PerformanceTestResults.OPERATIONS), 0.001);
+        }
+    }
+
+    /**
+     * Returns the averaged results once the last pass has its operations.
+     */
+    private Map<String, Double> runPass()
+    {
+        controller.addNumberOfOperations(OPERATIONS_PER_PASS[pass]);
+        // so the operations per second are the same as the operations
+        controller.setDurationNanos(TimeUnit.SECONDS.toNanos(1));
+        pass++;
+        if (pass == OPERATIONS_PER_PASS.length)
+        {
+            return controller.getAveragedResults().asMap();
+        }
+        return null;
+    }
+
+}
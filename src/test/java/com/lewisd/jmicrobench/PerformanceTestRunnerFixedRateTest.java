@@ -0,0 +1,68 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerFixedRateTest
+{
+    private static final long STALL_MILLIS = 50;
+
+    private static PerformanceTestResults stallingResults;
+    private static int stallingCalls;
+    private static PerformanceTestResults selfCountingResults;
+    private static int selfCountingCalls;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertNotNull(stallingResults);
+        // 1000 calls per second for 200ms
+        Assert.assertEquals(200, stallingResults.getNumberOfOperations());
+        Assert.assertEquals(200, stallingCalls);
+        // the calls scheduled during the stall were delayed by it, and that
+        // must show up in their latency
+        long p90 = stallingResults.getP90LatencyNanos();
+        Assert.assertTrue("p90 latency should include the stall, but was " + p90, p90 > TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS / 10));
+        Assert.assertTrue(stallingResults.getMaxLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS));
+        // the schedule's own count would have added the calls on top
+        Assert.assertEquals(selfCountingCalls * 2, selfCountingResults.getNumberOfOperations());
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 200, runsToAverage = 0, stablePasses = 0, targetRate = 1000)
+    public void shouldMeasureLatencyFromIntendedStartTime() throws Exception
+    {
+        stallingResults = controller.getResults();
+        stallingCalls++;
+        if (stallingCalls == 1)
+        {
+            Thread.sleep(STALL_MILLIS);
+        }
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 200, runsToAverage = 0, stablePasses = 0, targetRate = 1000, arrivals = "poisson", threads = 2)
+    public void shouldRunPoissonArrivalsOnMultipleThreads() throws Exception
+    {
+        Assert.assertNotNull(controller.getResults());
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 200, runsToAverage = 0, stablePasses = 0, targetRate = 1000)
+    public void shouldOnlyCountOperationsCountedByTest() throws Exception
+    {
+        selfCountingResults = controller.getResults();
+        selfCountingCalls++;
+        controller.addNumberOfOperations(2);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.lewisd.jmicrobench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerFootprintTest
+{
+    private static PerformanceTestResults returnedResults;
+    private static PerformanceTestResults registeredResults;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        ObjectFootprint expected = ObjectFootprint.measure(createMap());
+        Assert.assertEquals(expected.getTotalBytes(), returnedResults.getMemoryBytes());
+        Assert.assertEquals(Double.valueOf(expected.getObjectCount()), returnedResults.asMap().get(PerformanceTestResults.FOOTPRINT_OBJECTS));
+        Assert.assertEquals(expected.getTotalBytes(), registeredResults.getMemoryBytes());
+    }
+
+    private static Map<Integer, String> createMap()
+    {
+        Map<Integer, String> map = new HashMap<Integer, String>();
+        for (int i = 0; i < 100; ++i)
+        {
+            map.put(Integer.valueOf(1000 + i), "value");
+        }
+        return map;
+    }
+
+    @Test
+    @PerformanceTest(footprint = "true", durationMillis = 20, runsToAverage = 3, stablePasses = 0)
+    public Map<Integer, String> shouldRecordFootprintOfReturnedObject() throws Exception
+    {
+        // the footprint is only recorded after the call returns
+        if (controller.getResults().hasMemoryBytes())
+        {
+            returnedResults = controller.getAveragedResults();
+        }
+        return createMap();
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 3, stablePasses = 0)
+    public void shouldRecordFootprintOfRegisteredObject() throws Exception
+    {
+        ObjectFootprint footprint = controller.recordFootprint(createMap());
+        Assert.assertEquals(100, countEntries(footprint));
+        if (controller.isTestDone())
+        {
+            registeredResults = controller.getAveragedResults();
+        }
+    }
+
+    private long countEntries(ObjectFootprint footprint)
+    {
+        for (ObjectFootprint.ClassFootprint classFootprint : footprint.getClassFootprints())
+        {
+            if (classFootprint.getType().getName().equals("java.util.HashMap$Node"))
+            {
+                return classFootprint.getCount();
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerForkedTest
+{
+    private static int passesInThisJvm = 0;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @Test
+    @PerformanceTest(forks = 2, runsToAverage = 1, stablePasses = 0)
+    public void shouldRunInForkedJvm() throws Exception
+    {
+        passesInThisJvm++;
+        Assert.assertTrue("Expected to be running in a forked JVM", ForkedTestMain.isForked());
+        // every fork starts from scratch, so no fork sees the passes of another
+        Assert.assertTrue("Ran " + passesInThisJvm + " passes in one fork", passesInThisJvm <= 3);
+        controller.addNumberOfOperations(passesInThisJvm);
+        controller.setDurationNanos(100L);
+    }
+
+    @Test
+    @PerformanceTest(forks = 2, runsToAverage = 1, stablePasses = 0, durationMillis = 50)
+    public void shouldSendLatenciesToParent() throws Exception
+    {
+        long start = System.nanoTime();
+        controller.addNumberOfOperations(1);
+        controller.recordLatencyNanos(System.nanoTime() - start);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerGcTest
+{
+    private static PerformanceTestResults collectingResults;
+    private static PerformanceTestResults quietResults;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Map<String, Double> collecting = collectingResults.asMap();
+        Assert.assertTrue(collecting.get(PerformanceTestResults.GC_COUNT) >= 1);
+        Assert.assertTrue(collecting.get(PerformanceTestResults.MAJOR_GC_COUNT) >= 1);
+        Assert.assertTrue(collecting.get(PerformanceTestResults.GC_PAUSE_MILLIS) >= collecting.get(PerformanceTestResults.GC_MAX_PAUSE_MILLIS));
+        Assert.assertTrue(collecting.containsKey(PerformanceTestResults.GC_PROMOTED_BYTES));
+
+        Map<String, Double> quiet = quietResults.asMap();
+        Assert.assertEquals(Double.valueOf(0), quiet.get(PerformanceTestResults.MAJOR_GC_COUNT));
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, runsToAverage = 0, stablePasses = 0)
+    public void shouldRecordCollectionsDuringPass() throws Exception
+    {
+        collectingResults = controller.getResults();
+        System.gc();
+        Thread.sleep(1);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, runsToAverage = 0, stablePasses = 0)
+    public void shouldRecordNoMajorCollectionsWhenThereAreNone() throws Exception
+    {
+        quietResults = controller.getResults();
+        Thread.sleep(1);
+    }
+
+}
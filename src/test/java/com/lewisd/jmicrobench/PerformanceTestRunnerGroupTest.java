@@ -0,0 +1,76 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerGroupTest
+{
+    private static final Set<String> putThreadNames = Collections.synchronizedSet(new HashSet<String>());
+    private static final Set<String> getThreadNames = Collections.synchronizedSet(new HashSet<String>());
+    private static final Set<PerformanceTestResults> putThreadResults = Collections.newSetFromMap(new IdentityHashMap<PerformanceTestResults, Boolean>());
+    private static PerformanceTestResults firstPassResults;
+
+    private final Map<Integer, Integer> map = new ConcurrentHashMap<Integer, Integer>();
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertEquals(2, putThreadNames.size());
+        Assert.assertEquals(3, getThreadNames.size());
+
+        Assert.assertEquals("readWrite", firstPassResults.getTestGroupName());
+        Map<String, Double> values = firstPassResults.asMap();
+        Assert.assertTrue(values.get("put.operations") > 0);
+        Assert.assertTrue(values.get("get.operations") > 0);
+        Assert.assertEquals(values.get("put.operations") + values.get("get.operations"), values.get(PerformanceTestResults.OPERATIONS));
+        Assert.assertTrue(values.containsKey("put.opsPerSecond"));
+        Assert.assertTrue(values.containsKey("get.opsPerSecond"));
+        Assert.assertTrue(values.containsKey("get.latency"));
+        Assert.assertFalse(values.containsKey("put.latency"));
+    }
+
+    @Test
+    @Group(value = "readWrite", threads = 2)
+    @PerformanceTest(durationMillis = 20, confidenceWidthPercentage = 5, maxPasses = 2)
+    public void put() throws Exception
+    {
+        putThreadNames.add(Thread.currentThread().getName());
+        map.put(Integer.valueOf(map.size()), Integer.valueOf(1));
+        controller.addNumberOfOperations(1);
+        synchronized (putThreadResults)
+        {
+            // the third put thread is the first of the second pass
+            if (putThreadResults.add(controller.getResults()) && putThreadResults.size() == 3)
+            {
+                firstPassResults = controller.getAveragedResults();
+            }
+        }
+        Thread.sleep(1);
+    }
+
+    @Test
+    @Group(value = "readWrite", threads = 3)
+    public void get() throws Exception
+    {
+        getThreadNames.add(Thread.currentThread().getName());
+        long start = System.nanoTime();
+        map.get(Integer.valueOf(0));
+        controller.recordLatencyNanos(System.nanoTime() - start);
+        controller.addNumberOfOperations(1);
+        Thread.sleep(1);
+    }
+
+}
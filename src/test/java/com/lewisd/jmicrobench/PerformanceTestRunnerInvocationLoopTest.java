@@ -0,0 +1,84 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerInvocationLoopTest
+{
+    private static final int BATCH_SIZE = 1000;
+
+    private static PerformanceTestResults voidResults;
+    private static long voidCalls;
+    private static long valueCalls;
+    private static PerformanceTestResults selfCountingResults;
+    private static long selfCountingCalls;
+    private static PerformanceTestResults longResults;
+    private static long longCalls;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertEquals(voidCalls, voidResults.getNumberOfOperations());
+        Assert.assertEquals(0, voidCalls % BATCH_SIZE);
+        Assert.assertTrue("Expected calls in more than one batch, but was " + voidCalls, voidCalls > BATCH_SIZE);
+        Assert.assertTrue(valueCalls > 0);
+        // the loop's own count would have added the calls on top
+        Assert.assertEquals(selfCountingCalls * 2, selfCountingResults.getNumberOfOperations());
+        if (AllocationCounter.isSupported())
+        {
+            // the values are past the cache of boxed longs, so boxing them would allocate
+            Assert.assertTrue(longCalls > 1000);
+            // 0 to the nearest byte; the pass itself allocates a little
+            Assert.assertEquals(0.0, longResults.getAllocatedBytesPerOperation(), 0.5);
+        }
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, batchSize = BATCH_SIZE)
+    public void shouldCallVoidMethodInBatches()
+    {
+        if (voidCalls == 0)
+        {
+            voidResults = controller.getResults();
+        }
+        voidCalls++;
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, batchSize = BATCH_SIZE)
+    public long shouldCallMethodReturningPrimitiveInBatches()
+    {
+        return ++valueCalls;
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, batchSize = BATCH_SIZE)
+    public void shouldOnlyCountOperationsCountedByTest()
+    {
+        if (selfCountingCalls == 0)
+        {
+            selfCountingResults = controller.getResults();
+        }
+        selfCountingCalls++;
+        controller.addNumberOfOperations(2);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, batchSize = BATCH_SIZE)
+    public long shouldNotBoxPrimitiveReturnValues()
+    {
+        if (longCalls == 0)
+        {
+            longResults = controller.getResults();
+        }
+        return ++longCalls;
+    }
+
+}
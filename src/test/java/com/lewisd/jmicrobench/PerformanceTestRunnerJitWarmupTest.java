@@ -0,0 +1,92 @@
+package com.lewisd.jmicrobench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerJitWarmupTest
+{
+    private static final Set<PerformanceTestResults> passes = Collections.newSetFromMap(new IdentityHashMap<PerformanceTestResults, Boolean>());
+    private static final WarningAppender appender = new WarningAppender();
+
+    private PerformanceTestController controller = new PerformanceTestController();
+    private long total;
+
+    @BeforeClass
+    public static void addAppender()
+    {
+        Logger.getLogger(PerformanceTestRunner.class).addAppender(appender);
+    }
+
+    @AfterClass
+    public static void checkPasses()
+    {
+        Logger.getLogger(PerformanceTestRunner.class).removeAppender(appender);
+        // warmup ended because the JIT went quiet, not because it ran out of passes
+        for (String warning : appender.getWarnings())
+        {
+            Assert.assertFalse(warning, warning.contains("the JIT was still compiling"));
+        }
+        // at least the first warmup pass compiles something, then two quiet
+        // passes, and a measured one
+        Assert.assertTrue("Expected the JIT to settle, but the test ran " + passes.size() + " passes", passes.size() >= 4 && passes.size() < 100);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, warmupQuietPasses = 2, runsToAverage = 0, stablePasses = 0)
+    public void shouldWarmUpUntilJitIsQuiet() throws Exception
+    {
+        passes.add(controller.getResults());
+        for (int i = 0; i < 1000; ++i)
+        {
+            total += i * 31 ^ total;
+        }
+        controller.addNumberOfOperations(1000);
+    }
+
+    private static class WarningAppender extends AppenderSkeleton
+    {
+        private final List<String> warnings = new ArrayList<String>();
+
+        @Override
+        protected synchronized void append(LoggingEvent event)
+        {
+            if (event.getLevel().isGreaterOrEqual(Level.WARN))
+            {
+                warnings.add(event.getRenderedMessage());
+            }
+        }
+
+        public synchronized List<String> getWarnings()
+        {
+            return new ArrayList<String>(warnings);
+        }
+
+        @Override
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerLatencyTest
+{
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0)
+    public void shouldCalculatePercentilesFromRecordedLatencies() throws Exception
+    {
+        for (long latency = 1; latency <= 10000; ++latency)
+        {
+            controller.recordLatencyNanos(latency);
+        }
+        PerformanceTestResults results = controller.getResults();
+
+        assertWithinPercent(5000, results.getP50LatencyNanos(), 2);
+        assertWithinPercent(9000, results.getP90LatencyNanos(), 2);
+        assertWithinPercent(9900, results.getP99LatencyNanos(), 2);
+        assertWithinPercent(9990, results.getP999LatencyNanos(), 2);
+        Assert.assertEquals(10000, results.getP9999LatencyNanos());
+        Assert.assertEquals(1, results.getMinLatencyNanos());
+        Assert.assertEquals(10000, results.getMaxLatencyNanos());
+        Assert.assertEquals(5001, results.getAverageLatencyNanos());
+
+        Map<String, Double> map = results.asMap();
+        Assert.assertEquals(Double.valueOf(results.getP99LatencyNanos()), map.get(PerformanceTestResults.P99_LATENCY));
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0, durationMillis = 50, threads = 2)
+    public void shouldRecordLatenciesOnEachThread() throws Exception
+    {
+        controller.recordLatencyNanos(100);
+        Thread.sleep(1);
+        Assert.assertTrue(controller.getResults().hasLatencyPercentiles());
+    }
+
+    private void assertWithinPercent(long expected, long actual, double percent)
+    {
+        double diff = Math.abs(actual - expected) * 100.0 / expected;
+        Assert.assertTrue("Expected " + expected + " but was " + actual, diff <= percent);
+    }
+}
@@ -0,0 +1,59 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerMultiThreadedTest
+{
+    private static final int THREADS = 4;
+
+    private static final CyclicBarrier allThreadsRunning = new CyclicBarrier(THREADS);
+    private static final ThreadLocal<Integer> invocationsOnThisThread = new ThreadLocal<Integer>();
+
+    private PerformanceTestController controller = new PerformanceTestController();
+    private Thread owningThread;
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, threads = THREADS)
+    public void shouldRunTestMethodOnAllThreadsAtOnce() throws Exception
+    {
+        if (invocationsOnThisThread.get() == null)
+        {
+            invocationsOnThisThread.set(1);
+            // only returns if all of the threads are in the test method at the same time
+            allThreadsRunning.await(5, TimeUnit.SECONDS);
+        }
+        Thread.sleep(1);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, threads = THREADS)
+    public void shouldGiveEachThreadItsOwnResults() throws Exception
+    {
+        PerformanceTestResults results = controller.getResults();
+        long operationsBefore = results.hasNumberOfOperations() ? results.getNumberOfOperations() : 0;
+        controller.addNumberOfOperations(2);
+        Thread.sleep(1);
+        Assert.assertEquals(operationsBefore + 2, results.getNumberOfOperations());
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 100, runsToAverage = 0, stablePasses = 0, threads = THREADS, stateScope = "thread")
+    public void shouldGiveEachThreadItsOwnTestInstanceWithThreadScope() throws Exception
+    {
+        if (owningThread == null)
+        {
+            owningThread = Thread.currentThread();
+        }
+        Assert.assertSame(owningThread, Thread.currentThread());
+        Thread.sleep(1);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.lewisd.jmicrobench;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerParamTest
+{
+    public enum Layout
+    {
+        DENSE, SPARSE
+    }
+
+    private static final Set<String> combinationsRun = new HashSet<String>();
+
+    @Param( { "1k", "64" })
+    private int size;
+
+    @Param( { "0.5", "0.75" })
+    private double loadFactor;
+
+    @Param("sparse")
+    private Layout layout;
+
+    private int[] data;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertEquals(4, combinationsRun.size());
+        Assert.assertTrue(combinationsRun.contains("layout=sparse,loadFactor=0.5,size=1k"));
+        Assert.assertTrue(combinationsRun.contains("layout=sparse,loadFactor=0.75,size=64"));
+    }
+
+    @Before
+    public void setUp()
+    {
+        // parameters are set before befores run
+        data = new int[size];
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0)
+    public void shouldRunEachCombinationOfParameters() throws Exception
+    {
+        Assert.assertTrue(size == 1024 || size == 64);
+        Assert.assertEquals(size, data.length);
+        Assert.assertTrue(loadFactor == 0.5 || loadFactor == 0.75);
+        Assert.assertEquals(Layout.SPARSE, layout);
+
+        PerformanceTestResults results = controller.getResults();
+        Assert.assertEquals("PerformanceTestRunnerParamTest", results.getTestName());
+        Assert.assertEquals(3, results.getParameters().size());
+        combinationsRun.add(Parameters.format(results.getParameters()));
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerScalabilityTest
+{
+    private static final Map<String, Set<Thread>> threadsByThreadCount = new TreeMap<String, Set<Thread>>();
+    // the results of each thread in each pass
+    private static final Map<String, Set<PerformanceTestResults>> resultsByThreadCount = new TreeMap<String, Set<PerformanceTestResults>>();
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkThreadCounts()
+    {
+        Assert.assertEquals("[1, 2, 4]", threadsByThreadCount.keySet().toString());
+        for (Map.Entry<String, Set<Thread>> entry : threadsByThreadCount.entrySet())
+        {
+            // each pass runs on new threads
+            int threads = Integer.parseInt(entry.getKey());
+            Assert.assertTrue(entry.getValue().size() >= threads);
+            Assert.assertEquals(0, entry.getValue().size() % threads);
+        }
+        Assert.assertEquals("[1, 2, 4]", resultsByThreadCount.keySet().toString());
+        for (Map.Entry<String, Set<PerformanceTestResults>> entry : resultsByThreadCount.entrySet())
+        {
+            // every thread count runs its own 2 warmup passes before the real one
+            int passes = entry.getValue().size() / Integer.parseInt(entry.getKey());
+            Assert.assertTrue("Ran " + passes + " passes with " + entry.getKey() + " threads", passes >= 3);
+        }
+    }
+
+    private <T> void addForThreadCount(Map<String, Set<T>> valuesByThreadCount, T value)
+    {
+        String threadCount = controller.getResults().getParameters().get(PerformanceTestRunner.THREADS_PARAMETER);
+        synchronized (valuesByThreadCount)
+        {
+            Set<T> values = valuesByThreadCount.get(threadCount);
+            if (values == null)
+            {
+                values = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+                valuesByThreadCount.put(threadCount, values);
+            }
+            values.add(value);
+        }
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, runsToAverage = 0, stablePasses = 0, scalabilitySweep = "true", maxThreads = 4)
+    public void shouldRunWithEachThreadCount() throws Exception
+    {
+        addForThreadCount(threadsByThreadCount, Thread.currentThread());
+        controller.addNumberOfOperations(1);
+        Thread.sleep(1);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 20, runsToAverage = 0, stablePasses = 0, warmupPasses = 2, scalabilitySweep = "true", maxThreads = 4)
+    public void shouldWarmUpEachThreadCount() throws Exception
+    {
+        addForThreadCount(resultsByThreadCount, controller.getResults());
+        controller.addNumberOfOperations(1);
+        Thread.sleep(1);
+    }
+
+}
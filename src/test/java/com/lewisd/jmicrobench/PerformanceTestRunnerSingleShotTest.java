@@ -0,0 +1,30 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerSingleShotTest
+{
+    private static int callsInThisJvm = 0;
+
+    @Test
+    @PerformanceTest(singleShot = "true", forks = 2)
+    public void shouldCallTestOnceInEachFork() throws Exception
+    {
+        callsInThisJvm++;
+        Assert.assertTrue("Expected to be running in a forked JVM", ForkedTestMain.isForked());
+        Assert.assertEquals(1, callsInThisJvm);
+        // the first use of a class includes loading and initialising it
+        Assert.assertEquals(42, ColdClass.VALUE);
+    }
+
+    private static class ColdClass
+    {
+        private static final int VALUE = Integer.parseInt("42");
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.lewisd.jmicrobench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+public class PerformanceTestRunnerTimerErrorTest
+{
+    private static final String TIMER_ERROR_MESSAGE = "so the timer granularity";
+
+    private final WarningAppender appender = new WarningAppender();
+
+    @Before
+    public void addAppender()
+    {
+        Logger.getLogger(PerformanceTestRunner.class).addAppender(appender);
+    }
+
+    @After
+    public void removeAppender()
+    {
+        Logger.getLogger(PerformanceTestRunner.class).removeAppender(appender);
+    }
+
+    @Test
+    public void shouldWarnOnceWhenIntervalsAreCloseToTimerGranularity()
+    {
+        Result result = JUnitCore.runClasses(EmptyIntervals.class);
+
+        Assert.assertEquals(0, result.getFailureCount());
+        Assert.assertEquals(1, appender.countWarningsContaining(TIMER_ERROR_MESSAGE));
+    }
+
+    @Test
+    public void shouldFailWhenTimerErrorExceedsMaximum()
+    {
+        Result result = JUnitCore.runClasses(EmptyIntervalsWithMaxError.class);
+
+        Assert.assertEquals(1, result.getFailureCount());
+        Assert.assertTrue(result.getFailures().get(0).getMessage(), result.getFailures().get(0).getMessage().contains(TIMER_ERROR_MESSAGE));
+    }
+
+    @Test
+    public void shouldNotWarnWhenIntervalsAreLongerThanTimerGranularity()
+    {
+        Result result = JUnitCore.runClasses(LongIntervalsWithMaxError.class);
+
+        Assert.assertEquals(0, result.getFailureCount());
+        Assert.assertEquals(0, appender.countWarningsContaining(TIMER_ERROR_MESSAGE));
+    }
+
+    private static void timeEmptyIntervals(PerformanceTestController controller)
+    {
+        controller.stopDurationTimer(false);
+        for (int i = 0; i < 1000; ++i)
+        {
+            controller.startDurationTimer();
+            controller.stopDurationTimer();
+        }
+    }
+
+    @RunWith(PerformanceTestRunner.class)
+    @PerformanceTest(projectName = "test")
+    public static class EmptyIntervals
+    {
+        private PerformanceTestController controller = new PerformanceTestController();
+
+        @Test
+        @PerformanceTest(runsToAverage = 2, stablePasses = 0)
+        public void timeEmptyIntervals()
+        {
+            PerformanceTestRunnerTimerErrorTest.timeEmptyIntervals(controller);
+        }
+    }
+
+    @RunWith(PerformanceTestRunner.class)
+    @PerformanceTest(projectName = "test")
+    public static class EmptyIntervalsWithMaxError
+    {
+        private PerformanceTestController controller = new PerformanceTestController();
+
+        @Test
+        @PerformanceTest(runsToAverage = 0, stablePasses = 0, maxTimerErrorPercentage = 1)
+        public void timeEmptyIntervals()
+        {
+            PerformanceTestRunnerTimerErrorTest.timeEmptyIntervals(controller);
+        }
+    }
+
+    @RunWith(PerformanceTestRunner.class)
+    @PerformanceTest(projectName = "test")
+    public static class LongIntervalsWithMaxError
+    {
+        private PerformanceTestController controller = new PerformanceTestController();
+
+        @Test
+        @PerformanceTest(runsToAverage = 0, stablePasses = 0, maxTimerErrorPercentage = 1)
+        public void timeLongIntervals() throws Exception
+        {
+            controller.stopDurationTimer(false);
+            controller.startDurationTimer();
+            Thread.sleep(1);
+            controller.stopDurationTimer();
+        }
+    }
+
+    private static class WarningAppender extends AppenderSkeleton
+    {
+        private final List<String> warnings = new ArrayList<String>();
+
+        @Override
+        protected synchronized void append(LoggingEvent event)
+        {
+            if (event.getLevel().isGreaterOrEqual(Level.WARN))
+            {
+                warnings.add(event.getRenderedMessage());
+            }
+        }
+
+        public synchronized int countWarningsContaining(String text)
+        {
+            int count = 0;
+            for (String warning : warnings)
+            {
+                if (warning.contains(text))
+                {
+                    ++count;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+}
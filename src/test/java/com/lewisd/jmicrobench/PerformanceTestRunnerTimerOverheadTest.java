@@ -0,0 +1,82 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerTimerOverheadTest
+{
+    private static final int INTERVALS = 100000;
+
+    // the share of the wall-clock time of the loop that the timer measured
+    private static double measuredFractionWithOverhead = -1;
+    private static double measuredFractionWithoutOverhead = -1;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @AfterClass
+    public static void checkResults()
+    {
+        Assert.assertTrue(measuredFractionWithOverhead > 0);
+        Assert.assertTrue(measuredFractionWithOverhead <= 1);
+        Assert.assertTrue(measuredFractionWithoutOverhead >= 0);
+        Assert.assertTrue(measuredFractionWithoutOverhead < 1);
+        Assert.assertTrue(measuredFractionWithoutOverhead < measuredFractionWithOverhead);
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0, subtractTimerOverhead = "false")
+    public void shouldIncludeOverheadInEmptyIntervals() throws Exception
+    {
+        measuredFractionWithOverhead = timeEmptyIntervals();
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0, subtractTimerOverhead = "true")
+    public void shouldSubtractOverheadFromEmptyIntervals() throws Exception
+    {
+        measuredFractionWithoutOverhead = timeEmptyIntervals();
+    }
+
+    @Test
+    @PerformanceTest(runsToAverage = 0, stablePasses = 0)
+    public void shouldNotLetOverheadMakeIntervalsNegative() throws Exception
+    {
+        DurationTimer timer = new DurationTimer(-1, TimeUnit.SECONDS.toNanos(1));
+        timer.start();
+        timer.stop(true);
+        timer.start();
+        Thread.sleep(1);
+        timer.stop(true);
+        Assert.assertEquals(0, timer.getActualDurationNanos());
+        Assert.assertEquals(2, timer.getIntervals());
+
+        DurationTimer timerWithoutOverhead = new DurationTimer(-1);
+        timerWithoutOverhead.start();
+        Thread.sleep(1);
+        timerWithoutOverhead.stop(true);
+        Assert.assertTrue(timerWithoutOverhead.getActualDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private double timeEmptyIntervals()
+    {
+        controller.stopDurationTimer(false);
+        PerformanceTestResults results = controller.getResults();
+        long before = results.getDurationNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < INTERVALS; ++i)
+        {
+            controller.startDurationTimer();
+            controller.stopDurationTimer();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (results.getDurationNanos() - before) / (double) elapsed;
+    }
+
+}
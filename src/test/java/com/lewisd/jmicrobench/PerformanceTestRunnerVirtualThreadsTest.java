@@ -0,0 +1,75 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.lewisd.test.Assert;
+
+@RunWith(PerformanceTestRunner.class)
+@PerformanceTest(projectName = "test")
+public class PerformanceTestRunnerVirtualThreadsTest
+{
+    private static final int THREADS = 10000;
+
+    private static final Set<PerformanceTestResults> threadResults = Collections.synchronizedSet(Collections
+            .newSetFromMap(new IdentityHashMap<PerformanceTestResults, Boolean>()));
+    private static PerformanceTestResults selfCountingResults;
+    private static long selfCountingCalls;
+
+    private PerformanceTestController controller = new PerformanceTestController();
+
+    @BeforeClass
+    public static void checkVirtualThreadsAreSupported()
+    {
+        // older JVMs quietly run platform threads instead
+        Assume.assumeTrue(ThreadType.VIRTUAL.isSupported());
+    }
+
+    @AfterClass
+    public static void checkResults()
+    {
+        if (!ThreadType.VIRTUAL.isSupported())
+        {
+            return;
+        }
+        Assert.assertEquals(THREADS, threadResults.size());
+        for (PerformanceTestResults results : threadResults)
+        {
+            // every call is counted, and its latency recorded
+            Assert.assertTrue(results.getNumberOfOperations() >= 1);
+            Assert.assertTrue(results.getP50LatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        // counting each call as well would have added the calls on top
+        Assert.assertEquals(selfCountingCalls * 2, selfCountingResults.getNumberOfOperations());
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 50, runsToAverage = 0, stablePasses = 0, threads = THREADS, threadType = "virtual")
+    public void shouldRunBlockingCallsOnManyThreads() throws Exception
+    {
+        threadResults.add(controller.getResults());
+        Thread.sleep(1);
+    }
+
+    @Test
+    @PerformanceTest(durationMillis = 50, runsToAverage = 0, stablePasses = 0, threads = 1, threadType = "virtual")
+    public void shouldOnlyCountOperationsCountedByTest() throws Exception
+    {
+        if (selfCountingCalls == 0)
+        {
+            selfCountingResults = controller.getResults();
+        }
+        selfCountingCalls++;
+        controller.addNumberOfOperations(2);
+        Thread.sleep(1);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class RegressionGateTest
+{
+    private static final double[] BASELINE_THROUGHPUT = { 1000, 1020, 990, 1010, 1005, 995, 1015, 985 };
+
+    private final RegressionGate gate = new RegressionGate(8, 10, 0.05);
+
+    @Test
+    public void shouldFindSignificantDropInThroughput()
+    {
+        String regression = gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 850, 860, 845, 855, 858 }, BASELINE_THROUGHPUT);
+
+        Assert.assertNotNull(regression);
+        Assert.assertTrue(regression, regression.startsWith("opsPerSecond was 14."));
+    }
+
+    @Test
+    public void shouldIgnoreDropSmallerThanThreshold()
+    {
+        Assert.assertNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 940, 945, 950, 942, 948 }, BASELINE_THROUGHPUT));
+    }
+
+    @Test
+    public void shouldIgnoreImprovement()
+    {
+        Assert.assertNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 1500, 1510, 1490 }, BASELINE_THROUGHPUT));
+    }
+
+    @Test
+    public void shouldIgnoreDropThatCouldBeNoise()
+    {
+        Assert.assertNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 850, 1020, 870 }, BASELINE_THROUGHPUT));
+    }
+
+    @Test
+    public void shouldFindDropInSingleValueOutsideSpreadOfHistory()
+    {
+        Assert.assertNotNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 850 }, new double[] { 1000, 1010, 990 }));
+        Assert.assertNotNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 850 }, new double[] { 1000, 1000, 1000 }));
+        Assert.assertNotNull(gate.findRegression(Metric.LATENCY, new double[] { 1200 }, new double[] { 1000, 1010, 990, 1005 }));
+    }
+
+    @Test
+    public void shouldIgnoreDropInSingleValueWithinSpreadOfHistory()
+    {
+        Assert.assertNull(gate.findRegression(Metric.OPS_PER_SECOND, new double[] { 850 }, new double[] { 1000, 1300, 750, 1150, 800 }));
+    }
+
+    @Test
+    public void shouldFindSignificantRiseInLatency()
+    {
+        Assert.assertNotNull(gate.findRegression(Metric.LATENCY, new double[] { 1200, 1210, 1190, 1205 }, new double[] { 1000, 1010, 990, 1005, 995, 1002 }));
+        Assert.assertNull(gate.findRegression(Metric.LATENCY, new double[] { 800, 810, 790, 805 }, new double[] { 1000, 1010, 990, 1005, 995, 1002 }));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.lewisd.jmicrobench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class ResultsListTest
+{
+
+    private static InProgressPerformanceTestResults createPass(long operations)
+    {
+        InProgressPerformanceTestResults results = new InProgressPerformanceTestResults(BuildInfoImpl.getCurrentBuild(), "group", "test", new DurationTimer(-1));
+        results.setNumberOfOperations(operations);
+        results.setDurationNanos(TimeUnit.SECONDS.toNanos(1));
+        return results;
+    }
+
+    private static void addPasses(ResultsList resultsList, long... operations)
+    {
+        for (long passOperations : operations)
+        {
+            resultsList.add(createPass(passOperations));
+        }
+    }
+
+    @Test
+    public void shouldBeStableOncePrunedPassesAgree()
+    {
+        ResultsList resultsList = new ResultsList(0, 2, 5);
+
+        addPasses(resultsList, 50, 1000, 1010);
+        Assert.assertFalse(resultsList.hasEnoughResults());
+
+        // the lowest and highest are pruned, leaving 1000 and 1010
+        addPasses(resultsList, 5000);
+        Assert.assertTrue(resultsList.hasEnoughResults());
+    }
+
+    @Test
+    public void shouldNotBeStableWhilePrunedPassesDiffer()
+    {
+        ResultsList resultsList = new ResultsList(0, 2, 5);
+
+        addPasses(resultsList, 50, 1000, 2000, 5000);
+
+        Assert.assertFalse(resultsList.hasEnoughResults());
+    }
+
+    @Test
+    public void shouldBeConfidentOnceIntervalIsNarrowEnough()
+    {
+        ResultsList resultsList = new ResultsList(0, 0, 0, Estimator.MEAN, 0, 5);
+
+        addPasses(resultsList, 1000, 1000);
+        Assert.assertFalse(resultsList.hasEnoughResults());
+
+        addPasses(resultsList, 1000);
+        Assert.assertTrue(resultsList.hasEnoughResults());
+    }
+
+    @Test
+    public void shouldNotBeConfidentWhilePassesAreNoisy()
+    {
+        ResultsList resultsList = new ResultsList(0, 0, 0, Estimator.MEAN, 0, 5);
+
+        addPasses(resultsList, 100, 1000, 100, 1000);
+
+        Assert.assertFalse(resultsList.hasEnoughResults());
+    }
+
+    @Test
+    public void shouldAverageOnlyTheLastPassesWhenBounded()
+    {
+        ResultsList resultsList = new ResultsList(2, 0, 0);
+
+        // 2 runs to average, plus the 2 that are pruned
+        addPasses(resultsList, 9000, 100, 200, 300, 400);
+        resultsList.finishPass();
+
+        Assert.assertTrue(Arrays.equals(new double[] { 100, 200, 300, 400 }, resultsList.getAveragedValues(PerformanceTestResults.OPERATIONS)));
+    }
+
+    @Test
+    public void shouldNotAllocateWhenCheckingForEnoughResults()
+    {
+        Assume.assumeTrue(AllocationCounter.isSupported());
+        ResultsList stableList = new ResultsList(0, 2, 5);
+        addPasses(stableList, 1000, 1000, 1000);
+        ResultsList confidentList = new ResultsList(0, 0, 0, Estimator.MEAN, 0, 5);
+        addPasses(confidentList, 1000, 1000, 1000);
+        for (int i = 0; i < 10000; ++i)
+        {
+            stableList.hasEnoughResults();
+            confidentList.hasEnoughResults();
+        }
+
+        long allocatedBefore = AllocationCounter.getAllocatedBytes();
+        for (int i = 0; i < 10000; ++i)
+        {
+            stableList.hasEnoughResults();
+            confidentList.hasEnoughResults();
+        }
+        long allocated = AllocationCounter.getAllocatedBytes() - allocatedBefore;
+
+        // building a map of the running pass's attributes took over 1kB a call
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+    }
+
+}
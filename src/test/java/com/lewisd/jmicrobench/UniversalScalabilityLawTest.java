@@ -0,0 +1,45 @@
+package com.lewisd.jmicrobench;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class UniversalScalabilityLawTest
+{
+
+    @Test
+    public void shouldRecoverCoefficientsOfExactThroughput()
+    {
+        UniversalScalabilityLaw actual = new UniversalScalabilityLaw(1000, 0.1, 0.01);
+        int[] threads = new int[] { 1, 2, 4, 8, 16 };
+        double[] throughput = new double[threads.length];
+        for (int i = 0; i < threads.length; ++i)
+        {
+            throughput[i] = actual.getThroughput(threads[i]);
+        }
+
+        UniversalScalabilityLaw fitted = UniversalScalabilityLaw.fit(threads, throughput);
+
+        Assert.assertEquals(0.1, fitted.getContention(), 1e-9);
+        Assert.assertEquals(0.01, fitted.getCoherency(), 1e-9);
+        Assert.assertEquals(Math.sqrt(0.9 / 0.01), fitted.getPeakThreads(), 1e-6);
+    }
+
+    @Test
+    public void shouldOnlyFitContentionWithTwoThreadCounts()
+    {
+        UniversalScalabilityLaw fitted = UniversalScalabilityLaw.fit(new int[] { 1, 2 }, new double[] { 1000, 1600 });
+
+        // 2 / 1.6 - 1 = 0.25 = contention * (2 - 1)
+        Assert.assertEquals(0.25, fitted.getContention(), 1e-9);
+        Assert.assertEquals(0.0, fitted.getCoherency(), 0.0);
+        Assert.assertEquals(-1.0, fitted.getPeakThreads(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNeedSingleThreadThroughput()
+    {
+        UniversalScalabilityLaw.fit(new int[] { 2, 4 }, new double[] { 1000, 1600 });
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.lewisd.jmicrobench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.lewisd.test.Assert;
+
+public class WarmupCurveTest
+{
+
+    private PerformanceTestResultsImpl createResults(long operationsPerSecond)
+    {
+        PerformanceTestResultsImpl results = new PerformanceTestResultsImpl(BuildInfoImpl.getCurrentBuild(), "group", "test");
+        results.setDurationNanos(TimeUnit.SECONDS.toNanos(1));
+        results.setNumberOfOperations(operationsPerSecond);
+        return results;
+    }
+
+    private WarmupCurve createCurve()
+    {
+        WarmupCurve warmupCurve = new WarmupCurve();
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(1), createResults(200), true);
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(2), createResults(700), true);
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(3), createResults(950), true);
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(4), createResults(1000), false);
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(5), createResults(1000), false);
+        return warmupCurve;
+    }
+
+    @Test
+    public void shouldFindFirstPassThatReachedThroughput()
+    {
+        WarmupCurve warmupCurve = createCurve();
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(2), warmupCurve.getTimeToReachNanos(500));
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(4), warmupCurve.getTimeToReachNanos(1000));
+        Assert.assertEquals(-1, warmupCurve.getTimeToReachNanos(2000));
+    }
+
+    @Test
+    public void shouldRecordTimeToWarmUpAndWarmupOperations()
+    {
+        PerformanceTestResultsImpl averageResults = createResults(1000);
+
+        createCurve().setAttributes(averageResults);
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(3), averageResults.asMap().get(PerformanceTestResults.TIME_TO_90_PERCENT_THROUGHPUT), 0);
+        Assert.assertEquals(1850, averageResults.asMap().get(PerformanceTestResults.WARMUP_OPERATIONS), 0);
+    }
+
+    @Test
+    public void shouldNotRecordWarmupWithoutWarmupPasses()
+    {
+        WarmupCurve warmupCurve = new WarmupCurve();
+        warmupCurve.addPass(TimeUnit.SECONDS.toNanos(1), createResults(1000), false);
+        PerformanceTestResultsImpl averageResults = createResults(1000);
+
+        warmupCurve.setAttributes(averageResults);
+
+        Assert.assertFalse(averageResults.asMap().containsKey(PerformanceTestResults.TIME_TO_90_PERCENT_THROUGHPUT));
+        Assert.assertFalse(averageResults.asMap().containsKey(PerformanceTestResults.WARMUP_OPERATIONS));
+    }
+
+}
@@ -2,6 +2,7 @@ package com.lewisd.jmicrobench.dao;
 
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import org.junit.Test;
 
 import com.lewisd.jmicrobench.BuildInfo;
 import com.lewisd.jmicrobench.BuildInfoImpl;
+import com.lewisd.jmicrobench.Metric;
 import com.lewisd.jmicrobench.PerformanceTestResults;
 import com.lewisd.jmicrobench.PerformanceTestResultsImpl;
 import com.lewisd.test.Assert;
@@ -92,6 +94,48 @@ public class TestResultsDaoImplTest
 
     }
 
+    @Test
+    public void shouldKeepResultsForEachSetOfParametersSeparate() throws SQLException
+    {
+        PerformanceTestResultsImpl smallResults = (PerformanceTestResultsImpl) setupResults(build1, "group1", "testA");
+        smallResults.setParameters(Collections.singletonMap("size", "1k"));
+        PerformanceTestResultsImpl largeResults = (PerformanceTestResultsImpl) setupResults(build1, "group1", "testA");
+        largeResults.setParameters(Collections.singletonMap("size", "64k"));
+        largeResults.setNumberOfOperations(1000L);
+
+        dao.storeResults(Arrays.asList(smallResults, largeResults));
+
+        List<PerformanceTestResults> build1Results = dao.getBuildResults(Arrays.asList(build1)).get(build1);
+        Assert.assertEquals(2, build1Results.size());
+        Assert.assertEqualsReflectively(smallResults, build1Results.get(0));
+        Assert.assertEqualsReflectively(largeResults, build1Results.get(1));
+    }
+
+    @Test
+    public void shouldKeepUnitAndDirectionOfCustomMetrics() throws SQLException
+    {
+        PerformanceTestResultsImpl results = (PerformanceTestResultsImpl) setupResults(build1, "group1", "testA");
+        results.recordMetric("hit_ratio", 0.75, "%", true);
+
+        dao.storeResults(Arrays.asList(results));
+
+        PerformanceTestResults storedResults = dao.getBuildResults(Arrays.asList(build1)).get(build1).get(0);
+        Assert.assertEquals(new Metric("hit_ratio", "%", true), storedResults.getCustomMetrics().get("hit_ratio"));
+        Assert.assertEquals(Double.valueOf(0.75), storedResults.asMap().get("hit_ratio"));
+    }
+
+    @Test
+    public void shouldRetrieveHistoryOfOneTestFromRecentBuilds() throws SQLException
+    {
+        storeABunchOfResults();
+
+        List<PerformanceTestResults> history = dao.getTestHistory("group1", "testB", Collections.<String, String> emptyMap(), 2);
+
+        Assert.assertEquals(2, history.size());
+        Assert.assertEqualsReflectively(build3Results2, history.get(0));
+        Assert.assertEqualsReflectively(build4Results2, history.get(1));
+    }
+
     private PerformanceTestResults setupResults(BuildInfo build, String testGroupName, String testName)
     {
         int revision = build.getRevision();